@@ -0,0 +1,141 @@
+package com.iotdb.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 写入相关配置
+ * @author tjb
+ * @date 2026/10/18
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "ingest")
+public class IngestProperties {
+
+    /**
+     * 是否开启单测点写入的合并缓冲
+     */
+    private boolean writeBehindEnabled = false;
+
+    /**
+     * 单个设备缓冲多少个点后立即写入
+     */
+    private int writeBehindMaxRows = 5000;
+
+    /**
+     * 缓冲中的数据最多等待多久写入(毫秒)
+     */
+    private long writeBehindMaxDelayMs = 200;
+
+    /**
+     * 调用方等待写入确认的超时时间(毫秒)
+     */
+    private long writeBehindAckTimeoutMs = 10000;
+
+    /**
+     * 所有写入接口正在处理的请求体总字节数上限，超过后直接拒绝
+     */
+    private long admissionMaxBytes = 256L * 1024 * 1024;
+
+    /**
+     * 请求没有 Content-Length（流式上传）时按多少字节计算
+     */
+    private long admissionUnknownLengthBytes = 8L * 1024 * 1024;
+
+    /**
+     * 正在写入数据库的总行数上限，超过后直接拒绝
+     */
+    private long admissionMaxRows = 2000000;
+
+    /**
+     * 拒绝时建议客户端多久后重试(秒)
+     */
+    private int admissionRetryAfterSeconds = 1;
+
+    /**
+     * 是否开启本地写入暂存，数据库连接不上时先写入本地文件
+     */
+    private boolean spoolEnabled = false;
+
+    /**
+     * 暂存目录
+     */
+    private String spoolDir = "spool";
+
+    /**
+     * 单个暂存分段文件大小(字节)
+     */
+    private long spoolSegmentBytes = 64L * 1024 * 1024;
+
+    /**
+     * 暂存总大小上限(字节)，超过后写入失败
+     */
+    private long spoolMaxBytes = 4L * 1024 * 1024 * 1024;
+
+    /**
+     * 每秒最多重放多少行
+     */
+    private long spoolReplayRowsPerSecond = 100000;
+
+    /**
+     * 重放间隔(毫秒)
+     */
+    private long spoolReplayIntervalMs = 1000;
+
+    /**
+     * 单次写入超过多久(毫秒)认为数据库过慢，0 表示不检测
+     */
+    private long spoolSlowWriteMs = 5000;
+
+    /**
+     * 数据库过慢后，多久(毫秒)内的新写入先进暂存
+     */
+    private long spoolSlowBackoffMs = 30000;
+
+    /**
+     * 异步写入的线程数，运行环境支持虚拟线程时使用虚拟线程，不受这个限制
+     */
+    private int asyncThreads = 16;
+
+    /**
+     * 最多有多少个异步写入任务没有完成，超过后直接拒绝
+     */
+    private int asyncMaxPending = 1000;
+
+    /**
+     * 异步写入等待完成的最长时间(毫秒)
+     */
+    private long asyncWaitTimeoutMs = 30000;
+
+    /**
+     * 异步写入结果保留时间(毫秒)
+     */
+    private long asyncTicketTtlMs = 600000;
+
+    /**
+     * 生成和上传的 TsFile 存放目录，数据库服务端需要能访问到
+     */
+    private String tsfileDir = "tsfile";
+
+    /**
+     * 数据库服务端看到的 TsFile 目录，为空时和 tsfileDir 相同（同一台机器或共享目录）
+     */
+    private String tsfileServerDir = "";
+
+    /**
+     * 是否复用 tablet，同一设备同样测点的写入借用池中已经分配好的 tablet
+     */
+    private boolean tabletPoolEnabled = true;
+
+    /**
+     * tablet 池最多缓存多少种 (设备, 测点, 容量)，超过后按 LRU 淘汰
+     */
+    private int tabletPoolMaxKeys = 4096;
+
+    /**
+     * tablet 池中所有 tablet 的总字节数上限(估算)
+     */
+    private long tabletPoolMaxBytes = 128L * 1024 * 1024;
+}
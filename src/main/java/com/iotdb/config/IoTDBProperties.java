@@ -38,6 +38,16 @@ public class IoTDBProperties {
     //@Value("${nodeUrls}")
     private List<String> nodeUrls;
 
+    /**
+     * 时间序列元数据缓存的最大条数
+     */
+    private int schemaCacheMaxSize = 100000;
+
+    /**
+     * 不存在的时间序列缓存多久(毫秒)，期间查询同一序列不再访问数据库，创建序列时立即清除
+     */
+    private long schemaCacheMissTtlMs = 5000;
+
     public boolean isEmptyOfHost() {
         return StringUtils.isEmpty(host) || StringUtils.isBlank(host);
     }
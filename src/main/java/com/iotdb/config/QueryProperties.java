@@ -0,0 +1,109 @@
+package com.iotdb.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 查询相关配置
+ * @author tjb
+ * @date 2026/10/18
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "query")
+public class QueryProperties {
+
+    /**
+     * 是否开启查询结果缓存
+     */
+    private boolean cacheEnabled = true;
+
+    /**
+     * 查询结果缓存的总字节数上限(估算)，超过后按最近最少使用淘汰
+     */
+    private long cacheMaxBytes = 64L * 1024 * 1024;
+
+    /**
+     * 单个结果超过这个字节数不缓存
+     */
+    private long cacheMaxEntryBytes = 8L * 1024 * 1024;
+
+    /**
+     * 缓存过期时间(毫秒)，不经过本服务写入的数据靠过期刷新
+     */
+    private long cacheTtlMs = 60000;
+
+    /**
+     * 是否开启时间序列统计（条数、最值、起止时间），默认关闭，按需开启
+     */
+    private boolean statsEnabled = false;
+
+    /**
+     * 启动时是否在后台加载全部时间序列的统计，关闭时第一次用到时加载；
+     * 加载时查询全部时间序列，每个设备一条聚合查询，序列多时不要开启
+     */
+    private boolean statsSeedOnStartup = false;
+
+    /**
+     * 统计从数据库加载后的有效时间(毫秒)，过期后下次用到时重新加载，不经过本服务的写入、删除和 TTL 过期靠它刷新；
+     * 0 表示不过期
+     */
+    private long statsTtlMs = 60000;
+
+    /**
+     * 最多保存多少个时间序列的统计
+     */
+    private int statsMaxSeries = 1000000;
+
+    /**
+     * 多设备查询的线程数，每个设备的查询占用一个线程和一个 session；
+     * 超过连接池大小时按连接池大小限制，要小于连接池大小，给其他查询留出 session
+     */
+    private int multiDeviceThreads = 8;
+
+    /**
+     * 一次多设备查询最多的设备数，同时不超过多设备查询的线程数
+     */
+    private int multiDeviceMax = 8;
+
+    /**
+     * 查询超时时间(毫秒)，超时后数据库取消查询，0 表示不限制
+     */
+    private long timeoutMs = 60000;
+
+    /**
+     * 请求中指定的超时时间上限(毫秒)
+     */
+    private long maxTimeoutMs = 600000;
+
+    /**
+     * 每次从数据库取回的行数
+     */
+    private int fetchSize = 5000;
+
+    /**
+     * 请求中指定的每批行数上限
+     */
+    private int maxFetchSize = 100000;
+
+    /**
+     * 按接口覆盖超时时间和每批行数，key 为接口名称，例如 queryByTimeRange、queryHistory
+     */
+    private Map<String, Endpoint> endpoints = new HashMap<>();
+
+    @Data
+    public static class Endpoint {
+        /**
+         * 超时时间(毫秒)，为空时使用全局配置
+         */
+        private Long timeoutMs;
+        /**
+         * 每批行数，为空时使用全局配置
+         */
+        private Integer fetchSize;
+    }
+}
@@ -0,0 +1,26 @@
+package com.iotdb.config;
+
+import com.iotdb.handler.IngestAdmissionInterceptor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.annotation.Resource;
+
+/**
+ * @author tjb
+ * @date 2026/10/18
+ */
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    @Resource
+    private IngestAdmissionInterceptor ingestAdmissionInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // 所有写入接口，包括 CSV 和 TsFile 导入
+        registry.addInterceptor(ingestAdmissionInterceptor).addPathPatterns("/data/insert*", "/data/insertAsync/**",
+                "/importData", "/importData/**");
+    }
+}
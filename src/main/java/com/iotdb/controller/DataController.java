@@ -1,17 +1,27 @@
 package com.iotdb.controller;
 
+import com.iotdb.dto.ColumnarDataDto;
 import com.iotdb.dto.DataDtos;
 import com.iotdb.dto.TimeSeriesDto;
 import com.iotdb.vo.Result;
 import com.iotdb.dto.DataDto;
 import com.iotdb.dto.QueryDto;
+import com.iotdb.service.AsyncIngestService;
 import com.iotdb.service.DataService;
+import com.iotdb.utils.TabletBinaryCodec;
+import com.iotdb.vo.DeviceInsertVo;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -23,6 +33,8 @@ import java.util.List;
 public class DataController {
     @Resource
     private DataService dataService;
+    @Resource
+    private AsyncIngestService asyncIngestService;
 
     /**
      *
@@ -40,6 +52,111 @@ public class DataController {
         return b ? Result.ok("插入成功") : Result.fail("插入失败");
     }
 
+    /**
+     * 多设备批量插入，一次请求写入多个设备
+     * @param dataDtosList : 每个设备的插入数据
+     * @return 每个设备的写入结果
+     */
+    @PostMapping("/insertDataByDevices")
+    public Result<?> insertDataByDevices(@RequestBody List<DataDtos> dataDtosList){
+        List<DeviceInsertVo> resultList = dataService.insertRecordByDevices(dataDtosList);
+        boolean allSuccess = resultList.stream().allMatch(DeviceInsertVo::getSuccess);
+        return allSuccess ? Result.ok(resultList, "插入成功") : Result.fail(resultList, "部分设备插入失败");
+    }
+
+    /**
+     * 按列插入数据，数值直接反序列化成原始类型数组
+     * @param columnarDataDto : 时间戳列和每个测点的数据列
+     * @return 成功失败
+     */
+    @PostMapping("/insertDataByColumns")
+    public Result<?> insertDataByColumns(@RequestBody ColumnarDataDto columnarDataDto){
+        boolean b = dataService.insertRecordByColumns(columnarDataDto);
+        return b ? Result.ok("插入成功") : Result.fail("插入失败");
+    }
+
+    /**
+     * 流式插入数据，不会把整个请求体读进内存
+     * @param request : NDJSON 请求体，第一行为设备和测点描述，之后每行一条数据
+     * @return 插入的行数
+     */
+    @PostMapping(value = "/insertDataByStream", consumes = {MediaType.APPLICATION_NDJSON_VALUE, "application/x-ndjson"})
+    public Result<?> insertDataByStream(HttpServletRequest request) throws IOException {
+        long rows = dataService.insertRecordByStream(request.getInputStream());
+        return Result.ok(rows, "插入成功");
+    }
+
+    /**
+     * 二进制格式插入数据：时间戳 delta-of-delta 编码，浮点数 XOR 编码
+     * @param request : application/x-iotdb-tablet 请求体
+     * @return 插入的行数
+     */
+    @PostMapping(value = "/insertDataByBinary", consumes = TabletBinaryCodec.CONTENT_TYPE)
+    public Result<?> insertDataByBinary(HttpServletRequest request) throws IOException {
+        long rows = dataService.insertRecordByBinary(request.getInputStream());
+        return Result.ok(rows, "插入成功");
+    }
+
+    /**
+     * 异步插入一个测点的数据，校验通过后立即返回任务ID
+     * @param dataDto : 数据
+     * @param wait : 是否等待写入完成后再返回
+     * @return 任务状态
+     */
+    @PostMapping("/insertAsync/measurementOfOneDevice")
+    public Result<?> insertDataAsync(@RequestBody DataDto dataDto,
+                                     @RequestParam(defaultValue = "false") boolean wait){
+        return Result.ok(asyncIngestService.submitByTimeSeries(dataDto, wait));
+    }
+
+    /**
+     * 异步插入一个设备多个测点的数据
+     * @param dataDtos : 数据
+     * @param wait : 是否等待写入完成后再返回
+     * @return 任务状态
+     */
+    @PostMapping("/insertAsync/measurementsOfOneDevice")
+    public Result<?> insertDataAsync(@RequestBody DataDtos dataDtos,
+                                     @RequestParam(defaultValue = "false") boolean wait){
+        return Result.ok(asyncIngestService.submitByBatchTimeSeries(dataDtos, wait));
+    }
+
+    /**
+     * 异步按列插入数据
+     * @param columnarDataDto : 时间戳列和每个测点的数据列
+     * @param wait : 是否等待写入完成后再返回
+     * @return 任务状态
+     */
+    @PostMapping("/insertAsync/columns")
+    public Result<?> insertDataAsyncByColumns(@RequestBody ColumnarDataDto columnarDataDto,
+                                              @RequestParam(defaultValue = "false") boolean wait){
+        return Result.ok(asyncIngestService.submitByColumns(columnarDataDto, wait));
+    }
+
+    /**
+     * 异步插入多个设备的数据
+     * @param dataDtosList : 每个设备的插入数据
+     * @param wait : 是否等待写入完成后再返回
+     * @return 任务状态
+     */
+    @PostMapping("/insertAsync/devices")
+    public Result<?> insertDataAsyncByDevices(@RequestBody List<DataDtos> dataDtosList,
+                                              @RequestParam(defaultValue = "false") boolean wait){
+        return Result.ok(asyncIngestService.submitByDevices(dataDtosList, wait));
+    }
+
+    /**
+     * 查询异步写入任务的状态
+     * @param ticketId : 任务ID
+     * @param wait : 是否等待写入完成后再返回
+     * @return 任务状态
+     */
+    @GetMapping("/ingestTicket/{ticketId}")
+    public Result<?> getIngestTicket(@PathVariable String ticketId,
+                                     @RequestParam(defaultValue = "false") boolean wait){
+        return Result.ok(asyncIngestService.getTicket(ticketId, wait));
+    }
+
     /**
      * 删除数据根据时间范围
      * @param queryDto : 设备、测点、时间范围（可选）
@@ -0,0 +1,72 @@
+package com.iotdb.controller;
+
+import com.iotdb.service.ImportService;
+import com.iotdb.utils.TabletBinaryCodec;
+import com.iotdb.vo.Result;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+
+/**
+ * @author tjb
+ * @date 2026/10/18
+ */
+@RestController
+@RequestMapping
+public class ImportController {
+    @Resource
+    private ImportService importService;
+
+    /**
+     * 导入存储目录下的 csv 文件（/exportData 导出的格式）
+     * @param filename : 文件名
+     * @param aligned : 是否为对齐设备
+     * @return 导入的行数
+     */
+    @PostMapping("/importData")
+    public Result<?> importData(@RequestParam String filename,
+                                @RequestParam(defaultValue = "false") boolean aligned){
+        long rows = importService.importCsv(filename, aligned);
+        return Result.ok(rows, "导入成功");
+    }
+
+    /**
+     * 上传 csv 文件并导入
+     * @param request : csv 文件内容
+     * @param aligned : 是否为对齐设备
+     * @return 导入的行数
+     */
+    @PostMapping(value = "/importData/upload", consumes = {"text/csv", "application/octet-stream"})
+    public Result<?> importData(HttpServletRequest request,
+                                @RequestParam(defaultValue = "false") boolean aligned) throws IOException {
+        long rows = importService.importCsv(request.getInputStream(), aligned);
+        return Result.ok(rows, "导入成功");
+    }
+
+    /**
+     * 上传 TsFile 并一次性加载，用于历史数据回填
+     * @param request : TsFile 内容
+     * @return 加载的文件名
+     */
+    @PostMapping(value = "/importData/tsfile", consumes = "application/octet-stream")
+    public Result<?> importTsFile(HttpServletRequest request) throws IOException {
+        String filename = importService.loadTsFile(request.getInputStream());
+        return Result.ok(filename, "导入成功");
+    }
+
+    /**
+     * 二进制格式的数据先在本地生成 TsFile，再一次性加载，用于历史数据回填
+     * @param request : application/x-iotdb-tablet 请求体
+     * @return 导入的行数
+     */
+    @PostMapping(value = "/importData/tsfile/binary", consumes = TabletBinaryCodec.CONTENT_TYPE)
+    public Result<?> importBinaryByTsFile(HttpServletRequest request) throws IOException {
+        long rows = importService.importBinaryByTsFile(request.getInputStream());
+        return Result.ok(rows, "导入成功");
+    }
+}
@@ -0,0 +1,64 @@
+package com.iotdb.controller;
+
+import com.iotdb.utils.IngestAdmission;
+import com.iotdb.utils.QueryResultCache;
+import com.iotdb.utils.SeriesStatsRegistry;
+import com.iotdb.utils.TabletPool;
+import com.iotdb.utils.TabletSpool;
+import com.iotdb.vo.Result;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.Resource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 运行指标
+ * @author tjb
+ * @date 2026/10/18
+ */
+@RestController
+@RequestMapping("/metrics")
+public class MetricsController {
+    @Resource
+    private IngestAdmission ingestAdmission;
+    @Resource
+    private TabletSpool tabletSpool;
+    @Resource
+    private TabletPool tabletPool;
+    @Resource
+    private QueryResultCache queryResultCache;
+    @Resource
+    private SeriesStatsRegistry seriesStatsRegistry;
+
+    /**
+     * 写入相关的指标：准入控制、本地暂存和 tablet 复用池
+     * @return 指标
+     */
+    @GetMapping("/ingest")
+    public Result<?> ingest() {
+        Map<String, Object> admission = new LinkedHashMap<>();
+        admission.put("inFlightBytes", ingestAdmission.getInFlightBytes());
+        admission.put("inFlightRows", ingestAdmission.getInFlightRows());
+        admission.put("rejected", ingestAdmission.getRejected());
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("admission", admission);
+        metrics.put("spool", tabletSpool.getMetrics());
+        metrics.put("tabletPool", tabletPool.getMetrics());
+        return Result.ok(metrics);
+    }
+
+    /**
+     * 查询相关的指标：查询结果缓存和时间序列统计
+     * @return 指标
+     */
+    @GetMapping("/query")
+    public Result<?> query() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("cache", queryResultCache.getMetrics());
+        metrics.put("seriesStats", seriesStatsRegistry.getMetrics());
+        return Result.ok(metrics);
+    }
+}
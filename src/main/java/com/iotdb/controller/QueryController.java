@@ -1,11 +1,20 @@
 package com.iotdb.controller;
 
 import com.iotdb.vo.Result;
+import com.iotdb.dto.AggregateQueryDto;
+import com.iotdb.dto.MultiDeviceQueryDto;
 import com.iotdb.dto.QueryDto;
 import com.iotdb.service.QueryService;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.tsfile.enums.TSDataType;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.Resource;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 /**
  * @author tjb
@@ -19,23 +28,107 @@ public class QueryController {
 
     /**
      * 根据测点查询数据
-     * @param queryDto : 设备号、测点列表、读取上限(可选)
+     * @param queryDto : 设备号、测点列表、读取上限(可选)、分页大小和游标(可选，传了时分页返回)
+     * @param columnar : 是否按列返回，一个时间数组加每个测点一个数组
      * @return 数据列表
      */
     @PostMapping("/queryByMeasurementList")
-    public Result<?> getDataByMeasurementList(@RequestBody QueryDto queryDto) {
+    public Result<?> getDataByMeasurementList(@RequestBody QueryDto queryDto,
+                                              @RequestParam(defaultValue = "false") boolean columnar) {
+        if (isPaged(queryDto)) {
+            return Result.ok(queryService.queryPageByMeasurementList(queryDto, columnar));
+        }
+        if (columnar) {
+            return Result.ok(queryService.queryColumnarByMeasurementList(queryDto));
+        }
         return queryService.queryByMeasurementList(queryDto);
     }
 
     /**
      * 根据时间范围查询数据
-     * @param queryDto : 设备号、测点号、时间范围（必须）
+     * @param queryDto : 设备号、测点号、时间范围（必须）、分页大小和游标(可选，传了时分页返回)
+     * @param columnar : 是否按列返回，一个时间数组加每个测点一个数组
      * @return : 测点数据列表List<map>
      */
     @PostMapping("/queryByTimeRange")
-    public Result<?> getDataByTimeRange(@RequestBody QueryDto queryDto){
+    public Result<?> getDataByTimeRange(@RequestBody QueryDto queryDto,
+                                        @RequestParam(defaultValue = "false") boolean columnar){
+        if (isPaged(queryDto)) {
+            return Result.ok(queryService.queryPageByTime(queryDto, columnar));
+        }
+        if (columnar) {
+            return Result.ok(queryService.queryColumnarByTime(queryDto));
+        }
         return queryService.queryByTime(queryDto);
     }
+
+    private static boolean isPaged(QueryDto queryDto) {
+        return queryDto.getPageSize() != null || StringUtils.isNotBlank(queryDto.getCursor());
+    }
+    /**
+     * 根据测点查询数据，结果边查边输出，内存占用和结果大小无关
+     * @param queryDto : 设备号、测点列表、读取上限(可选)
+     * @param response : 输出格式和 /queryByMeasurementList 相同
+     */
+    @PostMapping("/queryByMeasurementList/stream")
+    public void getDataByMeasurementListStream(@RequestBody QueryDto queryDto, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        queryService.streamByMeasurementList(queryDto, response.getOutputStream());
+    }
+
+    /**
+     * 根据时间范围查询数据，结果边查边输出，内存占用和结果大小无关
+     * @param queryDto : 设备号、测点号、时间范围（必须）
+     * @param response : 输出格式和 /queryByTimeRange 相同
+     */
+    @PostMapping("/queryByTimeRange/stream")
+    public void getDataByTimeRangeStream(@RequestBody QueryDto queryDto, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        queryService.streamByTime(queryDto, response.getOutputStream());
+    }
+
+    /**
+     * 多个设备同一时间范围的数据，并发查询后按时间对齐成一个结果，边查边输出
+     * @param multiDeviceQueryDto : 设备和测点列表、时间范围（必须）、读取上限(可选)
+     * @param response : 每行一个时间，列名为测点全路径，没有数据的为 null
+     */
+    @PostMapping("/queryByDevices/stream")
+    public void getDataByDevicesStream(@RequestBody MultiDeviceQueryDto multiDeviceQueryDto,
+                                       HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        queryService.streamByDevices(multiDeviceQueryDto, response.getOutputStream());
+    }
+
+    /**
+     * 按历史数据的 | 分隔格式返回时间范围内的数据，SCADA 前端使用
+     * @param queryDto : 设备号、测点列表、时间范围（必须）
+     * @param response : 127.0.0.1|3|设备\0\0|测点序号|类型|数据个数|时间:值|...
+     */
+    @PostMapping("/queryHistory")
+    public void getHistoryData(@RequestBody QueryDto queryDto, HttpServletResponse response) throws IOException {
+        // 先检查参数和测点，检查失败时还没有设置二进制类型，错误能按 JSON 返回
+        List<TSDataType> dataTypes = queryService.checkHistory(queryDto);
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        queryService.streamHistory(queryDto, dataTypes, response.getOutputStream());
+    }
+
+    /**
+     * 趋势图用的降采样查询，只返回画图需要的点
+     * @param queryDto : 设备号、测点列表（数值类型）、时间范围（必须）
+     * @param points : 每个测点最多返回的点数，一般为图表宽度的像素数
+     * @param mode : M4（默认，数据库中降采样）或 LTTB
+     * @return 每个测点的时间数组和数值数组
+     */
+    @PostMapping("/queryDownsample")
+    public Result<?> getDownsampleData(@RequestBody QueryDto queryDto,
+                                       @RequestParam(defaultValue = "1500") int points,
+                                       @RequestParam(defaultValue = "M4") String mode) {
+        return Result.ok(queryService.queryDownsample(queryDto, points, mode));
+    }
+
     /**
      * 获取测点的最早时间和最晚时间
      * @param queryDto : 设备号、测点号
@@ -73,4 +166,14 @@ public class QueryController {
         return Result.ok(queryService.queryDataGroupBySession(queryDto));
     }
 
+    /**
+     * 批量聚合查询，一次请求返回多个测点的多个聚合值，代替逐个测点调用上面的几个接口
+     * @param aggregateQueryDto : 设备和测点列表、聚合函数列表、时间范围（可选）
+     * @return : 测点 × 聚合函数的矩阵
+     */
+    @PostMapping("/queryAggregate")
+    public Result<?> getAggregateData(@RequestBody AggregateQueryDto aggregateQueryDto){
+        return Result.ok(queryService.queryAggregate(aggregateQueryDto));
+    }
+
 }
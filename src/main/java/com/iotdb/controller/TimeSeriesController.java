@@ -1,6 +1,7 @@
 package com.iotdb.controller;
 
 import com.iotdb.vo.Result;
+import com.iotdb.dto.TemplateDto;
 import com.iotdb.dto.TimeSeriesDto;
 import com.iotdb.service.TimeSeriesService;
 import org.springframework.web.bind.annotation.*;
@@ -26,6 +27,34 @@ public class TimeSeriesController {
     public Result<?> createTimeSeries(@RequestBody List<TimeSeriesDto> timeSeriesDto) {
         return Result.ok(timeSeriesService.createTimeSeries(timeSeriesDto));
     }
+    /**
+     * 删除时间序列，同时删除数据
+     * @param timeSeriesDto : 时间序列
+     * @return 删除的时间序列
+     */
+    @PostMapping("/deleteTimeSeries")
+    public Result<?> deleteTimeSeries(@RequestBody List<TimeSeriesDto> timeSeriesDto) {
+        return Result.ok(timeSeriesService.deleteTimeSeries(timeSeriesDto));
+    }
+    /**
+     * 创建元数据模板并挂载到数据库路径
+     * @param templateDto : 模板名称、挂载路径和测点
+     * @return 模板名称
+     */
+    @PostMapping("/createTemplate")
+    public Result<?> createTemplate(@RequestBody TemplateDto templateDto) {
+        return Result.ok(timeSeriesService.createTemplate(templateDto));
+    }
+
+    /**
+     * 按模板激活设备
+     * @param templateDto : 挂载路径和设备ID
+     * @return 激活的设备路径
+     */
+    @PostMapping("/activateTemplate")
+    public Result<?> activateTemplate(@RequestBody TemplateDto templateDto) {
+        return Result.ok(timeSeriesService.activateTemplate(templateDto));
+    }
     @GetMapping("/hello")
     public Result<?> hello(){
         return Result.ok();
@@ -0,0 +1,38 @@
+package com.iotdb.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 批量聚合查询参数：多个设备的多个测点，同一组聚合函数，同一个时间范围
+ * @author tjb
+ * @date 2026/10/18
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AggregateQueryDto {
+    /**
+     * 设备和测点，每个元素使用 timeSeriesDto 和 measurements
+     */
+    private List<QueryDto> devices;
+    /**
+     * 聚合函数：COUNT、MIN_VALUE、MAX_VALUE、FIRST_VALUE、LAST_VALUE、MIN_TIME、MAX_TIME、AVG、SUM、EXTREME
+     */
+    private List<String> aggregations;
+    /**
+     * 开始时间（可选），和结束时间都不传时统计全部数据
+     */
+    private Long startTime;
+    /**
+     * 结束时间（可选）
+     */
+    private Long endTime;
+    /**
+     * 查询超时时间(毫秒，可选)，不传时使用接口的配置
+     */
+    private Long timeoutMs;
+}
@@ -0,0 +1,81 @@
+package com.iotdb.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 按列插入的数据：一列时间戳 + 每个测点一列原始类型数组
+ * 反序列化后直接作为 tablet 的列使用，不经过 Object/String 转换
+ * @author tjb
+ * @date 2026/10/18
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ColumnarDataDto {
+    /**
+     * 数据库路径
+     */
+    private String path;
+    /**
+     * 设备ID
+     */
+    private String device;
+    /**
+     * 是否为对齐设备（可选，默认非对齐）
+     */
+    private Boolean aligned;
+    /**
+     * 时间戳列
+     */
+    private long[] timestamps;
+    /**
+     * 测点列
+     */
+    private List<Column> columns;
+
+    @lombok.Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Column {
+        /**
+         * 测点名称
+         */
+        private String name;
+        /**
+         * 测点类型
+         */
+        private String type;
+        /**
+         * 按测点类型只填其中一个：BOOLEAN
+         */
+        private boolean[] booleanValues;
+        /**
+         * INT32
+         */
+        private int[] intValues;
+        /**
+         * INT64、TIMESTAMP
+         */
+        private long[] longValues;
+        /**
+         * FLOAT
+         */
+        private float[] floatValues;
+        /**
+         * DOUBLE
+         */
+        private double[] doubleValues;
+        /**
+         * TEXT、STRING、BLOB、DATE(yyyy-MM-dd)
+         */
+        private String[] textValues;
+        /**
+         * 空值所在的行下标（可选）
+         */
+        private int[] nullRows;
+    }
+}
@@ -26,6 +26,11 @@ public class DataDtos {
      */
     private List<String> testPointType;
 
+    /**
+     * 是否为对齐设备（可选，默认非对齐）
+     */
+    private Boolean aligned;
+
     /**
      * 插入数据
      */
@@ -0,0 +1,42 @@
+package com.iotdb.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 多设备查询参数：每个设备一组测点，所有设备使用同一个时间范围
+ * @author tjb
+ * @date 2026/10/18
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MultiDeviceQueryDto {
+    /**
+     * 设备和测点，每个元素使用 timeSeriesDto 和 measurements
+     */
+    private List<QueryDto> devices;
+    /**
+     * 开始时间
+     */
+    private Long startTime;
+    /**
+     * 结束时间
+     */
+    private Long endTime;
+    /**
+     * 合并后最多返回的行数（可选）
+     */
+    private Long reachMaxSize;
+    /**
+     * 查询超时时间(毫秒，可选)，不传时使用接口的配置
+     */
+    private Long timeoutMs;
+    /**
+     * 每次从数据库取回的行数（可选），不传时使用接口的配置
+     */
+    private Integer fetchSize;
+}
@@ -37,4 +37,20 @@ public class QueryDto {
      * 极值类型
      */
     private String type;
+    /**
+     * 分页大小（可选），传了 pageSize 或 cursor 时分页返回
+     */
+    private Integer pageSize;
+    /**
+     * 分页游标（可选），上一页返回的 nextCursor
+     */
+    private String cursor;
+    /**
+     * 查询超时时间(毫秒，可选)，不传时使用接口的配置
+     */
+    private Long timeoutMs;
+    /**
+     * 每次从数据库取回的行数（可选），不传时使用接口的配置
+     */
+    private Integer fetchSize;
 }
@@ -0,0 +1,42 @@
+package com.iotdb.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 元数据模板：同一型号的设备共用一组测点，挂载到数据库路径后按设备激活
+ * @author tjb
+ * @date 2026/10/18
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TemplateDto {
+    /**
+     * 模板名称
+     */
+    private String name;
+    /**
+     * 挂载的数据库路径
+     */
+    private String path;
+    /**
+     * 是否为对齐设备（可选，默认非对齐）
+     */
+    private Boolean aligned;
+    /**
+     * 测点名称，创建模板时使用
+     */
+    private List<String> testPointName;
+    /**
+     * 测点类型，创建模板时使用
+     */
+    private List<String> testPointType;
+    /**
+     * 设备ID，激活模板时使用
+     */
+    private List<String> devices;
+}
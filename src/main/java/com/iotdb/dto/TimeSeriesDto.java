@@ -27,4 +27,8 @@ public class TimeSeriesDto {
      * 测点类型
      */
     private String testPointType;
+    /**
+     * 是否为对齐设备（可选，默认非对齐）
+     */
+    private Boolean aligned;
 }
@@ -30,6 +30,10 @@ public enum StatusCodeEnum {
      * 参数校验失败
      */
     VALID_ERROR(401, "参数格式不正确"),
+    /**
+     * 写入繁忙
+     */
+    TOO_MANY_REQUESTS(429, "写入繁忙，请稍后重试"),
     /**
      * 用户名已存在
      */
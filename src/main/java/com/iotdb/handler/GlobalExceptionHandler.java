@@ -1,15 +1,21 @@
 package com.iotdb.handler;
 
+import com.iotdb.config.IngestProperties;
 import com.iotdb.exception.ServiceException;
 import com.iotdb.vo.Result;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseBody;
 
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletResponse;
 import java.util.Objects;
 
 import static com.iotdb.enums.StatusCodeEnum.SYSTEM_ERROR;
+import static com.iotdb.enums.StatusCodeEnum.TOO_MANY_REQUESTS;
 import static com.iotdb.enums.StatusCodeEnum.VALID_ERROR;
 /**
  * @author tjb
@@ -18,14 +24,22 @@ import static com.iotdb.enums.StatusCodeEnum.VALID_ERROR;
 @ControllerAdvice
 public class GlobalExceptionHandler {
 
+    @Resource
+    private IngestProperties ingestProperties;
+
     /**
      * 如果抛出的的是ServiceException，则调用该方法
+     * 写入繁忙时返回 429 和 Retry-After，方便客户端退避重试
      * @param se 业务异常
      * @return Result
      */
     @ExceptionHandler(ServiceException.class)
     @ResponseBody
-    public Result<?> handle(ServiceException se){
+    public Result<?> handle(ServiceException se, HttpServletResponse response){
+        if (TOO_MANY_REQUESTS.getCode().equals(se.getCode())) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(ingestProperties.getAdmissionRetryAfterSeconds()));
+        }
         return Result.fail(se.getCode(), se.getMessage());
     }
     /**
@@ -0,0 +1,65 @@
+package com.iotdb.handler;
+
+import com.iotdb.config.IngestProperties;
+import com.iotdb.utils.IngestAdmission;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 写入接口在读取请求体之前先申请字节数，请求结束后释放；
+ * 异步写入时数据在任务完成前一直在内存中，由任务通过 detachBytes 接管，任务完成后释放
+ * @author tjb
+ * @date 2026/10/18
+ */
+@Component
+public class IngestAdmissionInterceptor implements HandlerInterceptor {
+    private static final String ACQUIRED_BYTES = IngestAdmissionInterceptor.class.getName() + ".bytes";
+
+    @Resource
+    private IngestAdmission ingestAdmission;
+    @Resource
+    private IngestProperties ingestProperties;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        long bytes = request.getContentLengthLong();
+        if (bytes < 0) {
+            bytes = ingestProperties.getAdmissionUnknownLengthBytes();
+        }
+        ingestAdmission.acquireBytes(bytes);
+        request.setAttribute(ACQUIRED_BYTES, bytes);
+        return true;
+    }
+
+    /**
+     * 当前请求申请的字节数交给调用方，请求结束时不再释放，由调用方负责 releaseBytes
+     * @return 申请的字节数，当前请求没有申请时返回 0
+     */
+    public static long detachBytes() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return 0;
+        }
+        Object bytes = attributes.getAttribute(ACQUIRED_BYTES, RequestAttributes.SCOPE_REQUEST);
+        if (bytes == null) {
+            return 0;
+        }
+        attributes.removeAttribute(ACQUIRED_BYTES, RequestAttributes.SCOPE_REQUEST);
+        return (Long) bytes;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object bytes = request.getAttribute(ACQUIRED_BYTES);
+        if (bytes != null) {
+            request.removeAttribute(ACQUIRED_BYTES);
+            ingestAdmission.releaseBytes((Long) bytes);
+        }
+    }
+}
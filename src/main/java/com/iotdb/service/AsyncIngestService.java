@@ -0,0 +1,55 @@
+package com.iotdb.service;
+
+import com.iotdb.dto.ColumnarDataDto;
+import com.iotdb.dto.DataDto;
+import com.iotdb.dto.DataDtos;
+import com.iotdb.vo.IngestTicketVo;
+
+import java.util.List;
+
+/**
+ * 异步写入：参数校验通过后提交到写入线程，立即返回任务ID
+ * @author tjb
+ * @date 2026/10/18
+ */
+public interface AsyncIngestService {
+    /**
+     * 异步插入一个测点的数据
+     * @param dataDto : 插入数据
+     * @param wait : 是否等待写入完成
+     * @return 任务状态
+     */
+    public IngestTicketVo submitByTimeSeries(DataDto dataDto, boolean wait);
+
+    /**
+     * 异步插入一个设备多个测点的数据
+     * @param dataDtos : 插入数据
+     * @param wait : 是否等待写入完成
+     * @return 任务状态
+     */
+    public IngestTicketVo submitByBatchTimeSeries(DataDtos dataDtos, boolean wait);
+
+    /**
+     * 异步按列插入数据
+     * @param columnarDataDto : 时间戳列和每个测点的数据列
+     * @param wait : 是否等待写入完成
+     * @return 任务状态
+     */
+    public IngestTicketVo submitByColumns(ColumnarDataDto columnarDataDto, boolean wait);
+
+    /**
+     * 异步插入多个设备的数据
+     * @param dataDtosList : 每个设备的插入数据
+     * @param wait : 是否等待写入完成
+     * @return 任务状态，写入结果为每个设备的写入结果
+     */
+    public IngestTicketVo submitByDevices(List<DataDtos> dataDtosList, boolean wait);
+
+    /**
+     * 查询任务状态
+     * @param ticketId : 任务ID
+     * @param wait : 是否等待写入完成
+     * @return 任务状态
+     */
+    public IngestTicketVo getTicket(String ticketId, boolean wait);
+}
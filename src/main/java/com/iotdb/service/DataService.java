@@ -1,12 +1,15 @@
 package com.iotdb.service;
 
+import com.iotdb.dto.ColumnarDataDto;
 import com.iotdb.dto.DataDto;
 import com.iotdb.dto.DataDtos;
 import com.iotdb.dto.QueryDto;
 import com.iotdb.dto.TimeSeriesDto;
+import com.iotdb.vo.DeviceInsertVo;
 import com.iotdb.vo.Result;
 import org.springframework.web.bind.annotation.RequestBody;
 
+import java.io.InputStream;
 import java.util.List;
 
 /**
@@ -33,4 +36,32 @@ public interface DataService {
      * @return
      */
     public boolean insertRecordByBatchTimeSeries(DataDtos dataDtos);
+
+    /**
+     * 流式插入数据（1个设备，多个测点），请求体为 NDJSON
+     * @param inputStream : 请求体
+     * @return 插入的行数
+     */
+    public long insertRecordByStream(InputStream inputStream);
+
+    /**
+     * 按列插入数据（1个设备，多个测点）
+     * @param columnarDataDto : 时间戳列和每个测点的原始类型数组
+     * @return 成功或失败
+     */
+    public boolean insertRecordByColumns(ColumnarDataDto columnarDataDto);
+
+    /**
+     * 二进制格式插入数据，格式见 TabletBinaryCodec
+     * @param inputStream : 请求体
+     * @return 插入的行数
+     */
+    public long insertRecordByBinary(InputStream inputStream);
+
+    /**
+     * 批量插入数据（多个设备，多个测点），一次写入所有设备
+     * @param dataDtosList : 每个设备的插入数据
+     * @return 每个设备的写入结果
+     */
+    public List<DeviceInsertVo> insertRecordByDevices(List<DataDtos> dataDtosList);
 }
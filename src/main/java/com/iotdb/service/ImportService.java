@@ -0,0 +1,39 @@
+package com.iotdb.service;
+
+import java.io.InputStream;
+
+/**
+ * @author tjb
+ * @date 2026/10/18
+ */
+public interface ImportService {
+    /**
+     * 导入存储目录下的 csv 文件，格式和导出的文件相同
+     * @param filename : 存储目录下的文件名
+     * @param aligned : 是否为对齐设备
+     * @return 导入的行数
+     */
+    public long importCsv(String filename, boolean aligned);
+
+    /**
+     * 上传 csv 文件并导入，文件先写入存储目录，导入后删除
+     * @param inputStream : 文件内容
+     * @param aligned : 是否为对齐设备
+     * @return 导入的行数
+     */
+    public long importCsv(InputStream inputStream, boolean aligned);
+
+    /**
+     * 上传 TsFile 并通过 load 一次性加载，不经过写入流程
+     * @param inputStream : TsFile 内容
+     * @return 加载的文件名
+     */
+    public String loadTsFile(InputStream inputStream);
+
+    /**
+     * 把二进制格式（application/x-iotdb-tablet）的数据在本地生成 TsFile，再通过 load 一次性加载，用于历史数据回填
+     * @param inputStream : 二进制数据
+     * @return 导入的行数
+     */
+    public long importBinaryByTsFile(InputStream inputStream);
+}
@@ -1,8 +1,16 @@
 package com.iotdb.service;
 
+import com.iotdb.dto.AggregateQueryDto;
+import com.iotdb.dto.MultiDeviceQueryDto;
 import com.iotdb.dto.QueryDto;
+import com.iotdb.vo.AggregateResultVo;
+import com.iotdb.vo.ColumnarResultVo;
+import com.iotdb.vo.DownsampleResultVo;
+import com.iotdb.vo.PageResultVo;
 import com.iotdb.vo.Result;
+import org.apache.tsfile.enums.TSDataType;
 
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
 /**
@@ -22,6 +30,79 @@ public interface QueryService {
      * 返回测点数据列表
      */
     public Result<?> queryByTime(QueryDto queryDto);
+
+    /**
+     * 根据测点列表查询数据，按列返回：一个时间数组，每个测点一个数组
+     * @param queryDto : 查询数据
+     */
+    public ColumnarResultVo queryColumnarByMeasurementList(QueryDto queryDto);
+
+    /**
+     * 根据时间范围查询数据，按列返回
+     * @param queryDto : 查询数据
+     */
+    public ColumnarResultVo queryColumnarByTime(QueryDto queryDto);
+
+    /**
+     * 分页查询最新数据，按时间倒序
+     * @param queryDto : 设备号、测点列表、分页大小、游标（第一页不传）
+     * @param columnar : 是否按列返回
+     * @return 一页数据和下一页的游标
+     */
+    public PageResultVo<?> queryPageByMeasurementList(QueryDto queryDto, boolean columnar);
+
+    /**
+     * 分页查询时间范围内的数据，按时间正序
+     * @param queryDto : 设备号、测点列表、时间范围（必须）、分页大小、游标（第一页不传）
+     * @param columnar : 是否按列返回
+     * @return 一页数据和下一页的游标
+     */
+    public PageResultVo<?> queryPageByTime(QueryDto queryDto, boolean columnar);
+
+    /**
+     * 根据测点列表查询数据，结果逐行写入输出流
+     * @param queryDto : 查询数据
+     * @param outputStream : 输出流
+     */
+    public void streamByMeasurementList(QueryDto queryDto, OutputStream outputStream);
+
+    /**
+     * 根据时间范围查询数据，结果逐行写入输出流
+     * @param queryDto : 查询数据
+     * @param outputStream : 输出流
+     */
+    public void streamByTime(QueryDto queryDto, OutputStream outputStream);
+
+    /**
+     * 检查历史数据查询的参数和测点，在开始输出前调用，出错时还能按 JSON 返回
+     * @param queryDto : 设备号、测点列表、时间范围（必须）
+     * @return 测点类型
+     */
+    public List<TSDataType> checkHistory(QueryDto queryDto);
+
+    /**
+     * 按历史数据的 | 分隔格式输出时间范围内的数据
+     * @param queryDto : 设备号、测点列表、时间范围（必须）
+     * @param dataTypes : checkHistory 返回的测点类型
+     * @param outputStream : 输出流
+     */
+    public void streamHistory(QueryDto queryDto, List<TSDataType> dataTypes, OutputStream outputStream);
+
+    /**
+     * 多个设备并发查询同一时间范围的数据，按时间合并成一个结果逐行写入输出流
+     * @param multiDeviceQueryDto : 设备和测点列表、时间范围（必须）
+     * @param outputStream : 输出流
+     */
+    public void streamByDevices(MultiDeviceQueryDto multiDeviceQueryDto, OutputStream outputStream);
+
+    /**
+     * 时间范围内的数据降采样到指定点数，用于画趋势图
+     * @param queryDto : 设备号、测点列表（数值类型）、时间范围（必须）
+     * @param points : 每个测点返回的点数上限
+     * @param mode : M4 或 LTTB
+     * @return 每个测点的时间和数值
+     */
+    public DownsampleResultVo queryDownsample(QueryDto queryDto, int points, String mode);
     /**
      * 根据测点查询数据的起始时间
      * MAX_TIME	求最大时间戳。
@@ -42,6 +123,12 @@ public interface QueryService {
      * 获取测点有数据的时间段
      */
     public List<Map<String, Object>> queryDataGroupBySession(QueryDto queryDto);
+    /**
+     * 批量聚合查询，每个设备一条聚合语句
+     * @param aggregateQueryDto : 设备和测点列表、聚合函数列表、时间范围（可选）
+     * @return 测点 × 聚合函数的矩阵
+     */
+    public AggregateResultVo queryAggregate(AggregateQueryDto aggregateQueryDto);
 
 
 }
@@ -1,5 +1,6 @@
 package com.iotdb.service;
 
+import com.iotdb.dto.TemplateDto;
 import com.iotdb.dto.TimeSeriesDto;
 
 import java.util.List;
@@ -15,4 +16,25 @@ public interface TimeSeriesService {
      */
     public List<String> createTimeSeries(List<TimeSeriesDto> timeSeriesDto);
 
+    /**
+     * 删除时间序列
+     * @param timeSeriesDto : 要删除的时间序列，不需要测点类型
+     * @return 删除的时间序列
+     */
+    public List<String> deleteTimeSeries(List<TimeSeriesDto> timeSeriesDto);
+
+    /**
+     * 创建元数据模板并挂载到数据库路径
+     * @param templateDto : 模板名称、挂载路径和测点
+     * @return 模板名称
+     */
+    public String createTemplate(TemplateDto templateDto);
+
+    /**
+     * 在挂载路径下按模板激活设备，每个设备不需要再单独创建时间序列
+     * @param templateDto : 挂载路径和设备ID
+     * @return 激活的设备路径
+     */
+    public List<String> activateTemplate(TemplateDto templateDto);
+
 }
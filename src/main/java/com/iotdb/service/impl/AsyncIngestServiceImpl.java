@@ -0,0 +1,85 @@
+package com.iotdb.service.impl;
+
+import cn.hutool.core.collection.CollectionUtil;
+import com.iotdb.dto.ColumnarDataDto;
+import com.iotdb.dto.DataDto;
+import com.iotdb.dto.DataDtos;
+import com.iotdb.exception.ServiceException;
+import com.iotdb.service.AsyncIngestService;
+import com.iotdb.service.DataService;
+import com.iotdb.utils.CheckParameterUtil;
+import com.iotdb.utils.IngestExecutor;
+import com.iotdb.vo.IngestTicketVo;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Resource;
+import java.util.List;
+import java.util.Objects;
+
+import static com.iotdb.enums.StatusCodeEnum.VALID_ERROR;
+
+/**
+ * 请求线程只做参数校验，写入交给 IngestExecutor
+ * @author tjb
+ * @date 2026/10/18
+ */
+@Service
+public class AsyncIngestServiceImpl implements AsyncIngestService {
+
+    @Resource
+    private DataService dataService;
+    @Resource
+    private IngestExecutor ingestExecutor;
+
+    @Override
+    public IngestTicketVo submitByTimeSeries(DataDto dataDto, boolean wait) {
+        if (Objects.isNull(dataDto) || Objects.isNull(dataDto.getTimeSeriesDto())) {
+            throw new ServiceException(VALID_ERROR.getCode(), "时间序列参数不能为空");
+        }
+        CheckParameterUtil.checkInsertTimeSeriesParameter(dataDto.getTimeSeriesDto());
+        CheckParameterUtil.checkInsertData(dataDto.getDataList());
+        return ingestExecutor.submit(() -> dataService.insertRecordByTimeSeries(dataDto), wait);
+    }
+
+    @Override
+    public IngestTicketVo submitByBatchTimeSeries(DataDtos dataDtos, boolean wait) {
+        if (Objects.isNull(dataDtos)) {
+            throw new ServiceException(VALID_ERROR.getCode(), "插入设备参数异常");
+        }
+        CheckParameterUtil.checkDeviceParameter(dataDtos);
+        if (CollectionUtil.isEmpty(dataDtos.getDataList())
+                || dataDtos.getDataList().size() != dataDtos.getTestPointName().size()) {
+            throw new ServiceException(VALID_ERROR.getCode(), "测点名称和需要插入的数据不对应");
+        }
+        return ingestExecutor.submit(() -> dataService.insertRecordByBatchTimeSeries(dataDtos), wait);
+    }
+
+    @Override
+    public IngestTicketVo submitByColumns(ColumnarDataDto columnarDataDto, boolean wait) {
+        if (Objects.isNull(columnarDataDto)
+                || !CheckParameterUtil.checkStrings(columnarDataDto.getPath(), columnarDataDto.getDevice())) {
+            throw new ServiceException(VALID_ERROR.getCode(), "插入设备参数异常");
+        }
+        if (Objects.isNull(columnarDataDto.getTimestamps()) || CollectionUtil.isEmpty(columnarDataDto.getColumns())) {
+            throw new ServiceException(VALID_ERROR.getCode(), "插入数据不能为空");
+        }
+        return ingestExecutor.submit(() -> dataService.insertRecordByColumns(columnarDataDto), wait);
+    }
+
+    @Override
+    public IngestTicketVo submitByDevices(List<DataDtos> dataDtosList, boolean wait) {
+        if (CollectionUtil.isEmpty(dataDtosList)) {
+            throw new ServiceException(VALID_ERROR.getCode(), "插入设备参数异常");
+        }
+        return ingestExecutor.submit(() -> dataService.insertRecordByDevices(dataDtosList), wait);
+    }
+
+    @Override
+    public IngestTicketVo getTicket(String ticketId, boolean wait) {
+        IngestTicketVo ticket = ingestExecutor.getTicket(ticketId, wait);
+        if (ticket == null) {
+            throw new ServiceException(VALID_ERROR.getCode(), "任务不存在或已过期");
+        }
+        return ticket;
+    }
+}
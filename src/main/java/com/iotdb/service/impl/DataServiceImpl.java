@@ -2,7 +2,12 @@ package com.iotdb.service.impl;
 
 import static cn.hutool.core.text.StrPool.*;
 
+import cn.hutool.core.collection.CollectionUtil;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.iotdb.common.Constants;
+import com.iotdb.dto.ColumnarDataDto;
 import com.iotdb.dto.DataDto;
 import com.iotdb.dto.DataDtos;
 import com.iotdb.dto.QueryDto;
@@ -10,7 +15,16 @@ import com.iotdb.dto.TimeSeriesDto;
 import com.iotdb.exception.ServiceException;
 import com.iotdb.service.DataService;
 import com.iotdb.utils.CheckParameterUtil;
+import com.iotdb.utils.QueryResultCache;
+import com.iotdb.utils.SchemaCache;
+import com.iotdb.utils.SeriesStatsRegistry;
 import com.iotdb.utils.TSDataTypeUtil;
+import com.iotdb.utils.TabletBinaryCodec;
+import com.iotdb.utils.TabletPool;
+import com.iotdb.utils.TabletUtil;
+import com.iotdb.utils.TabletWriter;
+import com.iotdb.utils.WriteBehindBuffer;
+import com.iotdb.vo.DeviceInsertVo;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.iotdb.rpc.IoTDBConnectionException;
 import org.apache.iotdb.rpc.StatementExecutionException;
@@ -18,18 +32,19 @@ import org.apache.iotdb.session.pool.SessionPool;
 import org.apache.tsfile.enums.TSDataType;
 import org.apache.tsfile.read.common.Path;
 import org.apache.tsfile.write.record.Tablet;
-import org.apache.tsfile.write.schema.MeasurementSchema;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.bind.annotation.RequestBody;
 
 import javax.annotation.Resource;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static com.iotdb.common.Constants.*;
-import static com.iotdb.enums.StatusCodeEnum.FAIL;
 import static com.iotdb.enums.StatusCodeEnum.VALID_ERROR;
 
 /**
@@ -42,6 +57,20 @@ public class DataServiceImpl implements DataService {
     private static final Logger LOGGER = LoggerFactory.getLogger(QueryServiceImpl.class);
     @Resource
     private SessionPool sessionService;
+    @Resource
+    private ObjectMapper objectMapper;
+    @Resource
+    private WriteBehindBuffer writeBehindBuffer;
+    @Resource
+    private TabletWriter tabletWriter;
+    @Resource
+    private SchemaCache schemaCache;
+    @Resource
+    private TabletPool tabletPool;
+    @Resource
+    private QueryResultCache queryResultCache;
+    @Resource
+    private SeriesStatsRegistry seriesStatsRegistry;
 
     /**
      * 根据测点插入数据
@@ -54,7 +83,7 @@ public class DataServiceImpl implements DataService {
         if (Objects.isNull(timeSeriesDto)){
             throw new ServiceException(VALID_ERROR.getCode(), "时间序列参数不能为空");
         }
-        CheckParameterUtil.checkTimeSeriesParameterIsBlank(timeSeriesDto);
+        CheckParameterUtil.checkInsertTimeSeriesParameter(timeSeriesDto);
         CheckParameterUtil.checkInsertData(dataList);
         // 过滤掉空数数据
          dataList = dataDto.getDataList().stream()
@@ -64,37 +93,43 @@ public class DataServiceImpl implements DataService {
 
         // 封装要插入的测点
         String devicePath = timeSeriesDto.getPath() + DOT + timeSeriesDto.getDevice();
-        List<MeasurementSchema> schemaList = new ArrayList<>();
-        TSDataType dataType = TSDataTypeUtil.getTsDataType(timeSeriesDto.getTestPointType());
+        // 没有传测点类型时从元数据缓存中获取
+        TSDataType dataType = schemaCache.resolveType(devicePath, timeSeriesDto.getTestPointName(), timeSeriesDto.getTestPointType());
 
         Path correctPath = new Path(devicePath, timeSeriesDto.getTestPointName(), true);
+        boolean aligned = Boolean.TRUE.equals(timeSeriesDto.getAligned());
 
-        schemaList.add(new MeasurementSchema(correctPath.getMeasurement(), dataType));
+        // 开启合并缓冲时，和同设备的其他写入合并后一起写入
+        if (writeBehindBuffer.isEnabled()) {
+            writeBehindBuffer.write(correctPath.getDevice(), correctPath.getMeasurement(), dataType, dataList, aligned);
+            return true;
+        }
 
-        // 构建 tablet 并且填充数据
-        Tablet tablet = new Tablet(correctPath.getDevice(), schemaList, dataList.size());
-        // 填充数据
-        for (long row = 0; row < dataList.size(); row++) {
-            int rowIndex = tablet.rowSize++;
-            // 添加时间戳
-            tablet.addTimestamp(rowIndex, dataList.get((int) row).getTime());
-            // 根据每一行测点数量进行插入数据
-            for (int s = 0; s < schemaList.size(); s++) {
+        // 从复用池借用 tablet 并且填充数据
+        Tablet tablet = tabletPool.borrow(correctPath.getDevice(),
+                Collections.singletonList(correctPath.getMeasurement()),
+                Collections.singletonList(dataType),
+                dataList.size());
+        try {
+            for (long row = 0; row < dataList.size(); row++) {
+                int rowIndex = tablet.rowSize++;
+                // 添加时间戳
+                tablet.addTimestamp(rowIndex, dataList.get((int) row).getTime());
                 tablet.addValue(
-                        schemaList.get(s).getMeasurementId(),
+                        correctPath.getMeasurement(),
                         rowIndex,
                         TSDataTypeUtil.getValueByData(dataType.getType(), dataList.get((int) row).getData().toString())
                 );
-            }
-            // 如果达到可以插入的数量，就进行插入
-            if (tablet.rowSize == tablet.getMaxRowNumber()) {
-                try{
-                    sessionService.insertTablet(tablet, true);
-                }catch (IoTDBConnectionException | StatementExecutionException e){
-                    throw new ServiceException(VALID_ERROR.getCode(), e.getMessage());
+                // 如果达到可以插入的数量，就进行插入
+                if (tablet.rowSize == tablet.getMaxRowNumber()) {
+                    insertTablet(tablet, aligned);
                 }
-                tablet.reset();
             }
+            if (tablet.rowSize != 0) {
+                insertTablet(tablet, aligned);
+            }
+        } finally {
+            tabletPool.release(tablet);
         }
         return true;
     }
@@ -112,10 +147,11 @@ public class DataServiceImpl implements DataService {
             CheckParameterUtil.checkQueryTimeSeriesParameter(timeSeriesDto);
             //  添加路径
             List<String> pathList = new ArrayList<>();
-            String testPointPath = timeSeriesDto.getPath() + DOT + timeSeriesDto.getDevice() + DOT + timeSeriesDto.getTestPointName();
+            String devicePath = timeSeriesDto.getPath() + DOT + timeSeriesDto.getDevice();
+            String testPointPath = devicePath + DOT + timeSeriesDto.getTestPointName();
             pathList.add(testPointPath);
             try {
-                if (!sessionService.checkTimeseriesExists(testPointPath)) {
+                if (!schemaCache.exists(testPointPath)) {
                     throw  new ServiceException(VALID_ERROR.getCode(), "时间序列不存在,无法删除数据");
                 }
 
@@ -130,9 +166,13 @@ public class DataServiceImpl implements DataService {
                     long end = queryDto.getStartTime();
                     //删除时间范围内的数据
                     sessionService.deleteData(pathList, start, end);
+                    queryResultCache.invalidate(devicePath, Collections.singletonList(timeSeriesDto.getTestPointName()), start, end);
+                    seriesStatsRegistry.remove(testPointPath);
                     LOGGER.info(testPointPath.toUpperCase());
                 }catch (ServiceException serviceException){
                     sessionService.deleteData(pathList, Long.MAX_VALUE);
+                    queryResultCache.invalidate(devicePath, Collections.singletonList(timeSeriesDto.getTestPointName()), Long.MIN_VALUE, Long.MAX_VALUE);
+                    seriesStatsRegistry.remove(testPointPath);
                     LOGGER.info(testPointPath.toUpperCase());
                 }
             }catch (IoTDBConnectionException | StatementExecutionException e){
@@ -146,15 +186,9 @@ public class DataServiceImpl implements DataService {
     @Override
     public boolean insertRecordByBatchTimeSeries(DataDtos dataDtos) {
         // 检查参数
-        if (!CheckParameterUtil.checkStrings(dataDtos.getPath(), dataDtos.getDevice())){
-            throw new ServiceException(VALID_ERROR.getCode(), "插入设备参数异常");
-        }
+        CheckParameterUtil.checkDeviceParameter(dataDtos);
         List<String> testPointName = dataDtos.getTestPointName();
-        CheckParameterUtil.checkMeasurements(testPointName, false);
         List<String> testPointType = dataDtos.getTestPointType();
-        if (testPointName.size() != testPointType.size()){
-            throw new ServiceException(VALID_ERROR.getCode(), "测点名称和测点类型不对应");
-        }
 
         List<List<DataDtos.Data>> dataLists = dataDtos.getDataList();
         // TODO:数据判断
@@ -171,14 +205,8 @@ public class DataServiceImpl implements DataService {
 
         // 构造数据
         String devicePath = dataDtos.getPath() + DOT + dataDtos.getDevice();
-        List<MeasurementSchema> schemaList = new ArrayList<>();
-        List<TSDataType> dataTypes = new ArrayList<>(testPointType.size());
-        // 构造测点
-        for (int i = 0; i < testPointName.size(); i++) {
-            TSDataType dataType = TSDataTypeUtil.getTsDataType(testPointType.get(i));
-            schemaList.add(new MeasurementSchema(testPointName.get(i), dataType));
-            dataTypes.add(dataType);
-        }
+        boolean aligned = Boolean.TRUE.equals(dataDtos.getAligned());
+        List<TSDataType> dataTypes = schemaCache.resolveTypes(devicePath, testPointName, testPointType);
 
         // 构建 tablet 并且填充数据
         /*
@@ -189,47 +217,288 @@ public class DataServiceImpl implements DataService {
          * 2,   2,  2,  2
          * 3,   3,  3,  3
          */
-        Tablet tablet = new Tablet(devicePath, schemaList, Math.min(dataLists.get(0).size(), NUMBER_10000));
-        tablet.initBitMaps();
-        // 数据插入
-        // 一个测点的数据大小
-        for (long row = 0; row < dataLists.get(0).size(); row++) {
-            // 0开始计数
-            int rowIndex = tablet.rowSize++;
-            // 添加时间戳
-            tablet.addTimestamp(rowIndex, dataLists.get(0).get((int) row).getTime());
-            // 根据每一行测点数量进行插入数据
-            for (int s = 0; s < schemaList.size(); s++) {
-                String value = dataLists.get(s).get((int) row).getData().toString();
-                // 空值标记
-                if (StringUtils.isBlank(value) || StringUtils.isEmpty(value)){
-                    tablet.bitMaps[s].mark((int) row);
+        Tablet tablet = tabletPool.borrow(devicePath, testPointName, dataTypes, Math.min(dataLists.get(0).size(), NUMBER_10000));
+        try {
+            // 数据插入
+            // 一个测点的数据大小
+            for (long row = 0; row < dataLists.get(0).size(); row++) {
+                // 0开始计数
+                int rowIndex = tablet.rowSize++;
+                // 添加时间戳
+                tablet.addTimestamp(rowIndex, dataLists.get(0).get((int) row).getTime());
+                // 根据每一行测点数量进行插入数据
+                for (int s = 0; s < testPointName.size(); s++) {
+                    String value = dataLists.get(s).get((int) row).getData().toString();
+                    // 空值标记
+                    if (StringUtils.isBlank(value) || StringUtils.isEmpty(value)){
+                        tablet.bitMaps[s].mark(rowIndex);
+                    }
+                    tablet.addValue(
+                            testPointName.get(s),
+                            rowIndex,
+                            TSDataTypeUtil.getValueByData(dataTypes.get(s).getType(), value)
+                    );
                 }
-                tablet.addValue(
-                        schemaList.get(s).getMeasurementId(),
-                        rowIndex,
-                        TSDataTypeUtil.getValueByData(dataTypes.get(s).getType(), value)
-                );
-            }
-            // 如果达到可以插入的数量，就进行插入
-            if (tablet.rowSize == tablet.getMaxRowNumber()) {
-                try{
-                    sessionService.insertTablet(tablet, true);
-                    tablet.reset();
-                }catch (IoTDBConnectionException | StatementExecutionException e){
-                    throw new ServiceException(FAIL.getCode(), e.getMessage());
+                // 如果达到可以插入的数量，就进行插入
+                if (tablet.rowSize == tablet.getMaxRowNumber()) {
+                    insertTablet(tablet, aligned);
                 }
             }
+            if (tablet.rowSize != 0) {
+                insertTablet(tablet, aligned);
+            }
+        } finally {
+            tabletPool.release(tablet);
         }
-        if (tablet.rowSize != 0) {
+        return true;
+    }
+
+    /**
+     * 流式插入数据（1个设备，多个测点），请求体为 NDJSON：
+     * 第一行是设备和测点描述 {"path":"root.sg","device":"d1","testPointName":["s1","s2"],"testPointType":["DOUBLE","INT32"]}
+     * 之后每一行是一条数据 {"time":1700000000000,"data":[12.5,3]}，data 的顺序和测点顺序一致
+     * 边读边填充 tablet，满了就写入，内存占用和请求体大小无关
+     */
+    @Override
+    public long insertRecordByStream(InputStream inputStream) {
+        try (JsonParser parser = objectMapper.getFactory().createParser(inputStream)) {
+            // 读取描述行
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new ServiceException(VALID_ERROR.getCode(), "缺少设备和测点描述");
+            }
+            DataDtos header = objectMapper.readValue(parser, DataDtos.class);
+            CheckParameterUtil.checkDeviceParameter(header);
+
+            // 构造测点
+            String devicePath = header.getPath() + DOT + header.getDevice();
+            List<String> testPointName = header.getTestPointName();
+            List<TSDataType> dataTypes = schemaCache.resolveTypes(devicePath, testPointName, header.getTestPointType());
+
+            // 逐行填充，tablet 重复使用
+            boolean aligned = Boolean.TRUE.equals(header.getAligned());
+            Tablet tablet = tabletPool.borrow(devicePath, testPointName, dataTypes, NUMBER_10000);
             try {
-                sessionService.insertTablet(tablet);
-                tablet.reset();
-            } catch (IoTDBConnectionException | StatementExecutionException e) {
-                throw new ServiceException(FAIL.getCode(), e.getMessage());
+                long total = 0;
+                JsonToken token;
+                while ((token = parser.nextToken()) != null) {
+                    if (token != JsonToken.START_OBJECT) {
+                        throw new ServiceException(VALID_ERROR.getCode(), "第" + (total + 1) + "行数据格式不正确");
+                    }
+                    readRow(parser, tablet, tablet.rowSize, dataTypes);
+                    tablet.rowSize++;
+                    total++;
+                    if (tablet.rowSize == tablet.getMaxRowNumber()) {
+                        insertTablet(tablet, aligned);
+                    }
+                }
+                if (tablet.rowSize != 0) {
+                    insertTablet(tablet, aligned);
+                }
+                return total;
+            } finally {
+                tabletPool.release(tablet);
             }
+        } catch (IOException e) {
+            throw new ServiceException(VALID_ERROR.getCode(), "解析插入数据失败:" + e.getMessage());
         }
+    }
+
+    /**
+     * 按列插入数据（1个设备，多个测点），数组直接作为 tablet 的列写入
+     */
+    @Override
+    public boolean insertRecordByColumns(ColumnarDataDto columnarDataDto) {
+        // 没有传测点类型的列从元数据缓存中获取
+        if (CheckParameterUtil.checkStrings(columnarDataDto.getPath(), columnarDataDto.getDevice())
+                && Objects.nonNull(columnarDataDto.getColumns())) {
+            String devicePath = columnarDataDto.getPath() + DOT + columnarDataDto.getDevice();
+            for (ColumnarDataDto.Column column : columnarDataDto.getColumns()) {
+                if (Objects.nonNull(column) && StringUtils.isBlank(column.getType()) && StringUtils.isNotBlank(column.getName())) {
+                    column.setType(schemaCache.resolveType(devicePath, column.getName(), null).name());
+                }
+            }
+        }
+        Tablet tablet = TabletUtil.fromColumns(columnarDataDto);
+        insertTablet(tablet, Boolean.TRUE.equals(columnarDataDto.getAligned()));
         return true;
     }
 
+    /**
+     * 二进制格式插入数据，每解码出一个数据块就写入一次
+     */
+    @Override
+    public long insertRecordByBinary(InputStream inputStream) {
+        return TabletBinaryCodec.decode(inputStream, this::insertTablet);
+    }
+
+    /**
+     * 多设备批量插入：每个设备的 tablet 并行构建，然后一次 insertTablets 写入
+     * 参数有问题的设备单独返回失败原因，不影响其他设备
+     */
+    @Override
+    public List<DeviceInsertVo> insertRecordByDevices(List<DataDtos> dataDtosList) {
+        if (CollectionUtil.isEmpty(dataDtosList)) {
+            throw new ServiceException(VALID_ERROR.getCode(), "插入设备参数异常");
+        }
+        int size = dataDtosList.size();
+        Tablet[] tablets = new Tablet[size];
+        String[] errors = new String[size];
+        // 构建 tablet 是纯计算，按核数并行
+        IntStream.range(0, size).parallel().forEach(i -> {
+            try {
+                if (Objects.isNull(dataDtosList.get(i))) {
+                    throw new ServiceException(VALID_ERROR.getCode(), "插入设备参数异常");
+                }
+                tablets[i] = buildDeviceTablet(dataDtosList.get(i));
+            } catch (ServiceException e) {
+                errors[i] = e.getMessage();
+            } catch (RuntimeException e) {
+                LOGGER.error("构建设备数据失败", e);
+                errors[i] = "构建设备数据失败:" + e.getMessage();
+            }
+        });
+
+        // 对齐设备和非对齐设备分开写入
+        Map<String, Tablet> tabletMap = new LinkedHashMap<>();
+        Map<String, Tablet> alignedTabletMap = new LinkedHashMap<>();
+        boolean[] aligned = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            if (tablets[i] == null) {
+                continue;
+            }
+            aligned[i] = Boolean.TRUE.equals(dataDtosList.get(i).getAligned());
+            if (tabletMap.containsKey(tablets[i].deviceId) || alignedTabletMap.containsKey(tablets[i].deviceId)) {
+                errors[i] = "设备重复，同一个设备只能出现一次";
+                tabletPool.release(tablets[i]);
+                tablets[i] = null;
+                continue;
+            }
+            (aligned[i] ? alignedTabletMap : tabletMap).put(tablets[i].deviceId, tablets[i]);
+        }
+        try {
+            Map<String, String> insertErrors = new HashMap<>();
+            writeDevices(tabletMap, false, insertErrors);
+            writeDevices(alignedTabletMap, true, insertErrors);
+
+            List<DeviceInsertVo> resultList = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                DataDtos dataDtos = dataDtosList.get(i);
+                String device = Objects.isNull(dataDtos) ? null : dataDtos.getPath() + DOT + dataDtos.getDevice();
+                String error = tablets[i] == null ? errors[i] : insertErrors.get(tablets[i].deviceId);
+                resultList.add(DeviceInsertVo.builder()
+                        .device(device)
+                        .success(error == null)
+                        .rows(error == null ? tablets[i].rowSize : 0)
+                        .message(error)
+                        .build());
+            }
+            return resultList;
+        } finally {
+            // 统计完行数后再归还，重复设备的 tablet 在上面已经归还
+            for (Tablet tablet : tablets) {
+                tabletPool.release(tablet);
+            }
+        }
+    }
+
+    /**
+     * 写入一组设备，失败的设备和原因放入 insertErrors；
+     * 数据库返回了每个设备的状态时只有失败的设备记为失败，否则整组失败
+     */
+    private void writeDevices(Map<String, Tablet> tabletMap, boolean aligned, Map<String, String> insertErrors) {
+        try {
+            insertErrors.putAll(tabletWriter.writeAll(tabletMap, aligned));
+        } catch (ServiceException e) {
+            LOGGER.error("多设备写入失败:{}", e.getMessage());
+            tabletMap.keySet().forEach(device -> insertErrors.put(device, e.getMessage()));
+        }
+    }
+
+    /**
+     * 把一个设备的数据整体构建成一个 tablet
+     */
+    private Tablet buildDeviceTablet(DataDtos dataDtos) {
+        CheckParameterUtil.checkDeviceParameter(dataDtos);
+        List<String> testPointName = dataDtos.getTestPointName();
+        List<List<DataDtos.Data>> dataLists = dataDtos.getDataList();
+        if (CollectionUtil.isEmpty(dataLists) || dataLists.size() != testPointName.size()) {
+            throw new ServiceException(VALID_ERROR.getCode(), "测点名称和需要插入的数据不对应");
+        }
+        int rows = dataLists.get(0) == null ? 0 : dataLists.get(0).size();
+        if (rows == 0) {
+            throw new ServiceException(VALID_ERROR.getCode(), "插入数据不能为空");
+        }
+        String devicePath = dataDtos.getPath() + DOT + dataDtos.getDevice();
+        List<TSDataType> dataTypes = schemaCache.resolveTypes(devicePath, testPointName, dataDtos.getTestPointType());
+        for (int i = 0; i < testPointName.size(); i++) {
+            if (dataLists.get(i) == null || dataLists.get(i).size() != rows) {
+                throw new ServiceException(VALID_ERROR.getCode(), "测点" + testPointName.get(i) + "的数据数量不一致");
+            }
+        }
+
+        Tablet tablet = tabletPool.borrow(devicePath, testPointName, dataTypes, rows);
+        try {
+            for (int row = 0; row < rows; row++) {
+                DataDtos.Data first = dataLists.get(0).get(row);
+                if (Objects.isNull(first) || Objects.isNull(first.getTime())) {
+                    throw new ServiceException(VALID_ERROR.getCode(), "插入数据中有非法的时间");
+                }
+                tablet.addTimestamp(row, first.getTime());
+                for (int s = 0; s < testPointName.size(); s++) {
+                    DataDtos.Data data = dataLists.get(s).get(row);
+                    String value = Objects.isNull(data) || Objects.isNull(data.getData()) ? null : data.getData().toString();
+                    TabletUtil.putValue(tablet, s, row, dataTypes.get(s), value);
+                }
+            }
+        } catch (RuntimeException e) {
+            tabletPool.release(tablet);
+            throw e;
+        }
+        tablet.rowSize = rows;
+        return tablet;
+    }
+
+    /**
+     * 读取一行数据 {"time":..., "data":[...]}
+     */
+    private static void readRow(JsonParser parser, Tablet tablet, int rowIndex, List<TSDataType> dataTypes) throws IOException {
+        boolean hasTime = false;
+        int column = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("time".equals(fieldName)) {
+                if (token != JsonToken.VALUE_NUMBER_INT) {
+                    throw new ServiceException(VALID_ERROR.getCode(), "插入数据中有非法的时间");
+                }
+                tablet.addTimestamp(rowIndex, parser.getLongValue());
+                hasTime = true;
+            } else if ("data".equals(fieldName)) {
+                if (token != JsonToken.START_ARRAY) {
+                    throw new ServiceException(VALID_ERROR.getCode(), "data 必须是数组");
+                }
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    if (column >= dataTypes.size()) {
+                        throw new ServiceException(VALID_ERROR.getCode(), "测点名称和需要插入的数据不对应");
+                    }
+                    TabletUtil.putValue(tablet, column, rowIndex, dataTypes.get(column), parser);
+                    column++;
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (!hasTime || column != dataTypes.size()) {
+            throw new ServiceException(VALID_ERROR.getCode(), "测点名称和需要插入的数据不对应");
+        }
+    }
+
+    /**
+     * 写入 tablet 并重置，tablet 可以继续填充
+     */
+    private void insertTablet(Tablet tablet, boolean aligned) {
+        tabletWriter.write(tablet, aligned);
+        tablet.reset();
+    }
+
 }
@@ -0,0 +1,524 @@
+package com.iotdb.service.impl;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.core.util.IdUtil;
+import com.iotdb.config.FileStorageProperties;
+import com.iotdb.config.IngestProperties;
+import com.iotdb.exception.ServiceException;
+import com.iotdb.service.ImportService;
+import com.iotdb.utils.CheckParameterUtil;
+import com.iotdb.utils.QueryResultCache;
+import com.iotdb.utils.SchemaCache;
+import com.iotdb.utils.SeriesStatsRegistry;
+import com.iotdb.utils.TabletBinaryCodec;
+import com.iotdb.utils.TabletUtil;
+import com.iotdb.utils.TabletWriter;
+import com.iotdb.utils.TsFileBuilder;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.iotdb.rpc.IoTDBConnectionException;
+import org.apache.iotdb.rpc.StatementExecutionException;
+import org.apache.iotdb.session.pool.SessionPool;
+import org.apache.tsfile.enums.TSDataType;
+import org.apache.tsfile.write.record.Tablet;
+import org.apache.tsfile.write.schema.MeasurementSchema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Resource;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.iotdb.common.Constants.NUMBER_10000;
+import static com.iotdb.enums.StatusCodeEnum.FAIL;
+import static com.iotdb.enums.StatusCodeEnum.TOO_MANY_REQUESTS;
+import static com.iotdb.enums.StatusCodeEnum.VALID_ERROR;
+
+/**
+ * csv 导入，读取 /exportData 导出的文件：
+ * 表头为 Time,root.sg.d1.s1(DOUBLE),...，时间为 ISO_OFFSET_DATE_TIME 或时间戳，文本用双引号包裹，空值为空字符串。
+ * 文件按字节范围切分后多线程并行解析，每个范围边读边填充 tablet，满了就写入。
+ * 另外支持 TsFile 批量加载：上传的 TsFile 或者由二进制数据在本地生成的 TsFile 通过 load 一次加载，不经过 WAL 和 memtable
+ * @author tjb
+ * @date 2026/10/18
+ */
+@Service
+public class ImportServiceImpl implements ImportService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImportServiceImpl.class);
+
+    private static final Pattern HEADER_PATTERN = Pattern.compile("^(.+)\\((\\w+)\\)$");
+    /**
+     * 每个范围至少这么大，小文件不拆太细
+     */
+    private static final long MIN_RANGE_BYTES = 16L * 1024 * 1024;
+    private static final int READ_BUFFER_BYTES = 1024 * 1024;
+
+    @Resource
+    private SessionPool sessionService;
+    @Resource
+    private FileStorageProperties fileStorageProperties;
+    @Resource
+    private IngestProperties ingestProperties;
+    @Resource
+    private TabletWriter tabletWriter;
+    @Resource
+    private SchemaCache schemaCache;
+    @Resource
+    private QueryResultCache queryResultCache;
+    @Resource
+    private SeriesStatsRegistry seriesStatsRegistry;
+
+    @Override
+    public long importCsv(String filename, boolean aligned) {
+        if (!CheckParameterUtil.checkStrings(filename, fileStorageProperties.getStorage_path())) {
+            throw new ServiceException(VALID_ERROR.getCode(), "文件名不能为空");
+        }
+        Path storagePath = Paths.get(fileStorageProperties.getStorage_path()).toAbsolutePath().normalize();
+        Path file = storagePath.resolve(filename).normalize();
+        // 只能导入存储目录下的文件
+        if (!file.startsWith(storagePath) || !Files.isRegularFile(file)) {
+            throw new ServiceException(FAIL.getCode(), "文件不存在,检查后重试");
+        }
+        return importFile(file, aligned);
+    }
+
+    @Override
+    public long importCsv(InputStream inputStream, boolean aligned) {
+        if (!CheckParameterUtil.checkStrings(fileStorageProperties.getStorage_path())) {
+            throw new ServiceException(FAIL.getCode(), "存储路径不明确");
+        }
+        Path file = Paths.get(fileStorageProperties.getStorage_path(), "import-" + UUID.randomUUID() + ".csv");
+        try {
+            Files.copy(inputStream, file);
+            return importFile(file, aligned);
+        } catch (IOException e) {
+            throw new ServiceException(FAIL.getCode(), "保存上传文件失败:" + e.getMessage());
+        } finally {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                LOGGER.warn("删除上传文件{}失败", file);
+            }
+        }
+    }
+
+    @Override
+    public String loadTsFile(InputStream inputStream) {
+        File file = new File(tsfileDir(), "upload-" + IdUtil.fastSimpleUUID() + ".tsfile");
+        try {
+            Files.copy(inputStream, file.toPath());
+            loadTsFiles(Collections.singletonList(file));
+            return file.getName();
+        } catch (IOException e) {
+            throw new ServiceException(FAIL.getCode(), "保存上传文件失败:" + e.getMessage());
+        } finally {
+            // 加载成功时服务端已经删除，失败时在这里清理
+            file.delete();
+        }
+    }
+
+    @Override
+    public long importBinaryByTsFile(InputStream inputStream) {
+        long startTime = System.currentTimeMillis();
+        try (TsFileBuilder builder = new TsFileBuilder(tsfileDir())) {
+            long rows = TabletBinaryCodec.decode(inputStream, (tablet, aligned) -> {
+                builder.write(tablet, aligned);
+                tablet.reset();
+            });
+            List<File> files = builder.finish();
+            loadTsFiles(files);
+            LOGGER.info("生成并加载{}个TsFile共{}行，花费{}ms", files.size(), rows, System.currentTimeMillis() - startTime);
+            return rows;
+        }
+    }
+
+    /**
+     * 逐个加载 TsFile，加载成功后由服务端删除文件
+     */
+    private void loadTsFiles(List<File> files) {
+        for (File file : files) {
+            String path = StringUtils.isBlank(ingestProperties.getTsfileServerDir())
+                    ? file.getAbsolutePath()
+                    : StringUtils.removeEnd(ingestProperties.getTsfileServerDir(), "/") + "/" + file.getName();
+            try {
+                sessionService.executeNonQueryStatement("load '" + path + "' onSuccess=delete");
+            } catch (IoTDBConnectionException | StatementExecutionException e) {
+                throw new ServiceException(FAIL.getCode(), "加载TsFile失败:" + e.getMessage());
+            } finally {
+                // 不解析文件内容，不知道涉及哪些设备和时间范围，直接清空查询缓存
+                queryResultCache.invalidateAll();
+                seriesStatsRegistry.removeAll();
+            }
+        }
+    }
+
+    private File tsfileDir() {
+        File dir = new File(ingestProperties.getTsfileDir());
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new ServiceException(FAIL.getCode(), "创建TsFile目录失败:" + dir.getAbsolutePath());
+        }
+        return dir;
+    }
+
+    private long importFile(Path file, boolean aligned) {
+        long startTime = System.currentTimeMillis();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            LineReader headerReader = new LineReader(channel, 0);
+            String header = headerReader.readLine();
+            if (StringUtils.isBlank(header)) {
+                throw new ServiceException(VALID_ERROR.getCode(), "文件为空");
+            }
+            List<DeviceColumns> devices = parseHeader(header);
+            int columnCount = header.split(",", -1).length;
+            String precision = sessionService.getTimestampPrecision();
+
+            long dataStart = headerReader.position();
+            long size = channel.size();
+            int parallelism = (int) Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(),
+                    (size - dataStart) / MIN_RANGE_BYTES + 1));
+            long rangeBytes = (size - dataStart + parallelism - 1) / parallelism;
+
+            ExecutorService pool = Executors.newFixedThreadPool(parallelism,
+                    new ThreadFactoryBuilder().setNamePrefix("csv-import").build());
+            try {
+                List<Future<Long>> futures = new ArrayList<>(parallelism);
+                for (int i = 0; i < parallelism; i++) {
+                    long from = dataStart + i * rangeBytes;
+                    long to = Math.min(size, from + rangeBytes);
+                    futures.add(pool.submit(() ->
+                            importRange(channel, from, to, from == dataStart, devices, columnCount, precision, aligned)));
+                }
+                long total = 0;
+                for (Future<Long> future : futures) {
+                    total += future.get();
+                }
+                LOGGER.info("导入{}共{}行，{}个线程，花费{}ms", file.getFileName(), total, parallelism,
+                        System.currentTimeMillis() - startTime);
+                return total;
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof ServiceException) {
+                    throw (ServiceException) e.getCause();
+                }
+                throw new ServiceException(FAIL.getCode(), "导入失败:" + e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ServiceException(FAIL.getCode(), "导入被中断");
+            } finally {
+                pool.shutdownNow();
+            }
+        } catch (IOException e) {
+            throw new ServiceException(FAIL.getCode(), "读取文件失败:" + e.getMessage());
+        } catch (IoTDBConnectionException | StatementExecutionException e) {
+            throw new ServiceException(FAIL.getCode(), e.getMessage());
+        }
+    }
+
+    /**
+     * 导入一个字节范围：从范围内的第一个完整行开始，到起始位置超过范围的行为止
+     */
+    private long importRange(FileChannel channel, long from, long to, boolean first,
+                             List<DeviceColumns> devices, int columnCount, String precision, boolean aligned) throws IOException {
+        LineReader reader = new LineReader(channel, first ? from : from - 1);
+        if (!first) {
+            // 前一个范围负责起始位置之前开始的行
+            reader.readLine();
+        }
+        Tablet[] tablets = new Tablet[devices.size()];
+        for (int d = 0; d < devices.size(); d++) {
+            tablets[d] = TabletUtil.createTablet(devices.get(d).devicePath, devices.get(d).schemas, NUMBER_10000);
+        }
+        String[] fields = new String[columnCount];
+        long rows = 0;
+        while (reader.position() < to) {
+            long lineStart = reader.position();
+            String line = reader.readLine();
+            if (line == null) {
+                break;
+            }
+            if (line.isEmpty()) {
+                continue;
+            }
+            int count = splitLine(line, fields);
+            if (count == columnCount - 1) {
+                // 早期导出的文件时间戳为 0 的行没有写时间列
+                System.arraycopy(fields, 0, fields, 1, count);
+                fields[0] = "0";
+            } else if (count != columnCount) {
+                throw new ServiceException(VALID_ERROR.getCode(), "第" + lineStart + "字节开始的行列数和表头不一致");
+            }
+            long time = parseTime(fields[0], precision);
+            for (int d = 0; d < devices.size(); d++) {
+                DeviceColumns device = devices.get(d);
+                // 这个设备这一行全是空值就不写，先检查再写值，避免在下一行的位置留下空值标记
+                if (!hasValue(fields, device)) {
+                    continue;
+                }
+                Tablet tablet = tablets[d];
+                int row = tablet.rowSize;
+                for (int k = 0; k < device.csvIndex.length; k++) {
+                    String value = fields[device.csvIndex[k]];
+                    TSDataType dataType = device.schemas.get(k).getType();
+                    if (dataType == TSDataType.TEXT || dataType == TSDataType.STRING) {
+                        value = unquote(value);
+                    }
+                    TabletUtil.putValue(tablet, k, row, dataType, value);
+                }
+                tablet.addTimestamp(row, time);
+                tablet.rowSize++;
+                if (tablet.rowSize == tablet.getMaxRowNumber()) {
+                    write(tablet, aligned);
+                }
+            }
+            rows++;
+        }
+        for (Tablet tablet : tablets) {
+            if (tablet.rowSize != 0) {
+                write(tablet, aligned);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * 设备在这一行是否有非空的值
+     */
+    private static boolean hasValue(String[] fields, DeviceColumns device) {
+        for (int index : device.csvIndex) {
+            if (StringUtils.isNotBlank(unquote(fields[index]))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 写入 tablet，写入繁忙时等待后重试，不让整个导入失败
+     */
+    private void write(Tablet tablet, boolean aligned) {
+        while (true) {
+            try {
+                tabletWriter.write(tablet, aligned);
+                tablet.reset();
+                return;
+            } catch (ServiceException e) {
+                if (!TOO_MANY_REQUESTS.getCode().equals(e.getCode())) {
+                    throw e;
+                }
+            }
+            try {
+                Thread.sleep(ingestProperties.getAdmissionRetryAfterSeconds() * 1000L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ServiceException(FAIL.getCode(), "导入被中断");
+            }
+        }
+    }
+
+    /**
+     * 解析表头，测点按设备分组；表头没有类型时从元数据缓存获取
+     */
+    private List<DeviceColumns> parseHeader(String header) {
+        String[] names = header.split(",", -1);
+        if (!"Time".equalsIgnoreCase(names[0].trim())) {
+            throw new ServiceException(VALID_ERROR.getCode(), "第一列必须是 Time");
+        }
+        Map<String, DeviceColumns> devices = new LinkedHashMap<>();
+        for (int i = 1; i < names.length; i++) {
+            String name = names[i].trim();
+            if ("Device".equals(name)) {
+                throw new ServiceException(VALID_ERROR.getCode(), "不支持按设备对齐导出的文件");
+            }
+            String type = null;
+            Matcher matcher = HEADER_PATTERN.matcher(name);
+            if (matcher.matches()) {
+                name = matcher.group(1);
+                type = matcher.group(2);
+            }
+            int index = name.lastIndexOf('.');
+            if (index <= 0) {
+                throw new ServiceException(VALID_ERROR.getCode(), "表头" + names[i] + "不是完整的时间序列路径");
+            }
+            String devicePath = name.substring(0, index);
+            String measurement = name.substring(index + 1);
+            TSDataType dataType = schemaCache.resolveType(devicePath, measurement, type);
+            DeviceColumns device = devices.computeIfAbsent(devicePath, DeviceColumns::new);
+            device.schemas.add(new MeasurementSchema(measurement, dataType));
+            device.csvIndex = Arrays.copyOf(device.csvIndex, device.csvIndex.length + 1);
+            device.csvIndex[device.csvIndex.length - 1] = i;
+        }
+        if (devices.isEmpty()) {
+            throw new ServiceException(VALID_ERROR.getCode(), "文件中没有测点");
+        }
+        return new ArrayList<>(devices.values());
+    }
+
+    /**
+     * 按逗号拆分一行，反斜杠转义（导出时用 \ 转义逗号、换行等字符）
+     * @return 列数
+     */
+    private static int splitLine(String line, String[] fields) {
+        int count = 0;
+        if (line.indexOf('\\') < 0) {
+            int start = 0;
+            int comma;
+            while ((comma = line.indexOf(',', start)) >= 0) {
+                if (count >= fields.length) {
+                    return count + 1;
+                }
+                fields[count++] = line.substring(start, comma);
+                start = comma + 1;
+            }
+            if (count >= fields.length) {
+                return count + 1;
+            }
+            fields[count++] = line.substring(start);
+            return count;
+        }
+        StringBuilder field = new StringBuilder();
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\\' && i + 1 < line.length()) {
+                char next = line.charAt(++i);
+                field.append(next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else if (c == ',') {
+                if (count >= fields.length) {
+                    return count + 1;
+                }
+                fields[count++] = field.toString();
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (count >= fields.length) {
+            return count + 1;
+        }
+        fields[count++] = field.toString();
+        return count;
+    }
+
+    private static String unquote(String value) {
+        if (value.length() >= 2 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"') {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    /**
+     * 时间支持时间戳和导出时的 ISO_OFFSET_DATE_TIME 格式，按数据库的时间精度转换
+     */
+    private static long parseTime(String value, String precision) {
+        String time = value.trim();
+        try {
+            if (!time.isEmpty() && (Character.isDigit(time.charAt(0)) && time.indexOf('-') < 0)) {
+                return Long.parseLong(time);
+            }
+            Instant instant = OffsetDateTime.parse(time, DateTimeFormatter.ISO_OFFSET_DATE_TIME).toInstant();
+            if ("us".equals(precision)) {
+                return instant.getEpochSecond() * 1000000L + instant.getNano() / 1000;
+            }
+            if ("ns".equals(precision)) {
+                return instant.getEpochSecond() * 1000000000L + instant.getNano();
+            }
+            return instant.toEpochMilli();
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new ServiceException(VALID_ERROR.getCode(), "时间格式不正确:" + value);
+        }
+    }
+
+    /**
+     * 一个设备的测点以及在 csv 中的列号
+     */
+    private static class DeviceColumns {
+        private final String devicePath;
+        private final List<MeasurementSchema> schemas = new ArrayList<>();
+        private int[] csvIndex = new int[0];
+
+        DeviceColumns(String devicePath) {
+            this.devicePath = devicePath;
+        }
+    }
+
+    /**
+     * 按字节位置读取行，多个线程各自用 FileChannel 的绝对位置读取，互不影响
+     */
+    private static class LineReader {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_BYTES);
+        private long bufferPosition;
+        private byte[] line = new byte[256];
+
+        LineReader(FileChannel channel, long position) {
+            this.channel = channel;
+            this.bufferPosition = position;
+            buffer.limit(0);
+        }
+
+        /**
+         * 下一行开始的字节位置
+         */
+        long position() {
+            return bufferPosition - buffer.remaining();
+        }
+
+        /**
+         * 读取一行，去掉行尾的 \r\n，没有数据返回 null
+         */
+        String readLine() throws IOException {
+            int length = 0;
+            boolean read = false;
+            while (true) {
+                if (!buffer.hasRemaining()) {
+                    buffer.clear();
+                    int n = channel.read(buffer, bufferPosition);
+                    buffer.flip();
+                    if (n <= 0) {
+                        break;
+                    }
+                    bufferPosition += n;
+                }
+                read = true;
+                byte b = buffer.get();
+                if (b == '\n') {
+                    break;
+                }
+                if (length == line.length) {
+                    line = Arrays.copyOf(line, length * 2);
+                }
+                line[length++] = b;
+            }
+            if (!read) {
+                return null;
+            }
+            if (length > 0 && line[length - 1] == '\r') {
+                length--;
+            }
+            return new String(line, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
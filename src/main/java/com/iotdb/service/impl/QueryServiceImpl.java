@@ -1,33 +1,51 @@
 package com.iotdb.service.impl;
 
-import com.iotdb.common.Constants;
-import com.iotdb.common.ServiceTypeConstants;
+import cn.hutool.core.collection.CollectionUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iotdb.config.QueryProperties;
+import com.iotdb.dto.AggregateQueryDto;
+import com.iotdb.dto.MultiDeviceQueryDto;
 import com.iotdb.dto.QueryDto;
 import com.iotdb.dto.TimeSeriesDto;
-import com.iotdb.enums.StatusCodeEnum;
 import com.iotdb.exception.ServiceException;
 import com.iotdb.service.QueryService;
 import com.iotdb.utils.CheckParameterUtil;
+import com.iotdb.utils.ColumnarResultBuilder;
+import com.iotdb.utils.Downsampler;
+import com.iotdb.utils.HistoryFormatWriter;
+import com.iotdb.utils.MultiDeviceQueryExecutor;
+import com.iotdb.utils.PageCursor;
+import com.iotdb.utils.QueryResultCache;
+import com.iotdb.utils.QueryResultWriter;
+import com.iotdb.utils.QueryRunner;
 import com.iotdb.utils.SQLBuilder;
+import com.iotdb.utils.SchemaCache;
+import com.iotdb.utils.SeriesStatsRegistry;
 import com.iotdb.utils.TSDataTypeUtil;
+import com.iotdb.vo.AggregateResultVo;
+import com.iotdb.vo.ColumnarResultVo;
+import com.iotdb.vo.DownsampleResultVo;
+import com.iotdb.vo.PageResultVo;
 import com.iotdb.vo.Result;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.iotdb.isession.pool.SessionDataSetWrapper;
 import org.apache.iotdb.rpc.IoTDBConnectionException;
 import org.apache.iotdb.rpc.StatementExecutionException;
-import org.apache.iotdb.session.pool.SessionPool;
+import org.apache.tsfile.enums.TSDataType;
 import org.apache.tsfile.read.common.Field;
 import org.apache.tsfile.read.common.RowRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import javax.annotation.Resource;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
 import static cn.hutool.core.text.StrPool.*;
 import static com.iotdb.common.Constants.*;
-import static com.iotdb.common.Constants.JOIN_CHAR;
 import static com.iotdb.enums.StatusCodeEnum.SYSTEM_ERROR;
 import static com.iotdb.enums.StatusCodeEnum.VALID_ERROR;
 /**
@@ -37,56 +55,519 @@ import static com.iotdb.enums.StatusCodeEnum.VALID_ERROR;
 @Service
 public class QueryServiceImpl implements QueryService {
     private static final Logger LOGGER = LoggerFactory.getLogger(QueryServiceImpl.class);
+    /**
+     * 批量聚合支持的聚合函数
+     */
+    private static final List<String> AGGREGATIONS = Arrays.asList("COUNT", "FIRST_VALUE", "LAST_VALUE",
+            "MIN_TIME", "MAX_TIME", "MIN_VALUE", "MAX_VALUE", "AVG", "SUM", "EXTREME");
+    /**
+     * 只适用于数值类型的聚合函数
+     */
+    private static final Set<String> NUMERIC_AGGREGATIONS = new HashSet<>(Arrays.asList("MIN_VALUE", "MAX_VALUE",
+            "AVG", "SUM", "EXTREME"));
 
     @Resource
-    private SessionPool sessionService;
+    private ObjectMapper objectMapper;
+    @Resource
+    private SchemaCache schemaCache;
+    @Resource
+    private QueryResultCache queryResultCache;
+    @Resource
+    private SeriesStatsRegistry seriesStatsRegistry;
+    @Resource
+    private MultiDeviceQueryExecutor multiDeviceQueryExecutor;
+    @Resource
+    private QueryProperties queryProperties;
+    @Resource
+    private QueryRunner queryRunner;
 
     @Override
     public Result<?> queryByMeasurementList(QueryDto queryDto) {
-        // 参数校验
+        String queryByLimit = buildMeasurementListSql(queryDto);
+        // 以前的List<Map>结果集返回
+        List<Map<String, Object>> resultList = queryWithCache("queryByMeasurementList", "rows", queryDto, false, queryByLimit,
+                QueryServiceImpl::readResultList,
+                result -> QueryResultCache.estimateRows(result.size(), queryDto.getMeasurements().size()));
+        return Result.ok(resultList);
+    }
+
+    /**
+     * 根据时间范围查询数据
+     *
+     * @param queryDto : 查询数据
+     *                 返回测点数据列表
+     */
+    @Override
+    public Result<?> queryByTime(QueryDto queryDto) {
+        String queryByTimeRange = buildTimeRangeSql(queryDto);
+        List<Map<String, Object>> resultList = queryWithCache("queryByTimeRange", "rows", queryDto, true, queryByTimeRange,
+                QueryServiceImpl::readResultList,
+                result -> QueryResultCache.estimateRows(result.size(), queryDto.getMeasurements().size()));
+        return Result.ok(resultList);
+    }
+
+    /**
+     * 根据测点列表查询数据，按列返回
+     */
+    @Override
+    public ColumnarResultVo queryColumnarByMeasurementList(QueryDto queryDto) {
+        return queryWithCache("queryByMeasurementList", "columnar", queryDto, false, buildMeasurementListSql(queryDto),
+                ColumnarResultBuilder::build, QueryResultCache::estimateColumnar);
+    }
+
+    /**
+     * 根据时间范围查询数据，按列返回
+     */
+    @Override
+    public ColumnarResultVo queryColumnarByTime(QueryDto queryDto) {
+        return queryWithCache("queryByTimeRange", "columnar", queryDto, true, buildTimeRangeSql(queryDto),
+                ColumnarResultBuilder::build, QueryResultCache::estimateColumnar);
+    }
+
+    /**
+     * 分页查询最新数据，从新到旧，下一页查询上一页最后时间之前的数据
+     */
+    @Override
+    public PageResultVo<?> queryPageByMeasurementList(QueryDto queryDto, boolean columnar) {
+        int pageSize = pageSizeOf(queryDto);
+        String query = pageQuery("list", queryDto);
+        Long before = StringUtils.isBlank(queryDto.getCursor()) ? null : PageCursor.decode(queryDto.getCursor(), query);
+        return queryPage("queryByMeasurementList", queryDto, buildMeasurementListSql(queryDto, before, pageSize), query, pageSize, columnar);
+    }
+
+    /**
+     * 分页查询时间范围内的数据，从旧到新，下一页查询上一页最后时间之后的数据
+     */
+    @Override
+    public PageResultVo<?> queryPageByTime(QueryDto queryDto, boolean columnar) {
+        int pageSize = pageSizeOf(queryDto);
+        String query = pageQuery("range", queryDto);
+        Long after = StringUtils.isBlank(queryDto.getCursor()) ? null : PageCursor.decode(queryDto.getCursor(), query);
+        return queryPage("queryByTimeRange", queryDto, buildTimeRangeSql(queryDto, after, (long) pageSize), query, pageSize, columnar);
+    }
+
+    /**
+     * 执行一页的查询，取满一页时返回下一页的游标
+     */
+    private PageResultVo<?> queryPage(String endpoint, QueryDto queryDto, String sql, String query, int pageSize, boolean columnar) {
+        if (columnar) {
+            ColumnarResultVo result = execute(endpoint, queryDto, sql, ColumnarResultBuilder::build);
+            int rows = result.getRows();
+            return PageResultVo.builder()
+                    .data(result)
+                    .size(rows)
+                    .nextCursor(rows == pageSize ? PageCursor.encode(result.getTime()[rows - 1], query) : null)
+                    .build();
+        }
+        List<Map<String, Object>> resultList = execute(endpoint, queryDto, sql, QueryServiceImpl::readResultList);
+        int rows = resultList.size();
+        return PageResultVo.builder()
+                .data(resultList)
+                .size(rows)
+                .nextCursor(rows == pageSize ? PageCursor.encode((Long) resultList.get(rows - 1).get("time"), query) : null)
+                .build();
+    }
+
+    /**
+     * 分页大小，没有传时和读取上限相同
+     */
+    private static int pageSizeOf(QueryDto queryDto) {
+        if (queryDto.getPageSize() == null) {
+            return (int) Math.min(Integer.MAX_VALUE, limitOf(queryDto));
+        }
+        if (queryDto.getPageSize() <= 0) {
+            throw new ServiceException(VALID_ERROR.getCode(), "分页大小必须大于0");
+        }
+        return queryDto.getPageSize();
+    }
+
+    /**
+     * 游标对应的查询条件，游标只能用于同样条件的查询
+     */
+    private static String pageQuery(String kind, QueryDto queryDto) {
+        TimeSeriesDto timeSeriesDto = queryDto.getTimeSeriesDto();
+        return kind + '|' + (timeSeriesDto == null ? null : timeSeriesDto.getPath() + DOT + timeSeriesDto.getDevice())
+                + '|' + queryDto.getMeasurements() + '|' + queryDto.getStartTime() + '|' + queryDto.getEndTime();
+    }
+
+    /**
+     * 先查缓存，没有时执行查询并放入缓存；查询参数已经校验过
+     * @param endpoint : 接口名称，用于确定超时时间和每批行数
+     * @param kind : 返回格式
+     * @param queryDto : 查询参数
+     * @param timeRange : 是否为时间范围查询，否则为最新 N 条
+     * @param sql : 查询语句
+     * @param reader : 读取结果集，读完后关闭
+     * @param sizer : 估算结果的字节数
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T queryWithCache(String endpoint, String kind, QueryDto queryDto, boolean timeRange, String sql,
+                                 Function<SessionDataSetWrapper, T> reader, ToLongFunction<T> sizer) {
+        if (!queryResultCache.isEnabled()) {
+            return execute(endpoint, queryDto, sql, reader);
+        }
+        TimeSeriesDto timeSeriesDto = queryDto.getTimeSeriesDto();
+        String devicePath = timeSeriesDto.getPath() + DOT + timeSeriesDto.getDevice();
+        Long start = timeRange ? queryDto.getStartTime() : null;
+        Long end = timeRange ? queryDto.getEndTime() : null;
+        Long limit = timeRange ? null : limitOf(queryDto);
+        String key = QueryResultCache.key(kind, devicePath, queryDto.getMeasurements(), start, end, limit);
+        Object cached = queryResultCache.get(key);
+        if (cached != null) {
+            return (T) cached;
+        }
+        long version = queryResultCache.version(devicePath);
+        T result = execute(endpoint, queryDto, sql, reader);
+        queryResultCache.put(key, devicePath, queryDto.getMeasurements(), start, end, result, sizer.applyAsLong(result), version);
+        return result;
+    }
+
+    /**
+     * 执行查询，reader 读完后关闭结果集
+     */
+    private <T> T execute(String endpoint, QueryDto queryDto, String sql, Function<SessionDataSetWrapper, T> reader) {
+        try {
+            return reader.apply(queryRunner.execute(endpoint, queryDto, sql));
+        } catch (IoTDBConnectionException | StatementExecutionException e) {
+            throw new ServiceException(SYSTEM_ERROR.getCode(), e.getMessage());
+        }
+    }
+
+    /**
+     * 根据测点列表查询数据，边读边写入输出流
+     */
+    @Override
+    public void streamByMeasurementList(QueryDto queryDto, OutputStream outputStream) {
+        streamResult("queryByMeasurementList", queryDto, buildMeasurementListSql(queryDto), outputStream);
+    }
+
+    /**
+     * 根据时间范围查询数据，边读边写入输出流
+     */
+    @Override
+    public void streamByTime(QueryDto queryDto, OutputStream outputStream) {
+        streamResult("queryByTimeRange", queryDto, buildTimeRangeSql(queryDto), outputStream);
+    }
+
+    /**
+     * 检查历史数据查询的参数，确定所有测点的类型，测点不存在时直接返回错误
+     */
+    @Override
+    public List<TSDataType> checkHistory(QueryDto queryDto) {
         TimeSeriesDto timeSeriesDto = queryDto.getTimeSeriesDto();
+        List<String> measurements = queryDto.getMeasurements();
         if (Objects.isNull(timeSeriesDto)){
             throw new ServiceException(VALID_ERROR.getCode(), "时间序列为空");
         }
-        List<String> measurements = queryDto.getMeasurements();
         CheckParameterUtil.checkQueryTimeSeriesParameter(timeSeriesDto);
         CheckParameterUtil.checkMeasurements(measurements, false);
+        CheckParameterUtil.checkRangeTime(queryDto);
+        String devicePath = timeSeriesDto.getPath() + DOT + timeSeriesDto.getDevice();
+        return schemaCache.resolveTypes(devicePath, measurements, null);
+    }
 
-        try{
-            // 执行
-            String devicePath = timeSeriesDto.getPath() + DOT + timeSeriesDto.getDevice();
-            String queryByLimit = new SQLBuilder()
-                    .select(String.join(COMMA, queryDto.getMeasurements()))
-                    .from(devicePath)
-                    .orderByTimeDesc()
-                    .limit(queryDto.getReachMaxSize() != null
-                            && queryDto.getReachMaxSize() > NUMBER_0L ?
-                               queryDto.getReachMaxSize() : NUMBER_20000L
-                    )
-                    .build();
-            LOGGER.info("查询语句为：{}", queryByLimit.toUpperCase());
+    /**
+     * 按历史数据的 | 分隔格式输出时间范围内的数据：
+     * 格式要求先写数据个数，所以先用一条 count 聚合查询得到每个测点的个数，再逐个测点查询，边读边写，
+     * 不缓冲测点的数据。开始输出后不再抛出异常（响应已经是二进制格式，不能再返回 JSON）：
+     * 查询期间有数据写入时最多输出 count 个；数据被删除导致不够 count 个时重复最后一个点补齐，保证格式能解析；
+     * 查询出错时记录日志，已经输出的部分截断
+     */
+    @Override
+    public void streamHistory(QueryDto queryDto, List<TSDataType> dataTypes, OutputStream outputStream) {
+        TimeSeriesDto timeSeriesDto = queryDto.getTimeSeriesDto();
+        List<String> measurements = queryDto.getMeasurements();
+        String devicePath = timeSeriesDto.getPath() + DOT + timeSeriesDto.getDevice();
+        String where = "time >=" + queryDto.getStartTime() + " and time <=" + queryDto.getEndTime();
 
-            // 封装结果集
-            SessionDataSetWrapper dataSet = sessionService.executeQueryStatement(queryByLimit);
-            // 以前的List<Map>结果集返回
-            List<Map<String, Object>> resultList = getResultList(dataSet);
-            // 换成byte[] 返回数据
-            //byte[] resultByte = getResultByte(dataSet);
+        long[] counts;
+        try {
+            // 还没有输出，失败时按普通请求返回错误
+            counts = countHistory(queryDto, devicePath, measurements, where);
+        } catch (IoTDBConnectionException | StatementExecutionException e) {
+            throw new ServiceException(SYSTEM_ERROR.getCode(), e.getMessage());
+        }
+        HistoryFormatWriter writer = new HistoryFormatWriter(outputStream);
+        try {
+            writer.writeHeader();
+            writer.writeDevice(devicePath);
+            for (int i = 0; i < measurements.size(); i++) {
+                TSDataType dataType = dataTypes.get(i);
+                writer.writeSeriesHeader(i + 1, dataType, counts[i]);
+                if (counts[i] == 0) {
+                    continue;
+                }
+                String sql = new SQLBuilder()
+                        .select(measurements.get(i))
+                        .from(devicePath)
+                        .where(where)
+                        .limit(counts[i])
+                        .build();
+                long written = 0;
+                long lastTime = queryDto.getEndTime();
+                Field lastField = null;
+                SessionDataSetWrapper dataSet = queryRunner.execute("queryHistory", queryDto, sql);
+                try {
+                    while (written < counts[i] && dataSet.hasNext()) {
+                        RowRecord record = dataSet.next();
+                        Field field = record.getFields().get(0);
+                        if (field == null || field.getDataType() == null) {
+                            continue;
+                        }
+                        writer.writePoint(record.getTimestamp(), dataType, field);
+                        lastTime = record.getTimestamp();
+                        lastField = field;
+                        written++;
+                    }
+                } finally {
+                    dataSet.close();
+                }
+                if (written < counts[i]) {
+                    LOGGER.warn("测点{}{}{}的数据在查询期间被删除，少{}个，重复最后一个点补齐",
+                            devicePath, DOT, measurements.get(i), counts[i] - written);
+                    for (; written < counts[i]; written++) {
+                        if (lastField == null) {
+                            writer.writePlaceholder(lastTime, dataType);
+                        } else {
+                            writer.writePoint(lastTime, dataType, lastField);
+                        }
+                    }
+                }
+            }
+            writer.flush();
+        } catch (IoTDBConnectionException | StatementExecutionException e) {
+            // 格式里没有错误信息的位置，已经输出的部分只能截断
+            LOGGER.error("历史数据输出失败，已输出的部分被截断:{}", e.getMessage());
+            flushQuietly(writer);
+        } catch (IOException e) {
+            LOGGER.warn("历史数据输出中断:{}", e.getMessage());
+        }
+    }
+
+    private static void flushQuietly(HistoryFormatWriter writer) {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            LOGGER.warn("历史数据输出中断:{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 一条聚合查询得到每个测点在时间范围内的数据个数
+     */
+    private long[] countHistory(QueryDto queryDto, String devicePath, List<String> measurements, String where)
+            throws IoTDBConnectionException, StatementExecutionException {
+        List<String> columns = new ArrayList<>(measurements.size());
+        for (String measurement : measurements) {
+            columns.add(String.format("count(%s)", measurement));
+        }
+        String sql = new SQLBuilder()
+                .selectAggregation(String.join(", ", columns))
+                .from(devicePath)
+                .where(where)
+                .build();
+        long[] counts = new long[measurements.size()];
+        SessionDataSetWrapper dataSet = queryRunner.execute("queryHistory", queryDto, sql);
+        try {
+            if (dataSet.hasNext()) {
+                List<Field> fields = dataSet.next().getFields();
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] = fields.get(i).getLongV();
+                }
+            }
+        } finally {
             dataSet.close();
-            return Result.ok(resultList);
-        }catch (IoTDBConnectionException | StatementExecutionException e) {
-            throw new ServiceException(SYSTEM_ERROR.getCode(),e.getMessage());
         }
+        return counts;
     }
 
     /**
-     * 根据时间范围查询数据
-     *
-     * @param queryDto : 查询数据
-     *                 返回测点数据列表
+     * 降采样：
+     * M4 把时间范围分成 points / 4 个窗口，由数据库的 M4 函数返回每个窗口的第一个、最后一个、最小、最大值所在的点，
+     * 只传输降采样后的数据；
+     * LTTB 读取原始数据，边读边选点，原始数据需要传输，内存中只有当前桶和下一个桶的点，
+     * 约为范围内数据量 / points 的两倍
      */
     @Override
-    public Result<?> queryByTime(QueryDto queryDto) {
+    public DownsampleResultVo queryDownsample(QueryDto queryDto, int points, String mode) {
+        TimeSeriesDto timeSeriesDto = queryDto.getTimeSeriesDto();
+        List<String> measurements = queryDto.getMeasurements();
+        if (Objects.isNull(timeSeriesDto)){
+            throw new ServiceException(VALID_ERROR.getCode(), "时间序列为空");
+        }
+        CheckParameterUtil.checkQueryTimeSeriesParameter(timeSeriesDto);
+        CheckParameterUtil.checkMeasurements(measurements, false);
+        CheckParameterUtil.checkRangeTime(queryDto);
+        if (points < 4 || points > NUMBER_10000) {
+            throw new ServiceException(VALID_ERROR.getCode(), "点数需要在4到" + NUMBER_10000 + "之间");
+        }
+        String devicePath = timeSeriesDto.getPath() + DOT + timeSeriesDto.getDevice();
+        List<TSDataType> dataTypes = schemaCache.resolveTypes(devicePath, measurements, null);
+        for (int i = 0; i < dataTypes.size(); i++) {
+            TSDataType dataType = dataTypes.get(i);
+            if (dataType != TSDataType.INT32 && dataType != TSDataType.INT64
+                    && dataType != TSDataType.FLOAT && dataType != TSDataType.DOUBLE) {
+                throw new ServiceException(VALID_ERROR.getCode(), "测点" + measurements.get(i) + "不是数值类型，不能降采样");
+            }
+        }
+        long start = queryDto.getStartTime();
+        long end = queryDto.getEndTime();
+        String sql;
+        List<Downsampler.Collector> collectors = new ArrayList<>(measurements.size());
+        switch (StringUtils.upperCase(mode)) {
+            case "M4":
+                // 结束时间包含在内，M4 的窗口结束时间不包含在内
+                long windows = points / 4;
+                long interval = (end - start + windows) / windows;
+                List<String> columns = new ArrayList<>(measurements.size());
+                for (String measurement : measurements) {
+                    columns.add(String.format("M4(%s,'timeInterval'='%d','displayWindowBegin'='%d','displayWindowEnd'='%d')",
+                            measurement, interval, start, start + interval * windows));
+                    collectors.add(new Downsampler.AllPoints());
+                }
+                // M4 的显示窗口不会限制扫描范围，需要 where 限定，最后一个窗口超出结束时间的部分也不返回
+                sql = new SQLBuilder()
+                        .select(columns.toArray(new String[0]))
+                        .from(devicePath)
+                        .where("time >=" + start + " and time <=" + end)
+                        .build();
+                break;
+            case "LTTB":
+                for (int i = 0; i < measurements.size(); i++) {
+                    collectors.add(new Downsampler.Lttb(start, end, points));
+                }
+                sql = new SQLBuilder()
+                        .select(measurements.toArray(new String[0]))
+                        .from(devicePath)
+                        .where("time >=" + start + " and time <=" + end)
+                        .build();
+                break;
+            default:
+                throw new ServiceException(VALID_ERROR.getCode(), "降采样方式只能是M4或LTTB");
+        }
+        LOGGER.info("降采样语句为：{}", sql);
+        try {
+            SessionDataSetWrapper dataSet = queryRunner.execute("queryDownsample", queryDto, sql);
+            return DownsampleResultVo.builder()
+                    .mode(StringUtils.upperCase(mode))
+                    .points(points)
+                    .series(Downsampler.collect(dataSet, collectors, measurements, dataTypes))
+                    .build();
+        } catch (IoTDBConnectionException | StatementExecutionException e) {
+            throw new ServiceException(SYSTEM_ERROR.getCode(), e.getMessage());
+        }
+    }
+
+    /**
+     * 多设备查询：每个设备按时间范围查询的语句并发执行，按时间归并输出，
+     * 同一时间各设备的数据在同一行，没有数据的设备为 null
+     */
+    @Override
+    public void streamByDevices(MultiDeviceQueryDto multiDeviceQueryDto, OutputStream outputStream) {
+        if (Objects.isNull(multiDeviceQueryDto) || CollectionUtil.isEmpty(multiDeviceQueryDto.getDevices())) {
+            throw new ServiceException(VALID_ERROR.getCode(), "设备列表为空");
+        }
+        List<QueryDto> devices = multiDeviceQueryDto.getDevices();
+        if (devices.size() > queryProperties.getMultiDeviceMax()) {
+            throw new ServiceException(VALID_ERROR.getCode(), "一次最多查询" + queryProperties.getMultiDeviceMax() + "个设备");
+        }
+        List<String> sqls = new ArrayList<>(devices.size());
+        Set<String> devicePaths = new HashSet<>();
+        for (QueryDto device : devices) {
+            if (Objects.isNull(device)) {
+                throw new ServiceException(VALID_ERROR.getCode(), "设备参数为空");
+            }
+            device.setStartTime(multiDeviceQueryDto.getStartTime());
+            device.setEndTime(multiDeviceQueryDto.getEndTime());
+            String sql = buildTimeRangeSql(device);
+            TimeSeriesDto timeSeriesDto = device.getTimeSeriesDto();
+            // 同一个设备的列名相同，合并后无法区分
+            if (!devicePaths.add(timeSeriesDto.getPath() + DOT + timeSeriesDto.getDevice())) {
+                throw new ServiceException(VALID_ERROR.getCode(), "设备重复:" + timeSeriesDto.getPath() + DOT + timeSeriesDto.getDevice());
+            }
+            sqls.add(sql);
+        }
+        long limit = multiDeviceQueryDto.getReachMaxSize() != null && multiDeviceQueryDto.getReachMaxSize() > NUMBER_0L
+                ? multiDeviceQueryDto.getReachMaxSize() : Long.MAX_VALUE;
+        long startTime = System.currentTimeMillis();
+        long rows = multiDeviceQueryExecutor.stream(objectMapper, sqls, limit,
+                multiDeviceQueryDto.getTimeoutMs(), multiDeviceQueryDto.getFetchSize(), outputStream);
+        LOGGER.info("多设备查询{}个设备，输出{}行，耗时{}ms", sqls.size(), rows, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 执行查询并流式输出，查询语句执行失败时还没有任何输出，异常按普通请求处理
+     */
+    private void streamResult(String endpoint, QueryDto queryDto, String sql, OutputStream outputStream) {
+        SessionDataSetWrapper dataSet;
+        try {
+            dataSet = queryRunner.execute(endpoint, queryDto, sql);
+        } catch (IoTDBConnectionException | StatementExecutionException e) {
+            throw new ServiceException(SYSTEM_ERROR.getCode(), e.getMessage());
+        }
+        long rows = QueryResultWriter.writeRows(objectMapper, dataSet, outputStream);
+        LOGGER.info("流式输出{}行", rows);
+    }
+
+    /**
+     * 测点列表查询语句：按时间倒序，最多 reachMaxSize 行
+     */
+    private static String buildMeasurementListSql(QueryDto queryDto) {
+        return buildMeasurementListSql(queryDto, null, limitOf(queryDto));
+    }
+
+    /**
+     * 最新数据查询语句，按时间倒序
+     * @param before : 分页时上一页最后一行的时间，只查询之前的数据
+     * @param limit : 读取上限或分页大小
+     */
+    private static String buildMeasurementListSql(QueryDto queryDto, Long before, long limit) {
+        // 参数校验
+        TimeSeriesDto timeSeriesDto = queryDto.getTimeSeriesDto();
+        if (Objects.isNull(timeSeriesDto)){
+            throw new ServiceException(VALID_ERROR.getCode(), "时间序列为空");
+        }
+        List<String> measurements = queryDto.getMeasurements();
+        CheckParameterUtil.checkQueryTimeSeriesParameter(timeSeriesDto);
+        CheckParameterUtil.checkMeasurements(measurements, false);
+
+        String devicePath = timeSeriesDto.getPath() + DOT + timeSeriesDto.getDevice();
+        SQLBuilder queryByLimitBuilder = new SQLBuilder()
+                .select(String.join(COMMA, queryDto.getMeasurements()))
+                .from(devicePath);
+        if (before != null) {
+            queryByLimitBuilder.where("time <" + before);
+        }
+        String queryByLimit = queryByLimitBuilder
+                .orderByTimeDesc()
+                .limit(limit)
+                .build();
+        LOGGER.info("查询语句为：{}", queryByLimit.toUpperCase());
+        return queryByLimit;
+    }
+
+    /**
+     * 读取上限，没有传时默认 NUMBER_20000L
+     */
+    private static long limitOf(QueryDto queryDto) {
+        return queryDto.getReachMaxSize() != null
+                && queryDto.getReachMaxSize() > NUMBER_0L ?
+                   queryDto.getReachMaxSize() : NUMBER_20000L;
+    }
+
+    /**
+     * 时间范围查询语句
+     */
+    private static String buildTimeRangeSql(QueryDto queryDto) {
+        return buildTimeRangeSql(queryDto, null, null);
+    }
+
+    /**
+     * 时间范围查询语句
+     * @param after : 分页时上一页最后一行的时间，只查询之后的数据
+     * @param limit : 分页大小，不分页时为 null
+     */
+    private static String buildTimeRangeSql(QueryDto queryDto, Long after, Long limit) {
         TimeSeriesDto timeSeriesDto = queryDto.getTimeSeriesDto();
         List<String> measurements = queryDto.getMeasurements();
         if (Objects.isNull(timeSeriesDto)){
@@ -95,28 +576,24 @@ public class QueryServiceImpl implements QueryService {
         CheckParameterUtil.checkQueryTimeSeriesParameter(timeSeriesDto);
         CheckParameterUtil.checkMeasurements(measurements, true);
 
-        try{
-            // 执行
-            String devicePath = timeSeriesDto.getPath() + DOT + timeSeriesDto.getDevice();
-            SQLBuilder queryByTimeRangeBuilder = new SQLBuilder()
-                    .select(String.join(COMMA, queryDto.getMeasurements()))
-                    .from(devicePath);
+        String devicePath = timeSeriesDto.getPath() + DOT + timeSeriesDto.getDevice();
+        SQLBuilder queryByTimeRangeBuilder = new SQLBuilder()
+                .select(String.join(COMMA, queryDto.getMeasurements()))
+                .from(devicePath);
 
-            CheckParameterUtil.checkRangeTime(queryDto);
-            long start = queryDto.getStartTime();
-            long end = queryDto.getEndTime();
+        CheckParameterUtil.checkRangeTime(queryDto);
+        long start = queryDto.getStartTime();
+        long end = queryDto.getEndTime();
+        if (after == null) {
             queryByTimeRangeBuilder.where("time >=" + start + " and time <=" + end);
-            LOGGER.info(queryByTimeRangeBuilder.build().toUpperCase());
-
-            // 封装结果集
-            SessionDataSetWrapper dataSet = sessionService.executeQueryStatement(queryByTimeRangeBuilder.build());
-            List<Map<String, Object>> resultList = getResultList(dataSet);
-            //byte[] resultByte = getResultByte(dataSet);
-            dataSet.close();
-            return Result.ok(resultList);
-        }catch (IoTDBConnectionException | StatementExecutionException e) {
-            throw new ServiceException(SYSTEM_ERROR.getCode(), e.getMessage());
+        } else {
+            queryByTimeRangeBuilder.where("time >" + after + " and time <=" + end);
+        }
+        if (limit != null) {
+            queryByTimeRangeBuilder.limit(limit);
         }
+        LOGGER.info(queryByTimeRangeBuilder.build().toUpperCase());
+        return queryByTimeRangeBuilder.build();
     }
 
     /**
@@ -142,6 +619,14 @@ public class QueryServiceImpl implements QueryService {
             if (StringUtils.isBlank(testPoint) || StringUtils.isEmpty(testPoint)){
                 throw new ServiceException(VALID_ERROR.getCode(), "测点不能为空");
             }
+            SeriesStatsRegistry.SeriesStats stats = seriesStatsRegistry.get(devicePath, testPoint);
+            if (stats != null) {
+                String path = devicePath + DOT + testPoint;
+                Map<String, Object> map = new HashMap<>();
+                map.put("MAX_TIME(" + path + ")", stats.getMaxTime());
+                map.put("MIN_TIME(" + path + ")", stats.getMinTime());
+                return new LinkedList<>(Collections.singletonList(map));
+            }
             String  queryMinAMaxTime = new SQLBuilder()
                     .selectAggregation(String.format("MAX_TIME(%s), MIN_TIME(%s)", testPoint, testPoint))
                     .from(devicePath)
@@ -149,10 +634,12 @@ public class QueryServiceImpl implements QueryService {
             LOGGER.info(queryMinAMaxTime);
 
             //封装结果集
-            SessionDataSetWrapper dataSet = sessionService.executeQueryStatement(queryMinAMaxTime);
-            List<Map<String, Object>> resultList = getResultListAggregation(dataSet);
-            dataSet.close();
-            return resultList;
+            SessionDataSetWrapper dataSet = queryRunner.execute("queryStartTimeAndEndTime", queryDto, queryMinAMaxTime);
+            try {
+                return getResultListAggregation(dataSet);
+            } finally {
+                dataSet.close();
+            }
         }catch (IoTDBConnectionException | StatementExecutionException e) {
             throw new ServiceException(SYSTEM_ERROR.getCode(), e.getMessage());
         }
@@ -177,12 +664,24 @@ public class QueryServiceImpl implements QueryService {
             // 执行
             String devicePath = timeSeriesDto.getPath() + DOT + timeSeriesDto.getDevice();
             String queryExtremeSql = getQueryExtremeSql(queryDto, devicePath);
+            String testPoint = queryDto.getMeasurements().get(0);
+            SeriesStatsRegistry.SeriesStats stats = seriesStatsRegistry.get(devicePath, testPoint);
+            Object value = stats == null ? null
+                    : "MAX_VALUE".equals(queryDto.getType()) ? stats.getMaxValue() : stats.getMinValue();
+            // 非数值类型没有最值统计，查询数据库
+            if (stats != null && (stats.getCount() == 0 || value != null)) {
+                Map<String, Object> map = new HashMap<>();
+                map.put(queryDto.getType() + "(" + devicePath + DOT + testPoint + ")", value);
+                return new LinkedList<>(Collections.singletonList(map));
+            }
 
             // 封装结果集
-            SessionDataSetWrapper dataSet = sessionService.executeQueryStatement(queryExtremeSql);
-            List<Map<String, Object>> resultList = getResultListAggregation(dataSet);
-            dataSet.close();
-            return resultList;
+            SessionDataSetWrapper dataSet = queryRunner.execute("queryByExtremeType", queryDto, queryExtremeSql);
+            try {
+                return getResultListAggregation(dataSet);
+            } finally {
+                dataSet.close();
+            }
         }catch (IoTDBConnectionException | StatementExecutionException e) {
             throw new ServiceException(SYSTEM_ERROR.getCode(), e.getMessage());
         }
@@ -237,6 +736,12 @@ public class QueryServiceImpl implements QueryService {
         try{
             //执行
             String devicePath = timeSeriesDto.getPath() + DOT + timeSeriesDto.getDevice();
+            Long count = countByStats(queryDto, devicePath);
+            if (count != null) {
+                Map<String, Object> map = new HashMap<>();
+                map.put("count(" + devicePath + DOT + queryDto.getMeasurements().get(0) + ")", count);
+                return new LinkedList<>(Collections.singletonList(map));
+            }
             SQLBuilder queryCountByTime = new SQLBuilder()
                     .select("count(" + queryDto.getMeasurements().get(0) + ")")
                     .from(devicePath);
@@ -258,15 +763,46 @@ public class QueryServiceImpl implements QueryService {
             }
 
             // 封装结果集
-            SessionDataSetWrapper dataSet = sessionService.executeQueryStatement(queryCountByTime.build());
-            List<Map<String, Object>> resultList = getResultListAggregation(dataSet);
-            dataSet.close();
-            return resultList;
+            SessionDataSetWrapper dataSet = queryRunner.execute("getDataCountByMeasurement", queryDto, queryCountByTime.build());
+            try {
+                return getResultListAggregation(dataSet);
+            } finally {
+                dataSet.close();
+            }
         }catch (IoTDBConnectionException | StatementExecutionException e) {
             throw new ServiceException(SYSTEM_ERROR.getCode(), e.getMessage());
         }
     }
 
+    /**
+     * 用统计信息计算条数：没有时间范围、时间范围包含全部数据或者和数据没有交集时可以直接得到，
+     * 其余的时间范围返回 null，查询数据库
+     */
+    private Long countByStats(QueryDto queryDto, String devicePath) {
+        SeriesStatsRegistry.SeriesStats stats = seriesStatsRegistry.get(devicePath, queryDto.getMeasurements().get(0));
+        if (stats == null) {
+            return null;
+        }
+        if (stats.getCount() == 0) {
+            return 0L;
+        }
+        // 和下面查询数据库一样，时间参数不合法时统计全部数据
+        try {
+            CheckParameterUtil.checkRangeTime(queryDto);
+        } catch (ServiceException serviceException) {
+            return stats.getCount();
+        }
+        long start = queryDto.getStartTime();
+        long end = queryDto.getEndTime();
+        if (start <= stats.getMinTime() && end >= stats.getMaxTime()) {
+            return stats.getCount();
+        }
+        if (start > stats.getMaxTime() || end < stats.getMinTime()) {
+            return 0L;
+        }
+        return null;
+    }
+
     /**
      * 获取测点有数据的时间段 group by session
      */
@@ -290,16 +826,175 @@ public class QueryServiceImpl implements QueryService {
             LOGGER.info(queryGroupBySession.build().toUpperCase());
 
             // 封装结果集
-            SessionDataSetWrapper dataSet = sessionService.executeQueryStatement(queryGroupBySession.build());
+            SessionDataSetWrapper dataSet = queryRunner.execute("groupBySession", queryDto, queryGroupBySession.build());
             // 这里也有聚合查询的 count(measurement)， 为什么不用聚合获取结果的方法？因为有时间列，聚合查询获取结果是会下标越界的
-            List<Map<String, Object>> resultList = getResultList(dataSet);
-            dataSet.close();
-            return resultList;
+            return readResultList(dataSet);
         }catch (IoTDBConnectionException | StatementExecutionException e) {
             throw new ServiceException(SYSTEM_ERROR.getCode(), e.getMessage());
         }
     }
 
+    /**
+     * 批量聚合查询：
+     * 每个设备的所有测点和聚合函数拼成一条聚合语句，一个设备只查询一次；
+     * 没有时间范围或者时间范围包含全部数据时，COUNT、MIN_TIME、MAX_TIME、MIN_VALUE、MAX_VALUE 使用统计信息，不放进语句，
+     * 所有值都能从统计信息得到的设备不查询数据库；
+     * 数值类的聚合函数不适用于非数值测点，这些位置为 null，不影响其他测点
+     */
+    @Override
+    public AggregateResultVo queryAggregate(AggregateQueryDto aggregateQueryDto) {
+        if (Objects.isNull(aggregateQueryDto) || CollectionUtil.isEmpty(aggregateQueryDto.getDevices())) {
+            throw new ServiceException(VALID_ERROR.getCode(), "设备列表为空");
+        }
+        List<QueryDto> devices = aggregateQueryDto.getDevices();
+        if (devices.size() > queryProperties.getMultiDeviceMax()) {
+            throw new ServiceException(VALID_ERROR.getCode(), "一次最多查询" + queryProperties.getMultiDeviceMax() + "个设备");
+        }
+        if (CollectionUtil.isEmpty(aggregateQueryDto.getAggregations())) {
+            throw new ServiceException(VALID_ERROR.getCode(), "聚合函数为空");
+        }
+        List<String> aggregations = new ArrayList<>(aggregateQueryDto.getAggregations().size());
+        for (String aggregation : aggregateQueryDto.getAggregations()) {
+            String name = StringUtils.upperCase(StringUtils.trim(aggregation));
+            if (!AGGREGATIONS.contains(name)) {
+                throw new ServiceException(VALID_ERROR.getCode(), "不支持的聚合函数:" + aggregation);
+            }
+            aggregations.add(name);
+        }
+        // 时间范围可选，传了就必须完整
+        Long start = aggregateQueryDto.getStartTime();
+        Long end = aggregateQueryDto.getEndTime();
+        if (start != null || end != null) {
+            QueryDto range = new QueryDto();
+            range.setStartTime(start);
+            range.setEndTime(end);
+            CheckParameterUtil.checkRangeTime(range);
+        }
+
+        List<String> series = new ArrayList<>();
+        List<Object[]> values = new ArrayList<>();
+        Set<String> devicePaths = new HashSet<>();
+        try {
+            for (QueryDto device : devices) {
+                if (Objects.isNull(device) || Objects.isNull(device.getTimeSeriesDto())) {
+                    throw new ServiceException(VALID_ERROR.getCode(), "时间序列为空");
+                }
+                TimeSeriesDto timeSeriesDto = device.getTimeSeriesDto();
+                List<String> measurements = device.getMeasurements();
+                CheckParameterUtil.checkQueryTimeSeriesParameter(timeSeriesDto);
+                CheckParameterUtil.checkMeasurements(measurements, false);
+                String devicePath = timeSeriesDto.getPath() + DOT + timeSeriesDto.getDevice();
+                if (!devicePaths.add(devicePath)) {
+                    throw new ServiceException(VALID_ERROR.getCode(), "设备重复:" + devicePath);
+                }
+                List<TSDataType> dataTypes = schemaCache.resolveTypes(devicePath, measurements, null);
+
+                // 需要查询的列，以及每一列的结果在矩阵中的行和列
+                List<String> columns = new ArrayList<>();
+                List<Object[]> targetRows = new ArrayList<>();
+                List<Integer> targetColumns = new ArrayList<>();
+                for (int i = 0; i < measurements.size(); i++) {
+                    String measurement = measurements.get(i);
+                    TSDataType dataType = dataTypes.get(i);
+                    boolean numeric = dataType == TSDataType.INT32 || dataType == TSDataType.INT64
+                            || dataType == TSDataType.FLOAT || dataType == TSDataType.DOUBLE;
+                    SeriesStatsRegistry.SeriesStats stats = coveredStats(devicePath, measurement, start, end);
+                    Object[] row = new Object[aggregations.size()];
+                    for (int j = 0; j < aggregations.size(); j++) {
+                        String aggregation = aggregations.get(j);
+                        if (!numeric && NUMERIC_AGGREGATIONS.contains(aggregation)) {
+                            continue;
+                        }
+                        if (stats != null && aggregateByStats(stats, aggregation, row, j)) {
+                            continue;
+                        }
+                        columns.add(aggregation + "(" + measurement + ")");
+                        targetRows.add(row);
+                        targetColumns.add(j);
+                    }
+                    series.add(devicePath + DOT + measurement);
+                    values.add(row);
+                }
+                if (columns.isEmpty()) {
+                    continue;
+                }
+
+                SQLBuilder queryAggregate = new SQLBuilder()
+                        .select(columns.toArray(new String[0]))
+                        .from(devicePath);
+                if (start != null) {
+                    queryAggregate.where("time >=" + start + " and time <=" + end);
+                }
+                String sql = queryAggregate.build();
+                LOGGER.info("批量聚合语句为：{}", sql);
+                // 聚合结果只有一行，没有时间列，列的顺序和语句中相同
+                SessionDataSetWrapper dataSet = queryRunner.execute("queryAggregate", aggregateQueryDto.getTimeoutMs(), null, sql);
+                try {
+                    if (dataSet.hasNext()) {
+                        List<Field> fields = dataSet.next().getFields();
+                        for (int k = 0; k < fields.size(); k++) {
+                            Field field = fields.get(k);
+                            targetRows.get(k)[targetColumns.get(k)] = field.getDataType() != null ? TSDataTypeUtil.getValueByFiled(field) : null;
+                        }
+                    }
+                } finally {
+                    dataSet.close();
+                }
+            }
+        } catch (IoTDBConnectionException | StatementExecutionException e) {
+            throw new ServiceException(SYSTEM_ERROR.getCode(), e.getMessage());
+        }
+        return AggregateResultVo.builder()
+                .aggregations(aggregations)
+                .series(series)
+                .values(values.toArray(new Object[0][]))
+                .build();
+    }
+
+    /**
+     * 统计信息能代表查询范围内的全部数据时返回统计信息：没有时间范围、没有数据或者时间范围包含全部数据
+     */
+    private SeriesStatsRegistry.SeriesStats coveredStats(String devicePath, String measurement, Long start, Long end) {
+        SeriesStatsRegistry.SeriesStats stats = seriesStatsRegistry.get(devicePath, measurement);
+        if (stats == null) {
+            return null;
+        }
+        if (start == null || stats.getCount() == 0 || (start <= stats.getMinTime() && end >= stats.getMaxTime())) {
+            return stats;
+        }
+        return null;
+    }
+
+    /**
+     * 用统计信息得到聚合值，得不到时返回 false
+     */
+    private static boolean aggregateByStats(SeriesStatsRegistry.SeriesStats stats, String aggregation, Object[] row, int column) {
+        // 没有数据时除了 COUNT 都是 null
+        if (stats.getCount() == 0) {
+            row[column] = "COUNT".equals(aggregation) ? 0L : null;
+            return true;
+        }
+        switch (aggregation) {
+            case "COUNT":
+                row[column] = stats.getCount();
+                return true;
+            case "MIN_TIME":
+                row[column] = stats.getMinTime();
+                return true;
+            case "MAX_TIME":
+                row[column] = stats.getMaxTime();
+                return true;
+            case "MIN_VALUE":
+                row[column] = stats.getMinValue();
+                return true;
+            case "MAX_VALUE":
+                row[column] = stats.getMaxValue();
+                return true;
+            default:
+                return false;
+        }
+    }
+
     /**
      * 返回聚合类查询的结果
      * @param dataSet : 返回封装好的List<Map<String, value>>
@@ -322,6 +1017,17 @@ public class QueryServiceImpl implements QueryService {
             throw new ServiceException(SYSTEM_ERROR.getCode(), e.getMessage());
         }
     }
+    /**
+     * 获取结果集，读完后关闭结果集
+     */
+    private static List<Map<String, Object>> readResultList(SessionDataSetWrapper dataSet) {
+        try {
+            return getResultList(dataSet);
+        } finally {
+            dataSet.close();
+        }
+    }
+
     /**
      * 获取结果集
      * @param dataSet : 结果集数据
@@ -353,262 +1059,4 @@ public class QueryServiceImpl implements QueryService {
             map.put(columnNames.get(i), fields.get(i).getDataType() != null ? TSDataTypeUtil.getValueByFiled(fields.get(i)) : null);
         }
     }
-
-    /**
-     * 根据map进行数据分组，然后组成单独的测点数据集，最后通过测点数据集进行字符串拼接
-     * "select * from root.zh,root.zh1"
-     * @param dataSetWrapper: 查询出来数据
-     * @return : 返回值 byte[]
-     */
-    public byte[] getResultByte(SessionDataSetWrapper dataSetWrapper){
-        try {
-            // device-timestamp-measurement
-            List<String> columnNameList = dataSetWrapper.iterator().getColumnNameList();
-            List<String> selectColumnList = new ArrayList<>(columnNameList);
-            selectColumnList.remove(0);
-            System.out.println(selectColumnList);
-            if (selectColumnList.isEmpty()){
-                throw new ServiceException(StatusCodeEnum.VALID_ERROR.getCode(), "查询结果为空,或sql语句有问题");
-            }
-            List<String> selectColumnTypeList = dataSetWrapper.iterator().getColumnTypeList();
-            selectColumnTypeList.remove(0);
-
-            // 所有设备的路径 包含root
-            List<String> devicePathList = getDevicePathList(selectColumnList);
-            // 设备分区，测点分区，时间分区，数据(构建分区框架)
-            Map<String, Map<String, Map<Long, List<Object>>>> resultMapNew = new ConcurrentHashMap<>();
-            LOGGER.info("构建结果分区Map");
-            constructionPartitionMap(resultMapNew,devicePathList, selectColumnList);
-            // 分区框架map数据导入
-            LOGGER.info("填充数据给map");
-            fillDataToMap(dataSetWrapper, devicePathList, selectColumnList, resultMapNew);
-            // 拼接结果集
-            LOGGER.info("结果集拼接");
-            byte[] resultBytes = getResultBytesByResultMap(resultMapNew, selectColumnList, selectColumnTypeList);
-            dataSetWrapper.close();
-            return resultBytes;
-        } catch (IoTDBConnectionException | StatementExecutionException e) {
-            LOGGER.error(e.getMessage());
-            throw new ServiceException(SYSTEM_ERROR.getCode(), "数据库异常:"+e);
-        }
-    }
-
-    /**
-     * 通过构建好的数据map，返回我们想要的字节拼接
-     * @param resultMapNew : 分区map
-     * @return ： 字节
-     */
-    private static byte[] getResultBytesByResultMap(
-            Map<String, Map<String, Map<Long, List<Object>>>> resultMapNew,
-            List<String> column,
-            List<String> columnTypes) {
-        // 获取拼接头
-        StringBuilder resultBuilder = getResultHeader();
-        // 拿到设备分区
-        resultMapNew.keySet()
-                .forEach(devicePath -> {
-                    // 拼接设备头，反斜杠0
-                    resultBuilder
-                            .append(devicePath)
-                            .append("\\0\\0")
-                            .append(JOIN_CHAR);
-                    // 拿到设备下的测点
-                    Map<String, Map<Long, List<Object>>> deviceToTestPointMap = resultMapNew.get(devicePath);
-                    // 通过设备对应的分区下 获取到测点和所对应的数据
-                    Object[] keysOfOneDevice = deviceToTestPointMap.keySet().toArray();
-
-                    // 遍历测点key
-                    for (int i = 0; i < keysOfOneDevice.length; i++) {
-                        // 拼接测点类型
-                        // 拼接 数据点位
-                        resultBuilder
-                                .append(i + 1)
-                                .append(JOIN_CHAR);
-
-                        // 通过 device+testPoint获取到对应的测点类型
-                        String selectColumn = devicePath + keysOfOneDevice[i];
-                        // 单独处理测点别名的数据类型获取
-                        if (selectColumn.lastIndexOf(DOT) == Constants.NUMBER_REVERSE_1){
-                            selectColumn = devicePath;
-                        }
-                        resultBuilder
-                                .append(getTypeOfSelectColumn(column, columnTypes, selectColumn))
-                                .append(JOIN_CHAR);
-                        // 获取到测点下对应的时间map
-                        Map<Long, List<Object>> testPointToTimeMap = deviceToTestPointMap.get(keysOfOneDevice[i]);
-                        // 测点所对应的时间
-                        Set<Long> times = testPointToTimeMap.keySet();
-                        // 拼接数据大小头
-                        resultBuilder
-                                .append(times.size())
-                                .append(JOIN_CHAR);
-
-                        // 封装数据
-                        times.forEach(timestamp -> {
-                            // 根据对应的时间获取对应的数据
-                            List<Object> dataList = testPointToTimeMap.get(timestamp);
-                            // 数据不为空
-                            if (!dataList.isEmpty()){
-                                // 数据遍历进行拼接
-                                dataList.forEach(data -> {
-                                    resultBuilder.append(timestamp)
-                                            .append(COLON)
-                                            .append(data)
-                                            .append(JOIN_CHAR);
-                                });
-                            }
-                        });
-                    }
-                });
-        return resultBuilder.toString().getBytes();
-    }
-    private static byte getTypeOfSelectColumn(List<String> columns, List<String> columnTypes, String selectColumn){
-        String selectColumnType = null;
-        for (int i = 0; i < columns.size(); i++) {
-            if (columns.get(i).equals(selectColumn)){
-                selectColumnType = columnTypes.get(i);
-                break;
-            }
-        }
-        return TSDataTypeUtil.getTsDataType(selectColumnType).getType();
-    }
-
-    /**
-     * devicePathList, selectColumnList
-     * @param dataSetWrapper : 数据源
-     * @param devicePathList ：设备路径
-     * @param selectColumnList ：查询的字段
-     * @param resultMapNew ： 构建的结果map
-     * @throws IoTDBConnectionException
-     * @throws StatementExecutionException
-     */
-    private static void fillDataToMap(SessionDataSetWrapper dataSetWrapper,
-                                      List<String> devicePathList,
-                                      List<String> selectColumnList,
-                                      Map<String, Map<String, Map<Long, List<Object>>>> resultMapNew)
-            throws IoTDBConnectionException, StatementExecutionException {
-        while(dataSetWrapper.hasNext()){
-            // 每一行数据
-            RowRecord next = dataSetWrapper.next();
-            // 每一行的时间
-            long timestamp = next.getTimestamp();
-            // 每一行对应的数据，没有时间列,但是可能是包括了其他测点的数据
-            // align by device 第一列肯定是设备 + 其他列的数据
-            List<Field> fields = next.getFields();
-            for (int i = 0; i < devicePathList.size(); i++) {
-                // 获取测点
-                String measurement = getMeasurement(selectColumnList, i);
-                // 通过设备路径拿到 这个设备路径下对应的所有的测点的map，又通过测点获取到测点下，每个时间点的数据集合
-                resultMapNew
-                        .get(devicePathList.get(i))
-                        .get(measurement)
-                        .computeIfAbsent(timestamp, value -> new ArrayList<>())
-                        .add(fields.get(i).getDataType() != null ?
-                                TSDataTypeUtil.getValueByFiled(fields.get(i))
-                                : null
-                        );
-
-            }
-        }
-    }
-
-    /**
-     * 获取测点名称
-     * @param selectColumnList : 查询的字段
-     * @param i ： 当前的设备路径下标
-     * @return ： 测点名称
-     */
-    private static String getMeasurement(List<String> selectColumnList, int i) {
-        String testPoint = selectColumnList.get(i);
-        int index = testPoint.lastIndexOf(DOT);
-        if (index != -1){
-            // 获取的是设备(但是取出来的是 包含逗号+测点名称的)
-            return testPoint.substring(index);
-        }else {
-            return testPoint;
-        }
-    }
-
-    /**
-     * 构建分区map
-     *
-     * @param devicePathList   : 设备路径 包含root
-     * @param selectColumnList ： 去掉时间列的 selectColumn 名称
-     */
-    private static void constructionPartitionMap(Map<String, Map<String, Map<Long, List<Object>>>> resultMapNew,
-                                                 List<String> devicePathList,
-                                                 List<String> selectColumnList) {
-        // 设备遍历
-        devicePathList.forEach(devicePath -> {
-            // 通过设备进行分组，然后将结果存储到map中去
-            resultMapNew.computeIfAbsent(devicePath,value -> new ConcurrentHashMap<>());
-            // 遍历测点， 通过测点的遍历，将设备和测点进行绑定在一起
-            selectColumnList.forEach(selectColumn -> {
-                // 获取查询字段的设备路径和遍历的设备路径进行对比
-                int lastDotIndex = selectColumn.lastIndexOf(DOT);
-                String selectColumnDevicePath;
-                // 区分别名 字段
-                if (lastDotIndex != -1){
-                    // 这里判断设备名称是否相等，然后再将测点添加进去
-                    selectColumnDevicePath = selectColumn.substring(0 ,lastDotIndex);
-                }else {
-                    // 因为是别名， 直接赋值不用进行操作
-                    selectColumnDevicePath = selectColumn;
-                }
-                if (devicePath.equals(selectColumnDevicePath)){
-                    // 进行设备的map加入
-                    String key = lastDotIndex != -1 ? selectColumn.substring(lastDotIndex) : selectColumnDevicePath;
-                    resultMapNew.computeIfAbsent(
-                                    devicePath,
-                                    k -> new HashMap<>()
-                                )
-                                .computeIfAbsent(
-                                        key,
-                                        k -> new ConcurrentHashMap<>()
-                                );
-                }
-
-            });
-
-        });
-    }
-
-    /**
-     * 返回拼接头
-     * @return
-     */
-    public static StringBuilder getResultHeader(){
-        return new StringBuilder()
-                .append("127.0.0.1")
-                .append(JOIN_CHAR)
-                .append(ServiceTypeConstants.HISTORY.getCode())
-                .append(JOIN_CHAR);
-    }
-
-    /**
-     * 获取到设备的路径
-     * @param selectColumn ：查询的字段
-     * @return ： 返回处理后的设备的路径
-     */
-    private static List<String> getDevicePathList(List<String> selectColumn) {
-        List<String> names = new ArrayList<>(selectColumn.size());
-        selectColumn.forEach(name -> {
-            // 如果存在设备路径就获取到设备路径
-            int i = name.lastIndexOf(DOT);
-            if (i != -1){
-                // 获取设备路径
-                String device = name.substring(0, i);
-                names.add(device);
-            }else {
-                names.add(name);
-            }
-        });
-        return names;
-    }
-
-
-
-
-
-
 }
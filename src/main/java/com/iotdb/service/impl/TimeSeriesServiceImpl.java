@@ -1,24 +1,38 @@
 package com.iotdb.service.impl;
 
 import cn.hutool.core.collection.CollectionUtil;
+import com.iotdb.dto.TemplateDto;
 import com.iotdb.dto.TimeSeriesDto;
 import com.iotdb.exception.ServiceException;
 import com.iotdb.service.TimeSeriesService;
 import com.iotdb.utils.CheckParameterUtil;
+import com.iotdb.utils.QueryResultCache;
+import com.iotdb.utils.SchemaCache;
+import com.iotdb.utils.SeriesStatsRegistry;
 import com.iotdb.utils.TSDataTypeUtil;
 import org.apache.iotdb.rpc.IoTDBConnectionException;
 import org.apache.iotdb.rpc.StatementExecutionException;
 import org.apache.iotdb.session.pool.SessionPool;
+import org.apache.iotdb.session.template.MeasurementNode;
+import org.apache.iotdb.session.template.Template;
 import org.apache.tsfile.enums.TSDataType;
 import org.apache.tsfile.file.metadata.enums.CompressionType;
 import org.apache.tsfile.file.metadata.enums.TSEncoding;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Resource;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
+import static com.iotdb.common.Constants.NUMBER_10000;
 import static com.iotdb.enums.StatusCodeEnum.*;
 
 /**
@@ -30,39 +44,212 @@ public class TimeSeriesServiceImpl implements TimeSeriesService {
 
     @Resource
     private SessionPool sessionService;
+    @Resource
+    private SchemaCache schemaCache;
+    @Resource
+    private QueryResultCache queryResultCache;
+    @Resource
+    private SeriesStatsRegistry seriesStatsRegistry;
     /**
-     * 创建时间序列
+     * 创建时间序列：按设备分组后跳过已经存在的测点，
+     * 非对齐的测点每 NUMBER_10000 个一次 createMultiTimeseries，对齐设备每个设备一次 createAlignedTimeseries
      */
     @Override
     public List<String> createTimeSeries(List<TimeSeriesDto> timeSeriesDto) {
         if (CollectionUtil.isEmpty(timeSeriesDto)) {
             throw new ServiceException(VALID_ERROR.getCode(), "时间序列参数异常");
         }
-        //  返回的时序列名
-        List<String> timeSeriesNameList = new ArrayList<>();
+        //  设备路径 -> 测点名称 -> 测点类型，同一个测点只保留第一次出现的
+        Map<String, Map<String, TSDataType>> devices = new LinkedHashMap<>();
+        Set<String> alignedDevices = new HashSet<>();
         for (TimeSeriesDto seriesDto : timeSeriesDto) {
             //  检查是否数据完整
             if (Objects.isNull(seriesDto)){
                 continue;
             }
             CheckParameterUtil.checkTimeSeriesParameterIsBlank(seriesDto);
-            //  获取连接
-            String path = seriesDto.getPath() + "." + seriesDto.getDevice() + "." + seriesDto.getTestPointName();
-            try {
-                if(!sessionService.checkTimeseriesExists(path)){
-                    TSDataType tsDataType = TSDataTypeUtil.getTsDataType(seriesDto.getTestPointType());
-                    sessionService.createTimeseries(path,
-                            tsDataType,
-                            TSEncoding.PLAIN,
-                            CompressionType.SNAPPY
-                    );
-                    timeSeriesNameList.add(path);
+            String devicePath = seriesDto.getPath() + "." + seriesDto.getDevice();
+            devices.computeIfAbsent(devicePath, k -> new LinkedHashMap<>())
+                    .putIfAbsent(seriesDto.getTestPointName(), TSDataTypeUtil.getTsDataType(seriesDto.getTestPointType()));
+            if (Boolean.TRUE.equals(seriesDto.getAligned())) {
+                alignedDevices.add(devicePath);
+            }
+        }
+
+        //  返回的时序列名
+        List<String> timeSeriesNameList = new ArrayList<>();
+        List<String> pathList = new ArrayList<>();
+        List<TSDataType> dataTypes = new ArrayList<>();
+        for (Map.Entry<String, Map<String, TSDataType>> entry : devices.entrySet()) {
+            String devicePath = entry.getKey();
+            Map<String, TSDataType> measurements = entry.getValue();
+            List<String> missing = schemaCache.filterMissing(devicePath, measurements.keySet());
+            if (missing.isEmpty()) {
+                continue;
+            }
+            if (alignedDevices.contains(devicePath)) {
+                timeSeriesNameList.addAll(createAlignedTimeSeries(devicePath, missing, measurements));
+                continue;
+            }
+            for (String measurement : missing) {
+                pathList.add(devicePath + "." + measurement);
+                dataTypes.add(measurements.get(measurement));
+                if (pathList.size() == NUMBER_10000) {
+                    timeSeriesNameList.addAll(createMultiTimeSeries(pathList, dataTypes));
+                    pathList = new ArrayList<>();
+                    dataTypes = new ArrayList<>();
                 }
-                throw new ServiceException(FAIL.getCode(), "已经存在了" + path);
-            } catch (IoTDBConnectionException | StatementExecutionException e) {
-                throw new ServiceException(SYSTEM_ERROR.getCode(), e.getMessage());
             }
         }
+        if (!pathList.isEmpty()) {
+            timeSeriesNameList.addAll(createMultiTimeSeries(pathList, dataTypes));
+        }
         return timeSeriesNameList;
     }
+
+    /**
+     * 创建元数据模板并挂载到数据库路径
+     */
+    @Override
+    public String createTemplate(TemplateDto templateDto) {
+        if (Objects.isNull(templateDto)
+                || !CheckParameterUtil.checkStrings(templateDto.getName(), templateDto.getPath())) {
+            throw new ServiceException(VALID_ERROR.getCode(), "模板参数异常");
+        }
+        List<String> testPointName = templateDto.getTestPointName();
+        CheckParameterUtil.checkMeasurements(testPointName, false);
+        List<String> testPointType = templateDto.getTestPointType();
+        if (Objects.isNull(testPointType) || testPointName.size() != testPointType.size()) {
+            throw new ServiceException(VALID_ERROR.getCode(), "测点名称和测点类型不对应");
+        }
+        try {
+            Template template = new Template(templateDto.getName(), Boolean.TRUE.equals(templateDto.getAligned()));
+            for (int i = 0; i < testPointName.size(); i++) {
+                template.addToTemplate(new MeasurementNode(testPointName.get(i),
+                        TSDataTypeUtil.getTsDataType(testPointType.get(i)),
+                        TSEncoding.PLAIN,
+                        CompressionType.SNAPPY));
+            }
+            sessionService.createSchemaTemplate(template);
+            sessionService.setSchemaTemplate(templateDto.getName(), templateDto.getPath());
+        } catch (IOException | IoTDBConnectionException | StatementExecutionException e) {
+            throw new ServiceException(SYSTEM_ERROR.getCode(), e.getMessage());
+        }
+        return templateDto.getName();
+    }
+
+    /**
+     * 在挂载路径下按模板激活设备，每 NUMBER_10000 个设备一次请求
+     */
+    @Override
+    public List<String> activateTemplate(TemplateDto templateDto) {
+        if (Objects.isNull(templateDto) || !CheckParameterUtil.checkStrings(templateDto.getPath())) {
+            throw new ServiceException(VALID_ERROR.getCode(), "模板参数异常");
+        }
+        if (CollectionUtil.isEmpty(templateDto.getDevices()) || CollectionUtil.contains(templateDto.getDevices(), "")) {
+            throw new ServiceException(VALID_ERROR.getCode(), "设备参数异常");
+        }
+        List<String> devicePaths = templateDto.getDevices().stream()
+                .distinct()
+                .map(device -> templateDto.getPath() + "." + device)
+                .collect(Collectors.toList());
+        try {
+            for (int from = 0; from < devicePaths.size(); from += NUMBER_10000) {
+                sessionService.createTimeseriesUsingSchemaTemplate(
+                        devicePaths.subList(from, Math.min(from + NUMBER_10000, devicePaths.size())));
+            }
+        } catch (IoTDBConnectionException | StatementExecutionException e) {
+            throw new ServiceException(SYSTEM_ERROR.getCode(), e.getMessage());
+        }
+        return devicePaths;
+    }
+
+    /**
+     * 删除时间序列（连同数据）
+     */
+    @Override
+    public List<String> deleteTimeSeries(List<TimeSeriesDto> timeSeriesDto) {
+        if (CollectionUtil.isEmpty(timeSeriesDto)) {
+            throw new ServiceException(VALID_ERROR.getCode(), "时间序列参数异常");
+        }
+        List<String> pathList = new ArrayList<>();
+        for (TimeSeriesDto seriesDto : timeSeriesDto) {
+            if (Objects.isNull(seriesDto)){
+                continue;
+            }
+            CheckParameterUtil.checkInsertTimeSeriesParameter(seriesDto);
+            String path = seriesDto.getPath() + "." + seriesDto.getDevice() + "." + seriesDto.getTestPointName();
+            if (schemaCache.exists(path) && !pathList.contains(path)) {
+                pathList.add(path);
+            }
+        }
+        if (pathList.isEmpty()) {
+            return pathList;
+        }
+        try {
+            sessionService.deleteTimeseries(pathList);
+        } catch (IoTDBConnectionException | StatementExecutionException e) {
+            throw new ServiceException(SYSTEM_ERROR.getCode(), e.getMessage());
+        } finally {
+            // 删除失败时可能已经删掉了一部分，移出缓存后下次用到时重新加载
+            pathList.forEach(schemaCache::remove);
+            for (String path : pathList) {
+                int index = path.lastIndexOf('.');
+                queryResultCache.invalidate(path.substring(0, index), Collections.singletonList(path.substring(index + 1)),
+                        Long.MIN_VALUE, Long.MAX_VALUE);
+                seriesStatsRegistry.remove(path);
+            }
+        }
+        return pathList;
+    }
+
+    /**
+     * 一次创建多个非对齐的时间序列
+     */
+    private List<String> createMultiTimeSeries(List<String> pathList, List<TSDataType> dataTypes) {
+        try {
+            sessionService.createMultiTimeseries(pathList,
+                    dataTypes,
+                    Collections.nCopies(pathList.size(), TSEncoding.PLAIN),
+                    Collections.nCopies(pathList.size(), CompressionType.SNAPPY),
+                    null, null, null, null
+            );
+        } catch (IoTDBConnectionException | StatementExecutionException e) {
+            throw new ServiceException(SYSTEM_ERROR.getCode(), e.getMessage());
+        }
+        for (int i = 0; i < pathList.size(); i++) {
+            schemaCache.put(pathList.get(i), dataTypes.get(i), TSEncoding.PLAIN);
+        }
+        return pathList;
+    }
+
+    /**
+     * 创建对齐设备的时间序列
+     * @param devicePath : 设备路径
+     * @param missing : 需要创建的测点
+     * @param measurements : 测点名称 -> 测点类型
+     * @return 新创建的时间序列
+     */
+    private List<String> createAlignedTimeSeries(String devicePath, List<String> missing, Map<String, TSDataType> measurements) {
+        List<TSDataType> dataTypes = new ArrayList<>(missing.size());
+        missing.forEach(measurement -> dataTypes.add(measurements.get(measurement)));
+        try {
+            sessionService.createAlignedTimeseries(devicePath,
+                    missing,
+                    dataTypes,
+                    Collections.nCopies(missing.size(), TSEncoding.PLAIN),
+                    Collections.nCopies(missing.size(), CompressionType.SNAPPY),
+                    null
+            );
+        } catch (IoTDBConnectionException | StatementExecutionException e) {
+            throw new ServiceException(SYSTEM_ERROR.getCode(), e.getMessage());
+        }
+        List<String> pathList = new ArrayList<>(missing.size());
+        for (int i = 0; i < missing.size(); i++) {
+            String path = devicePath + "." + missing.get(i);
+            schemaCache.put(path, dataTypes.get(i), TSEncoding.PLAIN);
+            pathList.add(path);
+        }
+        return pathList;
+    }
 }
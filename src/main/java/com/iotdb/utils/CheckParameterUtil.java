@@ -4,6 +4,7 @@ import cn.hutool.core.collection.CollectionUtil;
 import com.iotdb.common.Constants;
 import static com.iotdb.enums.StatusCodeEnum.*;
 import com.iotdb.dto.DataDto;
+import com.iotdb.dto.DataDtos;
 import com.iotdb.dto.QueryDto;
 import com.iotdb.dto.TimeSeriesDto;
 import com.iotdb.exception.ServiceException;
@@ -35,6 +36,18 @@ public class CheckParameterUtil {
         }
     }
 
+    /**
+     * 插入的时候的时间序列参数校验，测点类型可以不传，由元数据缓存确定
+     * @param seriesDto : 时间序列对象
+     */
+    public static void checkInsertTimeSeriesParameter(TimeSeriesDto seriesDto) {
+        checkQueryTimeSeriesParameter(seriesDto);
+        if (StringUtils.isBlank(seriesDto.getTestPointName())
+                || StringUtils.isEmpty(seriesDto.getTestPointName())){
+            throw new ServiceException(VALID_ERROR.getCode(), "测点参数异常");
+        }
+    }
+
     /**
      * 查询的时候的时间序列参数校验
      * @param seriesDto : 查询中的时间序列对象只需要校验 数据库 和 设备
@@ -115,6 +128,22 @@ public class CheckParameterUtil {
         }
     }
 
+    /**
+     * 检查设备和测点参数，测点类型可以不传，传了就要和测点一一对应
+     * @param dataDtos : 一个设备的插入数据
+     */
+    public static void checkDeviceParameter(DataDtos dataDtos) {
+        if (!checkStrings(dataDtos.getPath(), dataDtos.getDevice())){
+            throw new ServiceException(VALID_ERROR.getCode(), "插入设备参数异常");
+        }
+        List<String> testPointName = dataDtos.getTestPointName();
+        checkMeasurements(testPointName, false);
+        List<String> testPointType = dataDtos.getTestPointType();
+        if (CollectionUtil.isNotEmpty(testPointType) && testPointName.size() != testPointType.size()){
+            throw new ServiceException(VALID_ERROR.getCode(), "测点名称和测点类型不对应");
+        }
+    }
+
     /**
      * 判断传入字符串是否为空
      * @param strings 字符串(可以传入多个)
@@ -0,0 +1,174 @@
+package com.iotdb.utils;
+
+import com.iotdb.exception.ServiceException;
+import com.iotdb.vo.ColumnarResultVo;
+import org.apache.iotdb.isession.pool.SessionDataSetWrapper;
+import org.apache.iotdb.rpc.IoTDBConnectionException;
+import org.apache.iotdb.rpc.StatementExecutionException;
+import org.apache.tsfile.enums.TSDataType;
+import org.apache.tsfile.read.common.Field;
+import org.apache.tsfile.read.common.RowRecord;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.iotdb.enums.StatusCodeEnum.SYSTEM_ERROR;
+
+/**
+ * 把结果集直接读成按列的原始类型数组，不经过每行一个 HashMap
+ * @author tjb
+ * @date 2026/10/18
+ */
+public class ColumnarResultBuilder {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * 读取整个结果集，读完后关闭结果集
+     * @param dataSet : 结果集
+     * @return 按列的结果
+     */
+    public static ColumnarResultVo build(SessionDataSetWrapper dataSet) {
+        try {
+            List<String> columnNames = dataSet.getColumnNames();
+            ColumnBuffer[] buffers = new ColumnBuffer[columnNames.size() - 1];
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = new ColumnBuffer(columnNames.get(i + 1));
+            }
+            long[] time = new long[INITIAL_CAPACITY];
+            int rows = 0;
+            while (dataSet.hasNext()) {
+                RowRecord record = dataSet.next();
+                if (rows == time.length) {
+                    time = Arrays.copyOf(time, rows * 2);
+                }
+                time[rows] = record.getTimestamp();
+                List<Field> fields = record.getFields();
+                for (int i = 0; i < buffers.length; i++) {
+                    buffers[i].add(rows, fields.get(i));
+                }
+                rows++;
+            }
+            List<ColumnarResultVo.Column> columns = new ArrayList<>(buffers.length);
+            for (ColumnBuffer buffer : buffers) {
+                columns.add(buffer.toColumn(rows));
+            }
+            return ColumnarResultVo.builder()
+                    .rows(rows)
+                    .time(Arrays.copyOf(time, rows))
+                    .columns(columns)
+                    .build();
+        } catch (IoTDBConnectionException | StatementExecutionException e) {
+            throw new ServiceException(SYSTEM_ERROR.getCode(), e.getMessage());
+        } finally {
+            dataSet.close();
+        }
+    }
+
+    /**
+     * 一个测点的数据，第一次遇到非空值时按类型分配数组
+     */
+    private static class ColumnBuffer {
+        private final String name;
+        private TSDataType dataType;
+        private Object values;
+        private int capacity = INITIAL_CAPACITY;
+        private int[] nulls = new int[16];
+        private int nullCount;
+
+        ColumnBuffer(String name) {
+            this.name = name;
+        }
+
+        void add(int row, Field field) {
+            if (row == capacity) {
+                capacity *= 2;
+                if (values != null) {
+                    values = copyOf(values, capacity);
+                }
+            }
+            if (field == null || field.getDataType() == null) {
+                if (nullCount == nulls.length) {
+                    nulls = Arrays.copyOf(nulls, nullCount * 2);
+                }
+                nulls[nullCount++] = row;
+                return;
+            }
+            if (values == null) {
+                dataType = field.getDataType();
+                values = allocate(dataType, capacity);
+            }
+            switch (dataType) {
+                case BOOLEAN:
+                    ((boolean[]) values)[row] = field.getBoolV();
+                    break;
+                case INT32:
+                    ((int[]) values)[row] = field.getIntV();
+                    break;
+                case INT64:
+                case TIMESTAMP:
+                    ((long[]) values)[row] = field.getLongV();
+                    break;
+                case FLOAT:
+                    ((float[]) values)[row] = field.getFloatV();
+                    break;
+                case DOUBLE:
+                    ((double[]) values)[row] = field.getDoubleV();
+                    break;
+                case BLOB:
+                    ((byte[][]) values)[row] = field.getBinaryV().getValues();
+                    break;
+                case DATE:
+                    ((String[]) values)[row] = field.getDateV().toString();
+                    break;
+                default:
+                    ((String[]) values)[row] = field.getStringValue();
+            }
+        }
+
+        ColumnarResultVo.Column toColumn(int rows) {
+            return ColumnarResultVo.Column.builder()
+                    .name(name)
+                    .type(dataType == null ? null : dataType.name())
+                    // 整列都是空值时没有类型，values 为空
+                    .values(values == null ? null : copyOf(values, rows))
+                    .nulls(Arrays.copyOf(nulls, nullCount))
+                    .build();
+        }
+
+        private static Object allocate(TSDataType dataType, int capacity) {
+            switch (dataType) {
+                case BOOLEAN:
+                    return new boolean[capacity];
+                case INT32:
+                    return new int[capacity];
+                case INT64:
+                case TIMESTAMP:
+                    return new long[capacity];
+                case FLOAT:
+                    return new float[capacity];
+                case DOUBLE:
+                    return new double[capacity];
+                case BLOB:
+                    return new byte[capacity][];
+                default:
+                    return new String[capacity];
+            }
+        }
+
+        private static Object copyOf(Object values, int length) {
+            if (values instanceof boolean[]) {
+                return Arrays.copyOf((boolean[]) values, length);
+            } else if (values instanceof int[]) {
+                return Arrays.copyOf((int[]) values, length);
+            } else if (values instanceof long[]) {
+                return Arrays.copyOf((long[]) values, length);
+            } else if (values instanceof float[]) {
+                return Arrays.copyOf((float[]) values, length);
+            } else if (values instanceof double[]) {
+                return Arrays.copyOf((double[]) values, length);
+            }
+            return Arrays.copyOf((Object[]) values, length);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.iotdb.utils;
+
+import com.iotdb.exception.ServiceException;
+import com.iotdb.vo.DownsampleResultVo;
+import org.apache.iotdb.isession.pool.SessionDataSetWrapper;
+import org.apache.iotdb.rpc.IoTDBConnectionException;
+import org.apache.iotdb.rpc.StatementExecutionException;
+import org.apache.tsfile.enums.TSDataType;
+import org.apache.tsfile.read.common.Field;
+import org.apache.tsfile.read.common.RowRecord;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.iotdb.enums.StatusCodeEnum.SYSTEM_ERROR;
+
+/**
+ * 图表用的降采样：
+ * M4 由数据库的 M4 函数完成，每个时间窗口返回第一个、最后一个、最小、最大四个点，这里只收集结果；
+ * LTTB（Largest-Triangle-Three-Buckets）在读取原始数据时逐行计算，按时间等分桶，
+ * 只缓存当前桶和下一个桶的点，内存占用约为时间范围内的数据量 / points 的两倍，数据越密每个桶越大
+ * @author tjb
+ * @date 2026/10/18
+ */
+public class Downsampler {
+
+    /**
+     * 读取整个结果集，每一列交给一个收集器，读完后关闭结果集
+     * @param dataSet : 结果集，第一列以外每列对应一个测点
+     * @param collectors : 每个测点的收集器
+     * @param names : 测点名称
+     * @param types : 测点类型，只能是数值类型
+     * @return 每个测点的结果
+     */
+    public static List<DownsampleResultVo.Series> collect(SessionDataSetWrapper dataSet, List<Collector> collectors,
+                                                          List<String> names, List<TSDataType> types) {
+        try {
+            while (dataSet.hasNext()) {
+                RowRecord record = dataSet.next();
+                long time = record.getTimestamp();
+                List<Field> fields = record.getFields();
+                for (int i = 0; i < collectors.size(); i++) {
+                    Field field = fields.get(i);
+                    if (field != null && field.getDataType() != null) {
+                        collectors.get(i).add(time, toDouble(field));
+                    }
+                }
+            }
+        } catch (IoTDBConnectionException | StatementExecutionException e) {
+            throw new ServiceException(SYSTEM_ERROR.getCode(), e.getMessage());
+        } finally {
+            dataSet.close();
+        }
+        List<DownsampleResultVo.Series> series = new ArrayList<>(collectors.size());
+        for (int i = 0; i < collectors.size(); i++) {
+            PointBuffer points = collectors.get(i).finish();
+            series.add(DownsampleResultVo.Series.builder()
+                    .name(names.get(i))
+                    .type(types.get(i).name())
+                    .time(Arrays.copyOf(points.times, points.size))
+                    .values(Arrays.copyOf(points.values, points.size))
+                    .build());
+        }
+        return series;
+    }
+
+    private static double toDouble(Field field) {
+        switch (field.getDataType()) {
+            case INT32:
+                return field.getIntV();
+            case INT64:
+                return field.getLongV();
+            case FLOAT:
+                return field.getFloatV();
+            default:
+                return field.getDoubleV();
+        }
+    }
+
+    /**
+     * 一个测点的收集器，按时间顺序接收点
+     */
+    public interface Collector {
+        void add(long time, double value);
+
+        PointBuffer finish();
+    }
+
+    /**
+     * 原样保留所有点，用于数据库已经降采样的结果
+     */
+    public static class AllPoints implements Collector {
+        private final PointBuffer points = new PointBuffer(1024);
+
+        @Override
+        public void add(long time, double value) {
+            points.add(time, value);
+        }
+
+        @Override
+        public PointBuffer finish() {
+            return points;
+        }
+    }
+
+    /**
+     * 流式 LTTB：第一个点和最后一个点一定保留，中间按时间分成 points - 2 个桶，每个桶选一个点，
+     * 选和上一个选中的点、下一个桶的平均点组成的三角形面积最大的点
+     */
+    public static class Lttb implements Collector {
+        private final long start;
+        private final double bucketWidth;
+        private final PointBuffer selected;
+
+        private PointBuffer current = new PointBuffer(64);
+        private PointBuffer next = new PointBuffer(64);
+        private long currentBucket;
+        private long nextBucket;
+        private boolean first = true;
+        private long lastTime;
+        private double lastValue;
+
+        /**
+         * @param start : 开始时间
+         * @param end : 结束时间
+         * @param points : 目标点数，不小于 3
+         */
+        public Lttb(long start, long end, int points) {
+            this.start = start;
+            // 结束时间也在范围内，桶的序号不超过 points - 3
+            this.bucketWidth = (double) (end - start + 1) / (points - 2);
+            this.selected = new PointBuffer(points);
+        }
+
+        @Override
+        public void add(long time, double value) {
+            if (first) {
+                selected.add(time, value);
+                lastTime = time;
+                lastValue = value;
+                first = false;
+                return;
+            }
+            long bucket = (long) ((time - start) / bucketWidth);
+            if (current.size == 0 || bucket == currentBucket) {
+                current.add(time, value);
+                currentBucket = bucket;
+            } else if (next.size == 0 || bucket == nextBucket) {
+                next.add(time, value);
+                nextBucket = bucket;
+            } else {
+                // 下一个桶已经完整，可以从当前桶中选点
+                select(current, next.averageTime(), next.averageValue());
+                PointBuffer recycled = current;
+                current = next;
+                currentBucket = nextBucket;
+                next = recycled;
+                next.size = 0;
+                next.add(time, value);
+                nextBucket = bucket;
+            }
+        }
+
+        @Override
+        public PointBuffer finish() {
+            if (first) {
+                return selected;
+            }
+            // 最后一个点单独保留，不参与桶内选点
+            PointBuffer tail = next.size > 0 ? next : current;
+            if (tail.size == 0) {
+                return selected;
+            }
+            tail.size--;
+            long endTime = tail.times[tail.size];
+            double endValue = tail.values[tail.size];
+            if (next.size > 0) {
+                select(current, next.averageTime(), next.averageValue());
+                select(next, endTime, endValue);
+            } else if (current.size > 0) {
+                select(current, endTime, endValue);
+            }
+            selected.add(endTime, endValue);
+            return selected;
+        }
+
+        private void select(PointBuffer bucket, double nextTime, double nextValue) {
+            if (bucket.size == 0) {
+                return;
+            }
+            int best = 0;
+            double maxArea = -1;
+            for (int i = 0; i < bucket.size; i++) {
+                // 时间用相对上一个选中点的偏移，避免纳秒时间戳相乘时丢精度
+                double dt1 = bucket.times[i] - lastTime;
+                double dt2 = nextTime - lastTime;
+                double area = Math.abs(dt1 * (nextValue - lastValue) - dt2 * (bucket.values[i] - lastValue));
+                if (area > maxArea) {
+                    maxArea = area;
+                    best = i;
+                }
+            }
+            lastTime = bucket.times[best];
+            lastValue = bucket.values[best];
+            selected.add(lastTime, lastValue);
+        }
+    }
+
+    /**
+     * 可扩容的时间、数值数组
+     */
+    public static class PointBuffer {
+        private long[] times;
+        private double[] values;
+        private int size;
+
+        PointBuffer(int capacity) {
+            times = new long[capacity];
+            values = new double[capacity];
+        }
+
+        void add(long time, double value) {
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            times[size] = time;
+            values[size] = value;
+            size++;
+        }
+
+        double averageTime() {
+            double sum = 0;
+            for (int i = 0; i < size; i++) {
+                sum += times[i] - times[0];
+            }
+            return times[0] + sum / size;
+        }
+
+        double averageValue() {
+            double sum = 0;
+            for (int i = 0; i < size; i++) {
+                sum += values[i];
+            }
+            return sum / size;
+        }
+    }
+}
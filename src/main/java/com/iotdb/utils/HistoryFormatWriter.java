@@ -0,0 +1,144 @@
+package com.iotdb.utils;
+
+import com.iotdb.common.ServiceTypeConstants;
+import org.apache.tsfile.enums.TSDataType;
+import org.apache.tsfile.read.common.Field;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static com.iotdb.common.Constants.JOIN_CHAR;
+
+/**
+ * 历史数据的 | 分隔格式，SCADA 前端使用：
+ * 127.0.0.1|3|设备路径\0\0|测点序号|类型|数据个数|时间:值|时间:值|...|测点序号|类型|数据个数|...
+ * 每个测点的数据个数要写在数据前面，由调用方先查询个数，再边读边写数据，不缓冲测点的数据
+ * @author tjb
+ * @date 2026/10/18
+ */
+public class HistoryFormatWriter {
+    private static final byte[] HOST = "127.0.0.1".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] DEVICE_END = "\\0\\0".getBytes(StandardCharsets.UTF_8);
+
+    private final OutputStream out;
+
+    public HistoryFormatWriter(OutputStream outputStream) {
+        this.out = new BufferedOutputStream(outputStream, 64 * 1024);
+    }
+
+    /**
+     * 写入消息头
+     */
+    public void writeHeader() throws IOException {
+        out.write(HOST);
+        out.write(JOIN_CHAR);
+        writeAscii(String.valueOf(ServiceTypeConstants.HISTORY.getCode()));
+        out.write(JOIN_CHAR);
+    }
+
+    /**
+     * 写入设备头，之后依次写入设备下的测点
+     */
+    public void writeDevice(String devicePath) throws IOException {
+        out.write(devicePath.getBytes(StandardCharsets.UTF_8));
+        out.write(DEVICE_END);
+        out.write(JOIN_CHAR);
+    }
+
+    /**
+     * 写入测点头，之后依次写入这个测点的 count 个数据
+     * @param index : 测点序号，从 1 开始
+     * @param dataType : 测点类型
+     * @param count : 数据个数
+     */
+    public void writeSeriesHeader(int index, TSDataType dataType, long count) throws IOException {
+        writeAscii(String.valueOf(index));
+        out.write(JOIN_CHAR);
+        writeAscii(String.valueOf(dataType.getType()));
+        out.write(JOIN_CHAR);
+        writeAscii(String.valueOf(count));
+        out.write(JOIN_CHAR);
+    }
+
+    /**
+     * 写入一个数据，按原来 toString 的格式输出数值，FLOAT 按 float 输出，不带上 double 的精度尾数
+     * @param time : 时间
+     * @param dataType : 测点类型
+     * @param field : 值，不能为空值
+     */
+    public void writePoint(long time, TSDataType dataType, Field field) throws IOException {
+        writeAscii(String.valueOf(time));
+        out.write(':');
+        switch (dataType) {
+            case BOOLEAN:
+                writeAscii(field.getBoolV() ? "true" : "false");
+                break;
+            case INT32:
+                writeAscii(String.valueOf(field.getIntV()));
+                break;
+            case INT64:
+            case TIMESTAMP:
+                writeAscii(String.valueOf(field.getLongV()));
+                break;
+            case FLOAT:
+                writeAscii(String.valueOf(field.getFloatV()));
+                break;
+            case DOUBLE:
+                writeAscii(String.valueOf(field.getDoubleV()));
+                break;
+            case DATE:
+                writeAscii(field.getDateV().toString());
+                break;
+            default:
+                writeText(field.getStringValue());
+        }
+        out.write(JOIN_CHAR);
+    }
+
+    /**
+     * 没有可以重复的点时补齐数据个数用的点，值为类型的零值
+     * @param time : 时间
+     * @param dataType : 测点类型
+     */
+    public void writePlaceholder(long time, TSDataType dataType) throws IOException {
+        writeAscii(String.valueOf(time));
+        out.write(':');
+        switch (dataType) {
+            case BOOLEAN:
+                writeAscii("false");
+                break;
+            case INT32:
+            case INT64:
+            case TIMESTAMP:
+                writeAscii("0");
+                break;
+            case FLOAT:
+            case DOUBLE:
+                writeAscii("0.0");
+                break;
+            case DATE:
+                writeAscii(LocalDate.ofEpochDay(0).toString());
+                break;
+            default:
+                break;
+        }
+        out.write(JOIN_CHAR);
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    private void writeAscii(String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            out.write(value.charAt(i));
+        }
+    }
+
+    private void writeText(String value) throws IOException {
+        out.write(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
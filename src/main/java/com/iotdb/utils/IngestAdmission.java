@@ -0,0 +1,84 @@
+package com.iotdb.utils;
+
+import com.iotdb.config.IngestProperties;
+import com.iotdb.exception.ServiceException;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.iotdb.enums.StatusCodeEnum.TOO_MANY_REQUESTS;
+
+/**
+ * 写入准入控制：统计所有写入接口正在处理的请求体字节数和正在写入数据库的行数，
+ * 超过上限时不排队等待，直接拒绝并让客户端稍后重试，保证过载时内存和延迟都有上限
+ * @author tjb
+ * @date 2026/10/18
+ */
+@Component
+public class IngestAdmission {
+
+    @Resource
+    private IngestProperties ingestProperties;
+
+    private final AtomicLong inFlightBytes = new AtomicLong();
+    private final AtomicLong inFlightRows = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * 申请请求体字节数，超过上限抛出 TOO_MANY_REQUESTS
+     * @param bytes : 请求体字节数
+     */
+    public void acquireBytes(long bytes) {
+        if (!tryAcquire(inFlightBytes, bytes, ingestProperties.getAdmissionMaxBytes())) {
+            rejected.incrementAndGet();
+            throw new ServiceException(TOO_MANY_REQUESTS.getCode(), TOO_MANY_REQUESTS.getDesc());
+        }
+    }
+
+    public void releaseBytes(long bytes) {
+        inFlightBytes.addAndGet(-bytes);
+    }
+
+    /**
+     * 申请写入行数，超过上限抛出 TOO_MANY_REQUESTS
+     * @param rows : 行数
+     */
+    public void acquireRows(long rows) {
+        if (!tryAcquire(inFlightRows, rows, ingestProperties.getAdmissionMaxRows())) {
+            rejected.incrementAndGet();
+            throw new ServiceException(TOO_MANY_REQUESTS.getCode(), TOO_MANY_REQUESTS.getDesc());
+        }
+    }
+
+    public void releaseRows(long rows) {
+        inFlightRows.addAndGet(-rows);
+    }
+
+    public long getInFlightBytes() {
+        return inFlightBytes.get();
+    }
+
+    public long getInFlightRows() {
+        return inFlightRows.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * 空闲时单个超过上限的请求也放行，避免大请求永远进不来
+     */
+    private static boolean tryAcquire(AtomicLong counter, long amount, long max) {
+        while (true) {
+            long current = counter.get();
+            if (current > 0 && current + amount > max) {
+                return false;
+            }
+            if (counter.compareAndSet(current, current + amount)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.iotdb.utils;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.TimedCache;
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.core.util.IdUtil;
+import com.iotdb.config.IngestProperties;
+import com.iotdb.exception.ServiceException;
+import com.iotdb.handler.IngestAdmissionInterceptor;
+import com.iotdb.vo.IngestTicketVo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import static com.iotdb.enums.StatusCodeEnum.TOO_MANY_REQUESTS;
+
+/**
+ * 异步写入执行器：写入任务在独立的线程上执行，请求线程提交后立即返回任务ID，
+ * 运行环境支持虚拟线程时每个任务一个虚拟线程，否则使用固定大小的线程池。
+ * 请求体占用的准入字节数随任务一起保留到任务完成，没完成的任务不会因为过期被清除
+ * @author tjb
+ * @date 2026/10/18
+ */
+@Component
+public class IngestExecutor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(IngestExecutor.class);
+
+    private static final String PENDING = "PENDING";
+    private static final String RUNNING = "RUNNING";
+    private static final String SUCCESS = "SUCCESS";
+    private static final String FAILED = "FAILED";
+
+    @Resource
+    private IngestProperties ingestProperties;
+    @Resource
+    private IngestAdmission ingestAdmission;
+
+    private ExecutorService executor;
+    private Semaphore pending;
+    /**
+     * 已完成的任务，从完成开始保留 asyncTicketTtlMs
+     */
+    private TimedCache<String, Ticket> tickets;
+    /**
+     * 没完成的任务，数量受 asyncMaxPending 限制
+     */
+    private final Map<String, Ticket> running = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void start() {
+        executor = newExecutor(ingestProperties.getAsyncThreads());
+        pending = new Semaphore(ingestProperties.getAsyncMaxPending());
+        tickets = CacheUtil.newTimedCache(ingestProperties.getAsyncTicketTtlMs());
+        tickets.schedulePrune(ingestProperties.getAsyncTicketTtlMs());
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(ingestProperties.getAsyncWaitTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        tickets.cancelPruneSchedule();
+    }
+
+    /**
+     * 提交写入任务
+     * @param task : 写入任务，返回值作为写入结果
+     * @param wait : 是否等待写入完成后再返回
+     * @return 任务状态
+     */
+    public IngestTicketVo submit(Supplier<Object> task, boolean wait) {
+        // 没完成的任务太多直接拒绝，避免任务和数据在内存里堆积
+        if (!pending.tryAcquire()) {
+            throw new ServiceException(TOO_MANY_REQUESTS.getCode(), TOO_MANY_REQUESTS.getDesc());
+        }
+        // 请求体解析出的数据要等任务完成才释放，准入字节数也保留到那时
+        long bytes = IngestAdmissionInterceptor.detachBytes();
+        Ticket ticket = new Ticket(IdUtil.fastSimpleUUID());
+        running.put(ticket.id, ticket);
+        try {
+            ticket.future = CompletableFuture.supplyAsync(() -> {
+                ticket.status = RUNNING;
+                return task.get();
+            }, executor);
+        } catch (RuntimeException e) {
+            pending.release();
+            ingestAdmission.releaseBytes(bytes);
+            running.remove(ticket.id);
+            throw new ServiceException(TOO_MANY_REQUESTS.getCode(), TOO_MANY_REQUESTS.getDesc());
+        }
+        ticket.future.whenComplete((result, e) -> {
+            pending.release();
+            ingestAdmission.releaseBytes(bytes);
+            ticket.finishTime = System.currentTimeMillis();
+            ticket.status = e == null ? SUCCESS : FAILED;
+            if (e != null) {
+                LOGGER.error("异步写入任务{}失败:{}", ticket.id, e.getMessage());
+            }
+            // 从完成开始计算保留时间
+            tickets.put(ticket.id, ticket);
+            running.remove(ticket.id);
+        });
+        if (wait) {
+            await(ticket);
+        }
+        return ticket.toVo();
+    }
+
+    /**
+     * 查询任务状态，任务不存在或已经过期返回 null
+     * @param ticketId : 任务ID
+     * @param wait : 是否等待写入完成后再返回
+     */
+    public IngestTicketVo getTicket(String ticketId, boolean wait) {
+        Ticket ticket = running.get(ticketId);
+        if (ticket == null) {
+            ticket = tickets.get(ticketId, false);
+        }
+        if (ticket == null) {
+            return null;
+        }
+        if (wait) {
+            await(ticket);
+        }
+        return ticket.toVo();
+    }
+
+    private void await(Ticket ticket) {
+        try {
+            ticket.future.get(ingestProperties.getAsyncWaitTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            // 失败原因和超时后的状态都通过任务状态返回
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 优先使用虚拟线程（JDK 21+），通过反射调用以兼容低版本
+     */
+    private static ExecutorService newExecutor(int threads) {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            LOGGER.info("异步写入使用虚拟线程");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            LOGGER.info("异步写入使用{}个线程", threads);
+            return Executors.newFixedThreadPool(threads,
+                    new ThreadFactoryBuilder().setNamePrefix("ingest-async").build());
+        }
+    }
+
+    private static class Ticket {
+        private final String id;
+        private final long submitTime = System.currentTimeMillis();
+        private volatile String status = PENDING;
+        private volatile Long finishTime;
+        private volatile CompletableFuture<Object> future;
+
+        Ticket(String id) {
+            this.id = id;
+        }
+
+        IngestTicketVo toVo() {
+            IngestTicketVo.IngestTicketVoBuilder builder = IngestTicketVo.builder()
+                    .ticketId(id)
+                    .status(status)
+                    .submitTime(submitTime)
+                    .finishTime(finishTime);
+            CompletableFuture<Object> current = future;
+            if (current != null && current.isDone()) {
+                try {
+                    builder.status(SUCCESS).result(current.join());
+                } catch (RuntimeException e) {
+                    Throwable cause = e.getCause() == null ? e : e.getCause();
+                    builder.status(FAILED).message(cause.getMessage());
+                }
+            }
+            return builder.build();
+        }
+    }
+}
@@ -0,0 +1,413 @@
+package com.iotdb.utils;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iotdb.config.IoTDBProperties;
+import com.iotdb.config.QueryProperties;
+import com.iotdb.exception.ServiceException;
+import org.apache.iotdb.isession.pool.SessionDataSetWrapper;
+import org.apache.iotdb.rpc.IoTDBConnectionException;
+import org.apache.iotdb.rpc.StatementExecutionException;
+import org.apache.tsfile.read.common.Field;
+import org.apache.tsfile.read.common.RowRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static com.iotdb.enums.StatusCodeEnum.SUCCESS;
+import static com.iotdb.enums.StatusCodeEnum.SYSTEM_ERROR;
+import static com.iotdb.enums.StatusCodeEnum.TOO_MANY_REQUESTS;
+import static com.iotdb.enums.StatusCodeEnum.VALID_ERROR;
+
+/**
+ * 多设备查询：每个设备的查询在单独的线程上执行（各自从连接池取一个 session），
+ * 读到的行按批放入有界队列；请求线程按时间做 k 路归并，同一时间的各设备数据合成一行流式输出。
+ * 总耗时取决于最慢的设备，而不是所有设备的耗时之和。
+ * 归并要等所有设备都有数据，所以开始前一次占用所有设备的名额（线程数和连接池大小中较小的一个），
+ * 名额不够时直接返回繁忙，不会出现一部分设备占着 session 等其他设备排队的情况
+ * <pre>
+ * {"flag":true,"code":200,"message":"操作成功","data":[{"time":..,"root.sg.d1.s1":..,"root.sg.d2.s1":..},...]}
+ * </pre>
+ * @author tjb
+ * @date 2026/10/18
+ */
+@Component
+public class MultiDeviceQueryExecutor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MultiDeviceQueryExecutor.class);
+    private static final SerializableString TIME = new SerializedString("time");
+    private static final int BATCH_ROWS = 1024;
+    private static final int QUEUE_BATCHES = 4;
+    private static final Object END = new Object();
+
+    @Resource
+    private QueryRunner queryRunner;
+    @Resource
+    private QueryProperties queryProperties;
+    @Resource
+    private IoTDBProperties ioTDBProperties;
+
+    private ExecutorService executor;
+    /**
+     * 同时查询的设备数，每个设备占用一个线程和一个 session
+     */
+    private Semaphore permits;
+    private int maxDevices;
+
+    @PostConstruct
+    public void start() {
+        maxDevices = queryProperties.getMultiDeviceThreads();
+        if (ioTDBProperties.getMaxSize() > 0 && ioTDBProperties.getMaxSize() < maxDevices) {
+            LOGGER.warn("多设备查询线程数{}超过连接池大小{}，按连接池大小限制", maxDevices, ioTDBProperties.getMaxSize());
+            maxDevices = ioTDBProperties.getMaxSize();
+        }
+        permits = new Semaphore(maxDevices);
+        executor = Executors.newFixedThreadPool(maxDevices,
+                new ThreadFactoryBuilder().setNamePrefix("query-device").build());
+    }
+
+    /**
+     * 一次查询最多的设备数，不超过线程数和连接池大小
+     */
+    public int maxDevices() {
+        return maxDevices;
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 并发执行每个设备的查询，按时间归并后写入输出流。
+     * 所有设备的查询都成功开始后才输出，之前的失败按普通请求返回错误
+     * @param objectMapper : json
+     * @param sqls : 每个设备的查询语句，结果按时间升序
+     * @param limit : 最多输出的行数
+     * @param timeoutMs : 每个设备查询的超时时间(毫秒)，可以为空
+     * @param fetchSize : 每次从数据库取回的行数，可以为空
+     * @param outputStream : 输出流
+     * @return 输出的行数
+     */
+    public long stream(ObjectMapper objectMapper, List<String> sqls, long limit,
+                       Long timeoutMs, Integer fetchSize, OutputStream outputStream) {
+        if (sqls.size() > maxDevices) {
+            throw new ServiceException(VALID_ERROR.getCode(), "一次最多查询" + maxDevices + "个设备");
+        }
+        if (!permits.tryAcquire(sqls.size())) {
+            throw new ServiceException(TOO_MANY_REQUESTS.getCode(), "多设备查询繁忙，请稍后重试");
+        }
+        // 等待设备数据的时间不超过查询超时时间，不限制超时的查询按最大超时时间等待
+        long timeout = queryRunner.timeoutOf("queryByDevices", timeoutMs);
+        long waitMs = timeout > 0 ? timeout : queryProperties.getMaxTimeoutMs();
+        List<DeviceCursor> cursors = new ArrayList<>(sqls.size());
+        try {
+            for (String sql : sqls) {
+                DeviceCursor cursor = new DeviceCursor(sql, timeoutMs, fetchSize, waitMs);
+                try {
+                    executor.execute(cursor);
+                } catch (RejectedExecutionException e) {
+                    // 名额由执行的查询归还，没有执行的在这里归还
+                    permits.release(sqls.size() - cursors.size());
+                    throw new ServiceException(SYSTEM_ERROR.getCode(), "多设备查询已停止");
+                }
+                cursors.add(cursor);
+            }
+            // 等所有设备返回列名，任何一个设备失败时还没有输出
+            List<SerializableString[]> names = new ArrayList<>(cursors.size());
+            for (DeviceCursor cursor : cursors) {
+                List<String> columnNames = cursor.awaitColumns();
+                SerializableString[] deviceNames = new SerializableString[columnNames.size() - 1];
+                for (int i = 0; i < deviceNames.length; i++) {
+                    deviceNames[i] = new SerializedString(columnNames.get(i + 1));
+                }
+                names.add(deviceNames);
+            }
+            return merge(objectMapper, cursors, names, limit, outputStream);
+        } finally {
+            cursors.forEach(DeviceCursor::cancel);
+        }
+    }
+
+    private long merge(ObjectMapper objectMapper, List<DeviceCursor> cursors, List<SerializableString[]> names,
+                       long limit, OutputStream outputStream) {
+        long rows = 0;
+        int devices = cursors.size();
+        TimeHeap heap = new TimeHeap(devices);
+        boolean[] matched = new boolean[devices];
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.writeStartObject();
+            generator.writeBooleanField("flag", true);
+            generator.writeNumberField("code", SUCCESS.getCode());
+            generator.writeStringField("message", SUCCESS.getDesc());
+            generator.writeArrayFieldStart("data");
+            try {
+                for (int i = 0; i < devices; i++) {
+                    if (cursors.get(i).advance()) {
+                        heap.push(cursors.get(i).time(), i);
+                    }
+                }
+                while (heap.size > 0 && rows < limit) {
+                    long time = heap.peekTime();
+                    while (heap.size > 0 && heap.peekTime() == time) {
+                        matched[heap.pop()] = true;
+                    }
+                    generator.writeStartObject();
+                    generator.writeFieldName(TIME);
+                    generator.writeNumber(time);
+                    for (int i = 0; i < devices; i++) {
+                        SerializableString[] deviceNames = names.get(i);
+                        List<Field> fields = matched[i] ? cursors.get(i).fields() : null;
+                        for (int j = 0; j < deviceNames.length; j++) {
+                            generator.writeFieldName(deviceNames[j]);
+                            // 这个时间没有数据的设备输出 null，每一行的列都相同
+                            QueryResultWriter.writeValue(generator, fields == null ? null : fields.get(j));
+                        }
+                    }
+                    generator.writeEndObject();
+                    for (int i = 0; i < devices; i++) {
+                        if (matched[i]) {
+                            matched[i] = false;
+                            if (cursors.get(i).advance()) {
+                                heap.push(cursors.get(i).time(), i);
+                            }
+                        }
+                    }
+                    if (++rows == 1) {
+                        generator.flush();
+                    }
+                }
+                generator.writeEndArray();
+            } catch (ServiceException e) {
+                LOGGER.error("多设备查询输出到第{}行时失败:{}", rows, e.getMessage());
+                generator.writeEndArray();
+                generator.writeStringField("error", e.getMessage());
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            LOGGER.warn("多设备查询输出中断，已输出{}行:{}", rows, e.getMessage());
+        }
+        return rows;
+    }
+
+    /**
+     * 一个设备的查询：在查询线程上读取结果集放入队列，请求线程从队列中按行取出。
+     * 队列中依次是列名、若干批行数据、结束标记；出错时放入异常
+     */
+    private class DeviceCursor implements Runnable {
+        private final String sql;
+        private final Long timeoutMs;
+        private final Integer fetchSize;
+        private final long waitMs;
+        private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUE_BATCHES + 2);
+        private volatile boolean cancelled;
+
+        private RowRecord[] batch;
+        private int batchSize;
+        private int position;
+        private boolean finished;
+
+        DeviceCursor(String sql, Long timeoutMs, Integer fetchSize, long waitMs) {
+            this.sql = sql;
+            this.timeoutMs = timeoutMs;
+            this.fetchSize = fetchSize;
+            this.waitMs = waitMs;
+        }
+
+        @Override
+        public void run() {
+            try {
+                // 排队期间请求已经结束
+                if (!cancelled) {
+                    query();
+                }
+            } finally {
+                permits.release();
+            }
+        }
+
+        private void query() {
+            SessionDataSetWrapper dataSet = null;
+            try {
+                dataSet = queryRunner.execute("queryByDevices", timeoutMs, fetchSize, sql);
+                if (!offer(new ArrayList<>(dataSet.getColumnNames()))) {
+                    return;
+                }
+                RowRecord[] rows = new RowRecord[BATCH_ROWS];
+                int size = 0;
+                while (!cancelled && dataSet.hasNext()) {
+                    rows[size++] = dataSet.next();
+                    if (size == BATCH_ROWS) {
+                        if (!offer(rows)) {
+                            return;
+                        }
+                        rows = new RowRecord[BATCH_ROWS];
+                        size = 0;
+                    }
+                }
+                if (size > 0 && !offer(Arrays.copyOf(rows, size))) {
+                    return;
+                }
+                offer(END);
+            } catch (IoTDBConnectionException | StatementExecutionException | RuntimeException e) {
+                offer(e);
+            } finally {
+                if (dataSet != null) {
+                    dataSet.close();
+                }
+            }
+        }
+
+        /**
+         * 放入队列，队列满时等待请求线程取走；请求结束后返回 false
+         */
+        private boolean offer(Object item) {
+            try {
+                while (!cancelled) {
+                    if (queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                        return true;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<String> awaitColumns() {
+            return (List<String>) take();
+        }
+
+        /**
+         * 移到下一行，没有更多数据时返回 false
+         */
+        boolean advance() {
+            if (batch != null && ++position < batchSize) {
+                return true;
+            }
+            if (finished) {
+                return false;
+            }
+            Object item = take();
+            if (item == END) {
+                finished = true;
+                batch = null;
+                return false;
+            }
+            batch = (RowRecord[]) item;
+            batchSize = batch.length;
+            position = 0;
+            return true;
+        }
+
+        long time() {
+            return batch[position].getTimestamp();
+        }
+
+        List<Field> fields() {
+            return batch[position].getFields();
+        }
+
+        private Object take() {
+            Object item;
+            try {
+                item = queue.poll(waitMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ServiceException(SYSTEM_ERROR.getCode(), "查询被中断");
+            }
+            if (item == null) {
+                finished = true;
+                throw new ServiceException(SYSTEM_ERROR.getCode(), "等待设备查询结果超时");
+            }
+            if (item instanceof Exception) {
+                finished = true;
+                throw new ServiceException(SYSTEM_ERROR.getCode(), ((Exception) item).getMessage());
+            }
+            return item;
+        }
+
+        void cancel() {
+            cancelled = true;
+            queue.clear();
+        }
+    }
+
+    /**
+     * 按时间排序的小根堆，时间和设备序号分别存放在 long[] 和 int[] 中，不装箱
+     */
+    private static class TimeHeap {
+        private final long[] times;
+        private final int[] devices;
+        private int size;
+
+        TimeHeap(int capacity) {
+            times = new long[capacity];
+            devices = new int[capacity];
+        }
+
+        void push(long time, int device) {
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (times[parent] <= time) {
+                    break;
+                }
+                times[i] = times[parent];
+                devices[i] = devices[parent];
+                i = parent;
+            }
+            times[i] = time;
+            devices[i] = device;
+        }
+
+        long peekTime() {
+            return times[0];
+        }
+
+        int pop() {
+            int top = devices[0];
+            size--;
+            long time = times[size];
+            int device = devices[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && times[child + 1] < times[child]) {
+                    child++;
+                }
+                if (times[child] >= time) {
+                    break;
+                }
+                times[i] = times[child];
+                devices[i] = devices[child];
+                i = child;
+            }
+            times[i] = time;
+            devices[i] = device;
+            return top;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.iotdb.utils;
+
+import com.iotdb.exception.ServiceException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.CRC32;
+
+import static com.iotdb.enums.StatusCodeEnum.VALID_ERROR;
+
+/**
+ * 分页游标：上一页最后一行的时间加上查询条件的校验值，Base64 编码后交给客户端原样传回。
+ * 下一页按 time > 上一页最后时间（倒序时为 <）查询，不使用 OFFSET，每一页的代价相同。
+ * 校验值不同说明游标来自另一个查询，直接拒绝
+ * @author tjb
+ * @date 2026/10/18
+ */
+public class PageCursor {
+    private static final int LENGTH = Long.BYTES + Integer.BYTES;
+
+    /**
+     * 生成下一页的游标
+     * @param lastTime : 这一页最后一行的时间
+     * @param query : 查询条件，和解析时传入的相同
+     */
+    public static String encode(long lastTime, String query) {
+        ByteBuffer buffer = ByteBuffer.allocate(LENGTH);
+        buffer.putLong(lastTime);
+        buffer.putInt(checksum(query));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    /**
+     * 解析游标
+     * @param cursor : 客户端传回的游标
+     * @param query : 查询条件
+     * @return 上一页最后一行的时间
+     */
+    public static long decode(String cursor, String query) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new ServiceException(VALID_ERROR.getCode(), "分页游标不合法");
+        }
+        if (bytes.length != LENGTH) {
+            throw new ServiceException(VALID_ERROR.getCode(), "分页游标不合法");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long lastTime = buffer.getLong();
+        if (buffer.getInt() != checksum(query)) {
+            throw new ServiceException(VALID_ERROR.getCode(), "分页游标和查询条件不匹配");
+        }
+        return lastTime;
+    }
+
+    private static int checksum(String query) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(query.getBytes(StandardCharsets.UTF_8));
+        return (int) crc32.getValue();
+    }
+}
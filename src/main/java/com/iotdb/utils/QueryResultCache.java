@@ -0,0 +1,285 @@
+package com.iotdb.utils;
+
+import com.iotdb.config.QueryProperties;
+import com.iotdb.vo.ColumnarResultVo;
+import org.apache.tsfile.write.record.Tablet;
+import org.apache.tsfile.write.schema.MeasurementSchema;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 查询结果缓存：按 (查询类型, 设备, 测点, 时间范围, 条数) 缓存查询结果，总字节数有上限，按最近最少使用淘汰。
+ * 本服务写入或删除数据时，只让同一设备、测点有交集、时间范围有交集的结果失效；
+ * 查询最新 N 条的结果只要测点有写入就失效。
+ * 设备按路径的哈希分到固定数量的版本号上，写入时加一，查询前后版本号不同说明查询期间有写入，结果不缓存；
+ * 不同设备共用一个版本号时只会多放弃一些缓存，版本号占用的内存不随设备数量增长
+ * @author tjb
+ * @date 2026/10/18
+ */
+@Component
+public class QueryResultCache {
+    private static final String ALL_MEASUREMENTS = "*";
+    private static final int VERSION_SLOTS = 4096;
+
+    @Resource
+    private QueryProperties queryProperties;
+
+    /**
+     * 按访问顺序排列，最前面的最久没有使用
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * 设备 -> 该设备的缓存 key，写入时只检查这个设备的结果
+     */
+    private final Map<String, Set<String>> keysByDevice = new ConcurrentHashMap<>();
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_SLOTS);
+    /**
+     * 清空缓存时加一，包括还没有版本号的设备
+     */
+    private final AtomicLong epoch = new AtomicLong();
+    private long bytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * 生成缓存 key
+     * @param kind : 查询类型，同样的条件不同的返回格式分开缓存
+     * @param devicePath : 设备路径
+     * @param measurements : 测点
+     * @param start : 开始时间，没有时为 null
+     * @param end : 结束时间，没有时为 null
+     * @param limit : 条数，没有时为 null
+     */
+    public static String key(String kind, String devicePath, List<String> measurements, Long start, Long end, Long limit) {
+        return kind + '|' + devicePath + '|' + String.join(",", measurements) + '|' + start + '|' + end + '|' + limit;
+    }
+
+    public boolean isEnabled() {
+        return queryProperties.isCacheEnabled();
+    }
+
+    /**
+     * 设备当前的版本号，查询前获取，放入缓存时传回
+     */
+    public long version(String devicePath) {
+        return epoch.get() + versions.get(slot(devicePath));
+    }
+
+    /**
+     * 获取缓存的结果，没有或者已经过期返回 null
+     */
+    public synchronized Object get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.createTime > queryProperties.getCacheTtlMs()) {
+            remove(key);
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.value;
+    }
+
+    /**
+     * 放入查询结果，查询期间设备有写入或者结果太大时不缓存
+     * @param key : 缓存 key
+     * @param devicePath : 设备路径
+     * @param measurements : 测点
+     * @param start : 开始时间，查询最新 N 条时为 null
+     * @param end : 结束时间，查询最新 N 条时为 null
+     * @param value : 查询结果，放入后不能再修改
+     * @param size : 估算的字节数
+     * @param version : 查询前获取的设备版本号
+     */
+    public synchronized void put(String key, String devicePath, List<String> measurements, Long start, Long end,
+                                 Object value, long size, long version) {
+        if (size > queryProperties.getCacheMaxEntryBytes()) {
+            return;
+        }
+        // 先登记 key 再检查版本号，invalidate 是先加版本号再检查 key，两边交错时至少有一边能发现
+        keysByDevice.computeIfAbsent(devicePath, k -> ConcurrentHashMap.newKeySet()).add(key);
+        if (version(devicePath) != version) {
+            if (!entries.containsKey(key)) {
+                unindex(devicePath, key);
+            }
+            return;
+        }
+        Entry previous = entries.put(key, new Entry(devicePath, new HashSet<>(measurements), start, end, value, size));
+        if (previous != null) {
+            bytes -= previous.size;
+        }
+        bytes += size;
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (bytes > queryProperties.getCacheMaxBytes() && iterator.hasNext()) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            iterator.remove();
+            bytes -= eldest.getValue().size;
+            unindex(eldest.getValue().devicePath, eldest.getKey());
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * 写入 tablet 后调用，tablet 已按时间排序
+     */
+    public void invalidate(Tablet tablet) {
+        if (tablet.rowSize == 0) {
+            return;
+        }
+        List<String> measurements = new ArrayList<>(tablet.getSchemas().size());
+        for (MeasurementSchema schema : tablet.getSchemas()) {
+            measurements.add(schema.getMeasurementId());
+        }
+        invalidate(tablet.deviceId, measurements, tablet.timestamps[0], tablet.timestamps[tablet.rowSize - 1]);
+    }
+
+    /**
+     * 设备的测点在 [minTime, maxTime] 内有数据变化，让有交集的缓存失效
+     * @param devicePath : 设备路径
+     * @param measurements : 测点
+     * @param minTime : 变化的最小时间
+     * @param maxTime : 变化的最大时间
+     */
+    public void invalidate(String devicePath, Collection<String> measurements, long minTime, long maxTime) {
+        versions.incrementAndGet(slot(devicePath));
+        // 这个设备没有缓存时不加锁，写入路径上的开销只有版本号加一
+        Set<String> keys = keysByDevice.get(devicePath);
+        if (keys == null || keys.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            for (String key : new ArrayList<>(keys)) {
+                Entry entry = entries.get(key);
+                if (entry != null && entry.affectedBy(measurements, minTime, maxTime)) {
+                    remove(key);
+                    invalidations.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * 不知道变化范围时（例如加载 TsFile）清空缓存
+     */
+    public synchronized void invalidateAll() {
+        epoch.incrementAndGet();
+        invalidations.addAndGet(entries.size());
+        entries.clear();
+        keysByDevice.clear();
+        bytes = 0;
+    }
+
+    public synchronized Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        metrics.put("enabled", queryProperties.isCacheEnabled());
+        metrics.put("entries", entries.size());
+        metrics.put("bytes", bytes);
+        metrics.put("hits", hitCount);
+        metrics.put("misses", misses.get());
+        metrics.put("hitRate", total == 0 ? 0 : (double) hitCount / total);
+        metrics.put("invalidations", invalidations.get());
+        metrics.put("evictions", evictions.get());
+        return metrics;
+    }
+
+    /**
+     * 估算行格式结果的字节数：每行一个 HashMap，每个值一个装箱对象
+     */
+    public static long estimateRows(int rows, int columns) {
+        return 64L + (long) rows * (64 + (columns + 1) * 72L);
+    }
+
+    /**
+     * 估算按列结果的字节数
+     */
+    public static long estimateColumnar(ColumnarResultVo result) {
+        long size = 64L + 8L * result.getRows();
+        for (ColumnarResultVo.Column column : result.getColumns()) {
+            size += 64L + 4L * column.getNulls().length;
+            Object values = column.getValues();
+            if (values instanceof boolean[]) {
+                size += ((boolean[]) values).length;
+            } else if (values instanceof int[] || values instanceof float[]) {
+                size += 4L * result.getRows();
+            } else if (values instanceof long[] || values instanceof double[]) {
+                size += 8L * result.getRows();
+            } else if (values != null) {
+                size += 48L * result.getRows();
+            }
+        }
+        return size;
+    }
+
+    private static int slot(String devicePath) {
+        return (devicePath.hashCode() & Integer.MAX_VALUE) % VERSION_SLOTS;
+    }
+
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            bytes -= entry.size;
+            unindex(entry.devicePath, key);
+        }
+    }
+
+    private void unindex(String devicePath, String key) {
+        Set<String> keys = keysByDevice.get(devicePath);
+        if (keys != null) {
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                keysByDevice.remove(devicePath);
+            }
+        }
+    }
+
+    private static class Entry {
+        private final String devicePath;
+        private final Set<String> measurements;
+        private final Long start;
+        private final Long end;
+        private final Object value;
+        private final long size;
+        private final long createTime = System.currentTimeMillis();
+
+        Entry(String devicePath, Set<String> measurements, Long start, Long end, Object value, long size) {
+            this.devicePath = devicePath;
+            this.measurements = measurements;
+            this.start = start;
+            this.end = end;
+            this.value = value;
+            this.size = size;
+        }
+
+        boolean affectedBy(Collection<String> changed, long minTime, long maxTime) {
+            if (!measurements.contains(ALL_MEASUREMENTS) && Collections.disjoint(measurements, changed)) {
+                return false;
+            }
+            // 最新 N 条的结果，任何写入都可能改变
+            if (start == null || end == null) {
+                return true;
+            }
+            return minTime <= end && maxTime >= start;
+        }
+    }
+}
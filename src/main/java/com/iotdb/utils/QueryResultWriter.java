@@ -0,0 +1,121 @@
+package com.iotdb.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.iotdb.isession.pool.SessionDataSetWrapper;
+import org.apache.iotdb.rpc.IoTDBConnectionException;
+import org.apache.iotdb.rpc.StatementExecutionException;
+import org.apache.tsfile.read.common.Field;
+import org.apache.tsfile.read.common.RowRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import static com.iotdb.enums.StatusCodeEnum.SUCCESS;
+
+/**
+ * 查询结果流式输出：每取到一行 RowRecord 就直接写入响应流，不在内存中保存结果集，
+ * 输出格式和 Result 相同 {"flag":true,"code":200,"message":"操作成功","data":[{"time":..,"s1":..},...]}
+ * @author tjb
+ * @date 2026/10/18
+ */
+public class QueryResultWriter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryResultWriter.class);
+    private static final SerializableString TIME = new SerializedString("time");
+
+    /**
+     * 把结果集逐行写入输出流，写完后关闭结果集。
+     * 响应开始输出后如果数据库出错，只能在 data 后面带上 error 字段
+     * @param objectMapper : json
+     * @param dataSet : 结果集
+     * @param outputStream : 输出流
+     * @return 输出的行数
+     */
+    public static long writeRows(ObjectMapper objectMapper, SessionDataSetWrapper dataSet, OutputStream outputStream) {
+        long rows = 0;
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.writeStartObject();
+            generator.writeBooleanField("flag", true);
+            generator.writeNumberField("code", SUCCESS.getCode());
+            generator.writeStringField("message", SUCCESS.getDesc());
+            generator.writeArrayFieldStart("data");
+            // 第一列是时间，测点名称提前序列化好，每行直接复用
+            List<String> columnNames = dataSet.getColumnNames();
+            SerializableString[] names = new SerializableString[columnNames.size() - 1];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = new SerializedString(columnNames.get(i + 1));
+            }
+            try {
+                while (dataSet.hasNext()) {
+                    RowRecord record = dataSet.next();
+                    List<Field> fields = record.getFields();
+                    generator.writeStartObject();
+                    generator.writeFieldName(TIME);
+                    generator.writeNumber(record.getTimestamp());
+                    for (int i = 0; i < names.length; i++) {
+                        generator.writeFieldName(names[i]);
+                        writeValue(generator, fields.get(i));
+                    }
+                    generator.writeEndObject();
+                    // 第一行立即输出，首字节时间和结果大小无关
+                    if (++rows == 1) {
+                        generator.flush();
+                    }
+                }
+                generator.writeEndArray();
+            } catch (IoTDBConnectionException | StatementExecutionException e) {
+                LOGGER.error("查询结果输出到第{}行时失败:{}", rows, e.getMessage());
+                generator.writeEndArray();
+                generator.writeStringField("error", e.getMessage());
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            // 客户端断开连接，不再继续读取
+            LOGGER.warn("查询结果输出中断，已输出{}行:{}", rows, e.getMessage());
+        } finally {
+            dataSet.close();
+        }
+        return rows;
+    }
+
+    /**
+     * 按类型直接写出字段的值，不装箱
+     */
+    public static void writeValue(JsonGenerator generator, Field field) throws IOException {
+        if (field == null || field.getDataType() == null) {
+            generator.writeNull();
+            return;
+        }
+        switch (field.getDataType()) {
+            case BOOLEAN:
+                generator.writeBoolean(field.getBoolV());
+                break;
+            case INT32:
+                generator.writeNumber(field.getIntV());
+                break;
+            case INT64:
+            case TIMESTAMP:
+                generator.writeNumber(field.getLongV());
+                break;
+            case FLOAT:
+                generator.writeNumber(field.getFloatV());
+                break;
+            case DOUBLE:
+                generator.writeNumber(field.getDoubleV());
+                break;
+            case DATE:
+                generator.writeString(field.getDateV().toString());
+                break;
+            case BLOB:
+                generator.writeBinary(field.getBinaryV().getValues());
+                break;
+            default:
+                generator.writeString(field.getStringValue());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.iotdb.utils;
+
+import com.iotdb.config.QueryProperties;
+import com.iotdb.dto.QueryDto;
+import org.apache.iotdb.isession.pool.SessionDataSetWrapper;
+import org.apache.iotdb.rpc.IoTDBConnectionException;
+import org.apache.iotdb.rpc.StatementExecutionException;
+import org.apache.iotdb.session.pool.SessionPool;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+
+/**
+ * 查询统一入口：按 请求参数 > 接口配置(query.endpoints) > 全局配置 的顺序确定超时时间和每批行数。
+ * 超时由数据库执行，超时后查询被取消，session 归还连接池；
+ * 返回的结果集必须在 finally 中关闭，客户端断开或者出错时也能及时归还 session
+ * @author tjb
+ * @date 2026/10/18
+ */
+@Component
+public class QueryRunner {
+
+    @Resource
+    private SessionPool sessionService;
+    @Resource
+    private QueryProperties queryProperties;
+
+    /**
+     * 执行查询，超时时间和每批行数使用请求中的设置
+     * @param endpoint : 接口名称
+     * @param queryDto : 查询参数
+     * @param sql : 查询语句
+     */
+    public SessionDataSetWrapper execute(String endpoint, QueryDto queryDto, String sql)
+            throws IoTDBConnectionException, StatementExecutionException {
+        return execute(endpoint, queryDto.getTimeoutMs(), queryDto.getFetchSize(), sql);
+    }
+
+    /**
+     * 执行查询
+     * @param endpoint : 接口名称
+     * @param timeoutMs : 请求指定的超时时间(毫秒)，可以为空
+     * @param fetchSize : 请求指定的每批行数，可以为空
+     * @param sql : 查询语句
+     */
+    public SessionDataSetWrapper execute(String endpoint, Long timeoutMs, Integer fetchSize, String sql)
+            throws IoTDBConnectionException, StatementExecutionException {
+        long timeout = timeoutOf(endpoint, timeoutMs);
+        SessionDataSetWrapper dataSet = timeout > 0
+                ? sessionService.executeQueryStatement(sql, timeout)
+                : sessionService.executeQueryStatement(sql);
+        // 第一批数据随查询返回，使用连接池的设置，之后的每批按这里的设置取
+        int size = fetchSizeOf(endpoint, fetchSize);
+        if (dataSet.getSessionDataSet() != null && size != dataSet.getSessionDataSet().getFetchSize()) {
+            dataSet.getSessionDataSet().setFetchSize(size);
+        }
+        return dataSet;
+    }
+
+    /**
+     * 超时时间，请求指定的不能超过 query.maxTimeoutMs；0 表示不限制
+     * @param endpoint : 接口名称
+     * @param timeoutMs : 请求指定的超时时间(毫秒)，可以为空
+     */
+    public long timeoutOf(String endpoint, Long timeoutMs) {
+        if (timeoutMs != null && timeoutMs > 0) {
+            return Math.min(timeoutMs, queryProperties.getMaxTimeoutMs());
+        }
+        QueryProperties.Endpoint config = queryProperties.getEndpoints().get(endpoint);
+        if (config != null && config.getTimeoutMs() != null) {
+            return config.getTimeoutMs();
+        }
+        return queryProperties.getTimeoutMs();
+    }
+
+    /**
+     * 每批行数，请求指定的不能超过 query.maxFetchSize
+     */
+    private int fetchSizeOf(String endpoint, Integer fetchSize) {
+        if (fetchSize != null && fetchSize > 0) {
+            return Math.min(fetchSize, queryProperties.getMaxFetchSize());
+        }
+        QueryProperties.Endpoint config = queryProperties.getEndpoints().get(endpoint);
+        if (config != null && config.getFetchSize() != null) {
+            return config.getFetchSize();
+        }
+        return queryProperties.getFetchSize();
+    }
+}
@@ -0,0 +1,208 @@
+package com.iotdb.utils;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.cache.impl.TimedCache;
+import com.iotdb.config.IoTDBProperties;
+import com.iotdb.exception.ServiceException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.iotdb.isession.pool.SessionDataSetWrapper;
+import org.apache.iotdb.rpc.IoTDBConnectionException;
+import org.apache.iotdb.rpc.StatementExecutionException;
+import org.apache.iotdb.session.pool.SessionPool;
+import org.apache.tsfile.enums.TSDataType;
+import org.apache.tsfile.file.metadata.enums.TSEncoding;
+import org.apache.tsfile.read.common.Field;
+import org.apache.tsfile.read.common.RowRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static cn.hutool.core.text.StrPool.DOT;
+import static com.iotdb.enums.StatusCodeEnum.SYSTEM_ERROR;
+import static com.iotdb.enums.StatusCodeEnum.VALID_ERROR;
+
+/**
+ * 时间序列元数据缓存：路径 -> 类型、编码
+ * 第一次用到某个设备时通过 show timeseries 加载该设备下所有测点，之后存在判断和类型查询都走内存；
+ * 创建、删除时间序列时同步更新，容量满了按 LRU 淘汰；
+ * 加载后仍不存在的序列短时间内记为不存在，避免每次查询不存在的序列（例如创建新序列前的检查）都访问数据库
+ * @author tjb
+ * @date 2026/10/18
+ */
+@Component
+public class SchemaCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SchemaCache.class);
+
+    @Resource
+    private SessionPool sessionService;
+    @Resource
+    private IoTDBProperties ioTDBProperties;
+
+    private LRUCache<String, SeriesSchema> cache;
+    private TimedCache<String, Boolean> absent;
+
+    @PostConstruct
+    public void init() {
+        cache = CacheUtil.newLRUCache(ioTDBProperties.getSchemaCacheMaxSize());
+        absent = CacheUtil.newTimedCache(ioTDBProperties.getSchemaCacheMissTtlMs());
+        absent.schedulePrune(ioTDBProperties.getSchemaCacheMissTtlMs());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        absent.cancelPruneSchedule();
+    }
+
+    /**
+     * 时间序列是否存在，缓存里没有时加载该序列所在的设备
+     * @param path : 时间序列全路径
+     */
+    public boolean exists(String path) {
+        return get(path) != null;
+    }
+
+    /**
+     * 获取时间序列的元数据，不存在返回 null
+     * @param path : 时间序列全路径
+     */
+    public SeriesSchema get(String path) {
+        SeriesSchema schema = cache.get(path);
+        if (schema == null) {
+            int index = path.lastIndexOf(DOT);
+            if (index <= 0 || isMissing(path)) {
+                return null;
+            }
+            loadDevice(path.substring(0, index));
+            schema = cache.get(path);
+            if (schema == null) {
+                absent.put(path, Boolean.TRUE);
+            }
+        }
+        return schema;
+    }
+
+    /**
+     * 找出一个设备下还不存在的测点，缓存里缺任意一个时只加载一次该设备
+     * @param devicePath : 设备路径
+     * @param measurements : 测点
+     * @return 不存在的测点
+     */
+    public List<String> filterMissing(String devicePath, Collection<String> measurements) {
+        boolean loaded = false;
+        List<String> missing = new ArrayList<>();
+        for (String measurement : measurements) {
+            String path = devicePath + DOT + measurement;
+            if (cache.get(path) == null && !loaded && !isMissing(path)) {
+                loadDevice(devicePath);
+                loaded = true;
+            }
+            if (cache.get(path) == null) {
+                absent.put(path, Boolean.TRUE);
+                missing.add(measurement);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * 确定测点类型：传了类型就用传入的，没传就用缓存中的
+     * @param devicePath : 设备路径
+     * @param measurement : 测点
+     * @param type : 传入的类型，可以为空
+     */
+    public TSDataType resolveType(String devicePath, String measurement, String type) {
+        if (StringUtils.isNotBlank(type)) {
+            return TSDataTypeUtil.getTsDataType(type);
+        }
+        SeriesSchema schema = get(devicePath + DOT + measurement);
+        if (schema == null) {
+            throw new ServiceException(VALID_ERROR.getCode(), "时间序列" + devicePath + DOT + measurement + "不存在，需要指定测点类型");
+        }
+        return schema.getDataType();
+    }
+
+    /**
+     * 确定一个设备多个测点的类型，testPointType 可以为空或者部分为空
+     * @param devicePath : 设备路径
+     * @param testPointName : 测点
+     * @param testPointType : 测点类型
+     */
+    public List<TSDataType> resolveTypes(String devicePath, List<String> testPointName, List<String> testPointType) {
+        List<TSDataType> dataTypes = new ArrayList<>(testPointName.size());
+        for (int i = 0; i < testPointName.size(); i++) {
+            String type = testPointType == null || testPointType.isEmpty() ? null : testPointType.get(i);
+            dataTypes.add(resolveType(devicePath, testPointName.get(i), type));
+        }
+        return dataTypes;
+    }
+
+    /**
+     * 新建时间序列后写入缓存
+     */
+    public void put(String path, TSDataType dataType, TSEncoding encoding) {
+        cache.put(path, new SeriesSchema(dataType, encoding));
+        absent.remove(path);
+    }
+
+    /**
+     * 删除时间序列后移出缓存
+     */
+    public void remove(String path) {
+        cache.remove(path);
+    }
+
+    /**
+     * 最近加载过且不存在的时间序列；读取时不延长过期时间
+     */
+    private boolean isMissing(String path) {
+        return absent.get(path, false) != null;
+    }
+
+    /**
+     * 加载一个设备下的所有测点
+     */
+    private void loadDevice(String devicePath) {
+        SessionDataSetWrapper dataSet = null;
+        try {
+            dataSet = sessionService.executeQueryStatement("show timeseries " + devicePath + ".*");
+            List<String> columnNames = dataSet.getColumnNames();
+            int pathIndex = columnNames.indexOf("Timeseries");
+            int typeIndex = columnNames.indexOf("DataType");
+            int encodingIndex = columnNames.indexOf("Encoding");
+            while (dataSet.hasNext()) {
+                RowRecord record = dataSet.next();
+                List<Field> fields = record.getFields();
+                TSDataType dataType = TSDataType.valueOf(fields.get(typeIndex).getStringValue());
+                TSEncoding encoding = TSEncoding.valueOf(fields.get(encodingIndex).getStringValue());
+                put(fields.get(pathIndex).getStringValue(), dataType, encoding);
+            }
+        } catch (IoTDBConnectionException | StatementExecutionException e) {
+            LOGGER.error("加载设备{}的元数据失败:{}", devicePath, e.getMessage());
+            throw new ServiceException(SYSTEM_ERROR.getCode(), e.getMessage());
+        } finally {
+            if (dataSet != null) {
+                dataSet.close();
+            }
+        }
+    }
+
+    /**
+     * 缓存中一个时间序列的元数据
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class SeriesSchema {
+        private final TSDataType dataType;
+        private final TSEncoding encoding;
+    }
+}
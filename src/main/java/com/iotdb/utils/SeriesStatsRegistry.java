@@ -0,0 +1,491 @@
+package com.iotdb.utils;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import com.iotdb.config.QueryProperties;
+import com.iotdb.exception.ServiceException;
+import org.apache.iotdb.isession.pool.SessionDataSetWrapper;
+import org.apache.iotdb.rpc.IoTDBConnectionException;
+import org.apache.iotdb.rpc.StatementExecutionException;
+import org.apache.iotdb.session.pool.SessionPool;
+import org.apache.tsfile.enums.TSDataType;
+import org.apache.tsfile.read.common.Field;
+import org.apache.tsfile.read.common.RowRecord;
+import org.apache.tsfile.utils.BitMap;
+import org.apache.tsfile.write.record.Tablet;
+import org.apache.tsfile.write.schema.MeasurementSchema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static cn.hutool.core.text.StrPool.DOT;
+import static com.iotdb.enums.StatusCodeEnum.SYSTEM_ERROR;
+
+/**
+ * 每个时间序列的统计信息：数据条数、最小/最大时间、最小/最大值（只有数值类型有）。
+ * 启动时后台从数据库加载，之后本服务写入成功时无锁更新（CAS 替换不可变的快照）；
+ * 写入的时间不大于已有的最大时间时可能覆盖旧数据，统计不再准确，标记失效，下次用到时重新从数据库加载。
+ * 删除数据、删除时间序列、加载 TsFile 时移除。
+ * 从数据库加载的统计超过 query.statsTtlMs 后过期，下次用到时重新加载（本服务写入合并的快照保留加载时间），
+ * 不经过本服务的写入、删除以及数据 TTL 过期最多滞后这么久
+ * @author tjb
+ * @date 2026/10/18
+ */
+@Component
+public class SeriesStatsRegistry {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SeriesStatsRegistry.class);
+
+    /**
+     * 正在从数据库加载，期间有写入时改为失效，加载结果不再放入
+     */
+    private static final SeriesStats PENDING = new SeriesStats(null, 0, 0, 0, 0L, 0L, 0L);
+    /**
+     * 统计不准确，下次用到时重新加载
+     */
+    private static final SeriesStats INVALID = new SeriesStats(null, 0, 0, 0, 0L, 0L, 0L);
+
+    @Resource
+    private SessionPool sessionService;
+    @Resource
+    private SchemaCache schemaCache;
+    @Resource
+    private QueryProperties queryProperties;
+
+    /**
+     * 时间序列全路径 -> 统计快照
+     */
+    private final Map<String, AtomicReference<SeriesStats>> stats = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private ExecutorService seeder;
+
+    @PostConstruct
+    public void start() {
+        if (!queryProperties.isStatsEnabled() || !queryProperties.isStatsSeedOnStartup()) {
+            return;
+        }
+        // 不阻塞启动，加载完之前查询走数据库
+        seeder = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNamePrefix("series-stats-seed").build());
+        seeder.execute(this::seedAll);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (seeder != null) {
+            seeder.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return queryProperties.isStatsEnabled();
+    }
+
+    /**
+     * 获取一个时间序列的统计信息，没有时从数据库加载
+     * @param devicePath : 设备路径
+     * @param measurement : 测点
+     * @return 统计信息，关闭统计或者时间序列不存在时返回 null，调用方直接查询数据库
+     */
+    public SeriesStats get(String devicePath, String measurement) {
+        if (!isEnabled()) {
+            return null;
+        }
+        AtomicReference<SeriesStats> ref = stats.get(devicePath + DOT + measurement);
+        SeriesStats current = ref == null ? null : ref.get();
+        if (current != null && current != PENDING && current != INVALID && !isExpired(current)) {
+            hits.incrementAndGet();
+            return current;
+        }
+        SchemaCache.SeriesSchema schema = schemaCache.get(devicePath + DOT + measurement);
+        if (schema == null) {
+            return null;
+        }
+        return seedDevice(devicePath, Collections.singletonMap(measurement, schema.getDataType()))
+                .get(measurement);
+    }
+
+    /**
+     * 写入 tablet 成功后调用，tablet 已按时间排序；没有统计信息的时间序列不处理
+     */
+    public void update(Tablet tablet) {
+        if (!isEnabled() || tablet.rowSize == 0) {
+            return;
+        }
+        List<MeasurementSchema> schemas = tablet.getSchemas();
+        for (int column = 0; column < schemas.size(); column++) {
+            AtomicReference<SeriesStats> ref = stats.get(tablet.deviceId + DOT + schemas.get(column).getMeasurementId());
+            if (ref != null) {
+                SeriesStats delta = SeriesStats.of(tablet, column);
+                if (delta != null) {
+                    apply(ref, delta);
+                }
+            }
+        }
+    }
+
+    /**
+     * 时间序列的数据被删除或者时间序列被删除
+     */
+    public void remove(String path) {
+        if (stats.remove(path) != null) {
+            invalidations.incrementAndGet();
+        }
+    }
+
+    /**
+     * 不知道变化范围时（例如加载 TsFile）移除全部统计
+     */
+    public void removeAll() {
+        invalidations.addAndGet(stats.size());
+        stats.clear();
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", isEnabled());
+        metrics.put("series", stats.size());
+        metrics.put("hits", hits.get());
+        metrics.put("loads", loads.get());
+        metrics.put("invalidations", invalidations.get());
+        return metrics;
+    }
+
+    /**
+     * 把一个 tablet 的统计合并到快照中，只有追加在最大时间之后的写入可以合并
+     */
+    private void apply(AtomicReference<SeriesStats> ref, SeriesStats delta) {
+        while (true) {
+            SeriesStats current = ref.get();
+            if (current == INVALID) {
+                return;
+            }
+            SeriesStats next = current == PENDING || !current.canAppend(delta) ? INVALID : current.append(delta);
+            if (ref.compareAndSet(current, next)) {
+                if (next == INVALID) {
+                    invalidations.incrementAndGet();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * 启动时加载全部时间序列，数量超过上限后不再加载
+     */
+    private void seedAll() {
+        long startTime = System.currentTimeMillis();
+        Map<String, Map<String, TSDataType>> devices = new LinkedHashMap<>();
+        SessionDataSetWrapper dataSet = null;
+        try {
+            dataSet = sessionService.executeQueryStatement("show timeseries root.**");
+            List<String> columnNames = dataSet.getColumnNames();
+            int pathIndex = columnNames.indexOf("Timeseries");
+            int typeIndex = columnNames.indexOf("DataType");
+            int count = 0;
+            while (dataSet.hasNext() && count < queryProperties.getStatsMaxSeries()) {
+                List<Field> fields = dataSet.next().getFields();
+                String path = fields.get(pathIndex).getStringValue();
+                int index = path.lastIndexOf(DOT);
+                devices.computeIfAbsent(path.substring(0, index), k -> new LinkedHashMap<>())
+                        .put(path.substring(index + 1), TSDataType.valueOf(fields.get(typeIndex).getStringValue()));
+                count++;
+            }
+        } catch (IoTDBConnectionException | StatementExecutionException e) {
+            LOGGER.error("加载时间序列统计失败:{}", e.getMessage());
+            return;
+        } finally {
+            if (dataSet != null) {
+                dataSet.close();
+            }
+        }
+        for (Map.Entry<String, Map<String, TSDataType>> device : devices.entrySet()) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            try {
+                seedDevice(device.getKey(), device.getValue());
+            } catch (RuntimeException e) {
+                LOGGER.error("加载设备{}的统计失败:{}", device.getKey(), e.getMessage());
+            }
+        }
+        LOGGER.info("加载{}个设备的时间序列统计，耗时{}ms", devices.size(), System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 一条聚合查询加载一个设备下多个测点的统计
+     * @param devicePath : 设备路径
+     * @param measurements : 测点 -> 类型
+     * @return 测点 -> 数据库中的统计
+     */
+    private Map<String, SeriesStats> seedDevice(String devicePath, Map<String, TSDataType> measurements) {
+        // 先登记为加载中，加载期间的写入会把它改为失效
+        Map<String, AtomicReference<SeriesStats>> refs = new LinkedHashMap<>();
+        List<String> columns = new ArrayList<>();
+        for (Map.Entry<String, TSDataType> entry : measurements.entrySet()) {
+            String measurement = entry.getKey();
+            refs.put(measurement, register(devicePath + DOT + measurement));
+            columns.add(String.format("count(%s), min_time(%s), max_time(%s)", measurement, measurement, measurement));
+            if (isNumeric(entry.getValue())) {
+                columns.add(String.format("min_value(%s), max_value(%s)", measurement, measurement));
+            }
+        }
+        String sql = new SQLBuilder()
+                .selectAggregation(String.join(", ", columns))
+                .from(devicePath)
+                .build();
+        Map<String, SeriesStats> result = new LinkedHashMap<>();
+        SessionDataSetWrapper dataSet = null;
+        // 按查询开始的时间算过期，查询期间的变化也在有效期内刷新
+        long loadTime = System.currentTimeMillis();
+        try {
+            dataSet = sessionService.executeQueryStatement(sql);
+            if (!dataSet.hasNext()) {
+                return result;
+            }
+            RowRecord record = dataSet.next();
+            List<Field> fields = record.getFields();
+            int index = 0;
+            for (Map.Entry<String, TSDataType> entry : measurements.entrySet()) {
+                TSDataType dataType = entry.getValue();
+                long count = fields.get(index).getLongV();
+                long minTime = count == 0 ? 0 : fields.get(index + 1).getLongV();
+                long maxTime = count == 0 ? 0 : fields.get(index + 2).getLongV();
+                index += 3;
+                long minValue = 0;
+                long maxValue = 0;
+                if (isNumeric(dataType)) {
+                    if (count > 0) {
+                        minValue = toBits(fields.get(index));
+                        maxValue = toBits(fields.get(index + 1));
+                    }
+                    index += 2;
+                }
+                SeriesStats seriesStats = new SeriesStats(dataType, count, minTime, maxTime, minValue, maxValue, loadTime);
+                result.put(entry.getKey(), seriesStats);
+                AtomicReference<SeriesStats> ref = refs.get(entry.getKey());
+                if (ref != null) {
+                    ref.compareAndSet(PENDING, seriesStats);
+                }
+            }
+            loads.incrementAndGet();
+            return result;
+        } catch (IoTDBConnectionException | StatementExecutionException e) {
+            throw new ServiceException(SYSTEM_ERROR.getCode(), e.getMessage());
+        } finally {
+            // 没有放入结果的登记改为失效，下次用到时重新加载
+            for (AtomicReference<SeriesStats> ref : refs.values()) {
+                if (ref != null) {
+                    ref.compareAndSet(PENDING, INVALID);
+                }
+            }
+            if (dataSet != null) {
+                dataSet.close();
+            }
+        }
+    }
+
+    /**
+     * 登记为加载中；已经有准确并且没有过期的统计、正在加载或者数量达到上限时返回 null，只使用这次的查询结果
+     */
+    private AtomicReference<SeriesStats> register(String path) {
+        AtomicReference<SeriesStats> ref = new AtomicReference<>(PENDING);
+        AtomicReference<SeriesStats> existing = stats.get(path);
+        if (existing == null) {
+            if (stats.size() >= queryProperties.getStatsMaxSeries()) {
+                return null;
+            }
+            return stats.putIfAbsent(path, ref) == null ? ref : null;
+        }
+        SeriesStats current = existing.get();
+        boolean reload = current == INVALID || (current != PENDING && isExpired(current));
+        return reload && stats.replace(path, existing, ref) ? ref : null;
+    }
+
+    private boolean isExpired(SeriesStats seriesStats) {
+        long ttl = queryProperties.getStatsTtlMs();
+        return ttl > 0 && System.currentTimeMillis() - seriesStats.loadTime > ttl;
+    }
+
+    private static boolean isNumeric(TSDataType dataType) {
+        return dataType == TSDataType.INT32 || dataType == TSDataType.INT64
+                || dataType == TSDataType.FLOAT || dataType == TSDataType.DOUBLE;
+    }
+
+    private static boolean isInteger(TSDataType dataType) {
+        return dataType == TSDataType.INT32 || dataType == TSDataType.INT64;
+    }
+
+    /**
+     * 整数类型直接存 long，浮点类型存 double 的位，INT64 不会丢精度
+     */
+    private static long toBits(Field field) {
+        switch (field.getDataType()) {
+            case INT32:
+                return field.getIntV();
+            case INT64:
+                return field.getLongV();
+            case FLOAT:
+                return Double.doubleToRawLongBits(field.getFloatV());
+            default:
+                return Double.doubleToRawLongBits(field.getDoubleV());
+        }
+    }
+
+    /**
+     * 一个时间序列的统计快照，创建后不再修改
+     */
+    public static class SeriesStats {
+        private final TSDataType dataType;
+        private final long count;
+        private final long minTime;
+        private final long maxTime;
+        /**
+         * 整数类型为数值本身，浮点类型为 double 的位
+         */
+        private final long minValue;
+        private final long maxValue;
+        /**
+         * 从数据库加载的时间，合并写入后保持不变
+         */
+        private final long loadTime;
+
+        SeriesStats(TSDataType dataType, long count, long minTime, long maxTime, long minValue, long maxValue, long loadTime) {
+            this.dataType = dataType;
+            this.count = count;
+            this.minTime = minTime;
+            this.maxTime = maxTime;
+            this.minValue = minValue;
+            this.maxValue = maxValue;
+            this.loadTime = loadTime;
+        }
+
+        /**
+         * 统计 tablet 中一列的非空数据，没有非空数据时返回 null；
+         * 同一个 tablet 中有重复时间戳时 count 为负数，表示不能合并
+         */
+        static SeriesStats of(Tablet tablet, int column) {
+            TSDataType dataType = tablet.getSchemas().get(column).getType();
+            BitMap bitMap = tablet.bitMaps == null ? null : tablet.bitMaps[column];
+            Object values = tablet.values[column];
+            boolean numeric = isNumeric(dataType);
+            long count = 0;
+            long minTime = 0;
+            long maxTime = 0;
+            long minLong = Long.MAX_VALUE;
+            long maxLong = Long.MIN_VALUE;
+            double minDouble = Double.POSITIVE_INFINITY;
+            double maxDouble = Double.NEGATIVE_INFINITY;
+            boolean duplicated = false;
+            for (int row = 0; row < tablet.rowSize; row++) {
+                if (bitMap != null && bitMap.isMarked(row)) {
+                    continue;
+                }
+                long time = tablet.timestamps[row];
+                if (count == 0) {
+                    minTime = time;
+                } else if (time == maxTime) {
+                    duplicated = true;
+                }
+                maxTime = time;
+                count++;
+                if (dataType == TSDataType.INT32 || dataType == TSDataType.INT64) {
+                    long value = dataType == TSDataType.INT32 ? ((int[]) values)[row] : ((long[]) values)[row];
+                    minLong = Math.min(minLong, value);
+                    maxLong = Math.max(maxLong, value);
+                } else if (numeric) {
+                    double value = dataType == TSDataType.FLOAT ? ((float[]) values)[row] : ((double[]) values)[row];
+                    minDouble = Math.min(minDouble, value);
+                    maxDouble = Math.max(maxDouble, value);
+                }
+            }
+            if (count == 0) {
+                return null;
+            }
+            if (!isInteger(dataType)) {
+                minLong = Double.doubleToRawLongBits(minDouble);
+                maxLong = Double.doubleToRawLongBits(maxDouble);
+            }
+            return new SeriesStats(dataType, duplicated ? -1 : count, minTime, maxTime, minLong, maxLong, 0L);
+        }
+
+        /**
+         * 新数据全部在已有的最大时间之后，不会覆盖旧数据
+         */
+        boolean canAppend(SeriesStats delta) {
+            return delta.count > 0 && dataType == delta.dataType && (count == 0 || delta.minTime > maxTime);
+        }
+
+        SeriesStats append(SeriesStats delta) {
+            if (count == 0) {
+                return new SeriesStats(dataType, delta.count, delta.minTime, delta.maxTime,
+                        delta.minValue, delta.maxValue, loadTime);
+            }
+            if (isInteger(dataType)) {
+                return new SeriesStats(dataType, count + delta.count, minTime, delta.maxTime,
+                        Math.min(minValue, delta.minValue), Math.max(maxValue, delta.maxValue), loadTime);
+            }
+            return new SeriesStats(dataType, count + delta.count, minTime, delta.maxTime,
+                    Double.doubleToRawLongBits(Math.min(Double.longBitsToDouble(minValue), Double.longBitsToDouble(delta.minValue))),
+                    Double.doubleToRawLongBits(Math.max(Double.longBitsToDouble(maxValue), Double.longBitsToDouble(delta.maxValue))),
+                    loadTime);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * 最小时间，没有数据时返回 null
+         */
+        public Long getMinTime() {
+            return count == 0 ? null : minTime;
+        }
+
+        public Long getMaxTime() {
+            return count == 0 ? null : maxTime;
+        }
+
+        /**
+         * 最小值，按时间序列的类型返回，非数值类型或者没有数据时返回 null
+         */
+        public Object getMinValue() {
+            return typed(minValue);
+        }
+
+        public Object getMaxValue() {
+            return typed(maxValue);
+        }
+
+        private Object typed(long value) {
+            if (count == 0 || !isNumeric(dataType)) {
+                return null;
+            }
+            switch (dataType) {
+                case INT32:
+                    return (int) value;
+                case INT64:
+                    return value;
+                case FLOAT:
+                    return (float) Double.longBitsToDouble(value);
+                default:
+                    return Double.longBitsToDouble(value);
+            }
+        }
+    }
+}
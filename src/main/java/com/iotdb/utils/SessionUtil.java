@@ -1,6 +1,7 @@
 package com.iotdb.utils;
 
 import com.iotdb.config.IoTDBProperties;
+import com.iotdb.config.QueryProperties;
 import com.iotdb.enums.StatusCodeEnum;
 import com.iotdb.exception.ServiceException;
 import com.iotdb.service.impl.QueryServiceImpl;
@@ -31,6 +32,8 @@ public class SessionUtil {
     int maxSize;
     @Resource
     private IoTDBProperties ioTDBProperties;
+    @Resource
+    private QueryProperties queryProperties;
 
 
     @Bean
@@ -49,7 +52,8 @@ public class SessionUtil {
                 .user(username)
                 .password(password)
                 .maxRetryCount(3)
-                .maxSize(maxSize);
+                .maxSize(maxSize)
+                .fetchSize(queryProperties.getFetchSize());
         if (emptyOfNodeUrls){
             LOGGER.info(String.format("the nodeUrls connect to iotdb is null, use the host(%s:%d) connect to iotdb", host,port));
             sessionPoolBuilder
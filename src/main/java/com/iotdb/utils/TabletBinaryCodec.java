@@ -0,0 +1,583 @@
+package com.iotdb.utils;
+
+import com.iotdb.exception.ServiceException;
+import org.apache.tsfile.enums.TSDataType;
+import org.apache.tsfile.utils.Binary;
+import org.apache.tsfile.utils.BitMap;
+import org.apache.tsfile.write.record.Tablet;
+import org.apache.tsfile.write.schema.MeasurementSchema;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import static com.iotdb.common.Constants.NUMBER_10000;
+import static com.iotdb.enums.StatusCodeEnum.VALID_ERROR;
+
+/**
+ * tablet 的二进制编码，比 json 小得多，解码时直接写入 tablet 的列
+ * <pre>
+ * 头部：  'I' 'T' 'B' 版本(1字节) 标志(1字节，最低位表示对齐设备) 设备路径 测点数量 [测点名称 测点类型]...
+ * 数据块：行数(0表示结束) 时间戳列 [空值位图 数值列]...
+ * </pre>
+ * 时间戳按 delta-of-delta 编码，FLOAT/DOUBLE 按 Gorilla 的 XOR 编码，
+ * 整数按差值 zigzag 变长编码，BOOLEAN 每个值 1 位，文本按长度+字节编码。
+ * 每个数据块最多 NUMBER_10000 行，解码时一个数据块对应一次 tablet 写入
+ * @author tjb
+ * @date 2026/10/18
+ */
+public class TabletBinaryCodec {
+    public static final String CONTENT_TYPE = "application/x-iotdb-tablet";
+
+    private static final byte[] MAGIC = {'I', 'T', 'B'};
+    private static final byte VERSION = 1;
+    private static final int FLAG_ALIGNED = 1;
+    /**
+     * 读取文本时第一次分配的最大字节数
+     */
+    private static final int READ_CHUNK = 64 * 1024;
+
+    /**
+     * 把 tablet 中的数据编码成字节
+     */
+    public static byte[] encode(Tablet tablet) {
+        return encode(tablet, false);
+    }
+
+    /**
+     * 把 tablet 中的数据编码成字节
+     * @param tablet : 数据
+     * @param aligned : 是否为对齐设备
+     */
+    public static byte[] encode(Tablet tablet, boolean aligned) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            encode(tablet, aligned, out);
+        } catch (IOException e) {
+            throw new ServiceException(VALID_ERROR.getCode(), e.getMessage());
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 把 tablet 中的数据编码后写入输出流
+     * @param tablet : 数据
+     * @param outputStream : 输出流
+     */
+    public static void encode(Tablet tablet, OutputStream outputStream) throws IOException {
+        encode(tablet, false, outputStream);
+    }
+
+    /**
+     * 把 tablet 中的数据编码后写入输出流
+     * @param tablet : 数据
+     * @param aligned : 是否为对齐设备
+     * @param outputStream : 输出流
+     */
+    public static void encode(Tablet tablet, boolean aligned, OutputStream outputStream) throws IOException {
+        BitOutput out = new BitOutput(outputStream instanceof ByteArrayOutputStream
+                ? outputStream : new BufferedOutputStream(outputStream));
+        for (byte b : MAGIC) {
+            out.writeBits(b, 8);
+        }
+        out.writeBits(VERSION, 8);
+        out.writeBits(aligned ? FLAG_ALIGNED : 0, 8);
+        out.writeString(tablet.deviceId);
+        List<MeasurementSchema> schemas = tablet.getSchemas();
+        out.writeVarLong(schemas.size());
+        for (MeasurementSchema schema : schemas) {
+            out.writeString(schema.getMeasurementId());
+            out.writeBits(schema.getType().serialize(), 8);
+        }
+        for (int from = 0; from < tablet.rowSize; from += NUMBER_10000) {
+            int to = Math.min(from + NUMBER_10000, tablet.rowSize);
+            out.writeVarLong(to - from);
+            encodeTimestamps(out, tablet.timestamps, from, to);
+            for (int column = 0; column < schemas.size(); column++) {
+                BitMap bitMap = tablet.bitMaps == null ? null : tablet.bitMaps[column];
+                encodeColumn(out, schemas.get(column).getType(), tablet.values[column], bitMap, from, to);
+            }
+        }
+        out.writeVarLong(0);
+        out.flush();
+    }
+
+    /**
+     * 解码输入流，每解出一个数据块就交给 sink 写入，sink 负责写入后重置 tablet
+     * @param inputStream : 输入流
+     * @param sink : 写入 tablet，第二个参数表示是否为对齐设备
+     * @return 总行数
+     */
+    public static long decode(InputStream inputStream, BiConsumer<Tablet, Boolean> sink) {
+        try {
+            BitInput in = new BitInput(new BufferedInputStream(inputStream));
+            for (byte b : MAGIC) {
+                if (in.readBits(8) != b) {
+                    throw new ServiceException(VALID_ERROR.getCode(), "不是合法的二进制写入格式");
+                }
+            }
+            if (in.readBits(8) != VERSION) {
+                throw new ServiceException(VALID_ERROR.getCode(), "不支持的二进制写入格式版本");
+            }
+            boolean aligned = (in.readBits(8) & FLAG_ALIGNED) != 0;
+            String deviceId = in.readString();
+            long columnCount = in.readVarLong();
+            if (columnCount <= 0 || columnCount > NUMBER_10000) {
+                throw new ServiceException(VALID_ERROR.getCode(), "测点数量超出限制:" + columnCount);
+            }
+            List<MeasurementSchema> schemas = new ArrayList<>((int) columnCount);
+            for (int i = 0; i < columnCount; i++) {
+                String measurement = in.readString();
+                schemas.add(new MeasurementSchema(measurement, readDataType(in)));
+            }
+            Tablet tablet = TabletUtil.createTablet(deviceId, schemas, NUMBER_10000);
+            long total = 0;
+            long blockRows;
+            // 先按 long 检查范围再转换，超出 int 的值截断后可能变成 0 或者一个合法的行数
+            while ((blockRows = in.readVarLong()) != 0) {
+                if (blockRows < 0 || blockRows > NUMBER_10000) {
+                    throw new ServiceException(VALID_ERROR.getCode(), "数据块行数超出限制:" + blockRows);
+                }
+                int rows = (int) blockRows;
+                decodeTimestamps(in, tablet.timestamps, rows);
+                for (int column = 0; column < schemas.size(); column++) {
+                    decodeColumn(in, schemas.get(column).getType(), tablet, column, rows);
+                }
+                tablet.rowSize = rows;
+                total += rows;
+                sink.accept(tablet, aligned);
+            }
+            // 结束标记之后不能再有数据
+            if (!in.atEnd()) {
+                throw new ServiceException(VALID_ERROR.getCode(), "二进制数据结束标记之后还有多余的数据");
+            }
+            return total;
+        } catch (EOFException e) {
+            throw new ServiceException(VALID_ERROR.getCode(), "二进制数据不完整");
+        } catch (IOException e) {
+            throw new ServiceException(VALID_ERROR.getCode(), "解析二进制数据失败:" + e.getMessage());
+        }
+    }
+
+    /**
+     * 读取测点类型，只接受 tablet 能写入的类型
+     */
+    private static TSDataType readDataType(BitInput in) throws IOException {
+        byte type = (byte) in.readBits(8);
+        TSDataType dataType;
+        try {
+            dataType = TSDataType.deserialize(type);
+        } catch (IllegalArgumentException e) {
+            throw new ServiceException(VALID_ERROR.getCode(), "不支持的测点类型:" + type);
+        }
+        if (dataType == null) {
+            throw new ServiceException(VALID_ERROR.getCode(), "不支持的测点类型:" + type);
+        }
+        switch (dataType) {
+            case BOOLEAN:
+            case INT32:
+            case INT64:
+            case TIMESTAMP:
+            case DATE:
+            case FLOAT:
+            case DOUBLE:
+            case TEXT:
+            case STRING:
+            case BLOB:
+                return dataType;
+            default:
+                throw new ServiceException(VALID_ERROR.getCode(), "不支持的测点类型:" + dataType);
+        }
+    }
+
+    // ---------------------------- 时间戳 ----------------------------
+
+    /**
+     * delta-of-delta：0 -> '0'，7/9/12 位能放下的分别用 '10'/'110'/'1110' 前缀，否则 '1111' + 64 位
+     */
+    private static void encodeTimestamps(BitOutput out, long[] timestamps, int from, int to) throws IOException {
+        long previous = timestamps[from];
+        long previousDelta = 0;
+        out.writeBits(previous, 64);
+        for (int i = from + 1; i < to; i++) {
+            long delta = timestamps[i] - previous;
+            long deltaOfDelta = delta - previousDelta;
+            if (deltaOfDelta == 0) {
+                out.writeBits(0, 1);
+            } else if (fits(deltaOfDelta, 7)) {
+                out.writeBits(0b10, 2);
+                out.writeBits(deltaOfDelta, 7);
+            } else if (fits(deltaOfDelta, 9)) {
+                out.writeBits(0b110, 3);
+                out.writeBits(deltaOfDelta, 9);
+            } else if (fits(deltaOfDelta, 12)) {
+                out.writeBits(0b1110, 4);
+                out.writeBits(deltaOfDelta, 12);
+            } else {
+                out.writeBits(0b1111, 4);
+                out.writeBits(deltaOfDelta, 64);
+            }
+            previous = timestamps[i];
+            previousDelta = delta;
+        }
+    }
+
+    private static void decodeTimestamps(BitInput in, long[] timestamps, int rows) throws IOException {
+        long previous = in.readBits(64);
+        long previousDelta = 0;
+        timestamps[0] = previous;
+        for (int i = 1; i < rows; i++) {
+            long deltaOfDelta;
+            if (in.readBits(1) == 0) {
+                deltaOfDelta = 0;
+            } else if (in.readBits(1) == 0) {
+                deltaOfDelta = in.readSignedBits(7);
+            } else if (in.readBits(1) == 0) {
+                deltaOfDelta = in.readSignedBits(9);
+            } else if (in.readBits(1) == 0) {
+                deltaOfDelta = in.readSignedBits(12);
+            } else {
+                deltaOfDelta = in.readBits(64);
+            }
+            previousDelta += deltaOfDelta;
+            previous += previousDelta;
+            timestamps[i] = previous;
+        }
+    }
+
+    private static boolean fits(long value, int bits) {
+        long limit = 1L << (bits - 1);
+        return value >= -limit && value < limit;
+    }
+
+    // ---------------------------- 数值列 ----------------------------
+
+    private static void encodeColumn(BitOutput out, TSDataType dataType, Object values, BitMap bitMap, int from, int to) throws IOException {
+        boolean hasNull = false;
+        if (bitMap != null) {
+            for (int i = from; i < to && !hasNull; i++) {
+                hasNull = bitMap.isMarked(i);
+            }
+        }
+        out.writeBits(hasNull ? 1 : 0, 1);
+        if (hasNull) {
+            for (int i = from; i < to; i++) {
+                out.writeBits(bitMap.isMarked(i) ? 1 : 0, 1);
+            }
+        }
+        // 空值不编码
+        XorState xor = new XorState();
+        long previous = 0;
+        for (int i = from; i < to; i++) {
+            if (hasNull && bitMap.isMarked(i)) {
+                continue;
+            }
+            switch (dataType) {
+                case BOOLEAN:
+                    out.writeBits(((boolean[]) values)[i] ? 1 : 0, 1);
+                    break;
+                case INT32:
+                    previous = writeDelta(out, ((int[]) values)[i], previous);
+                    break;
+                case INT64:
+                case TIMESTAMP:
+                    previous = writeDelta(out, ((long[]) values)[i], previous);
+                    break;
+                case DATE:
+                    previous = writeDelta(out, ((LocalDate[]) values)[i].toEpochDay(), previous);
+                    break;
+                case FLOAT:
+                    xor.write(out, Float.floatToRawIntBits(((float[]) values)[i]) & 0xFFFFFFFFL, 32);
+                    break;
+                case DOUBLE:
+                    xor.write(out, Double.doubleToRawLongBits(((double[]) values)[i]), 64);
+                    break;
+                case TEXT:
+                case STRING:
+                case BLOB:
+                    out.writeBytes(((Binary[]) values)[i].getValues());
+                    break;
+                default:
+                    throw new ServiceException(VALID_ERROR.getCode(), "Invalid input type: " + dataType);
+            }
+        }
+    }
+
+    /**
+     * 解码一列，空值用 TabletUtil.markNull 标记：写入时不检查空值位图，文本和日期的空值位置也要有值，
+     * 否则第一个数据块是 null，之后的数据块是上一块残留的值
+     */
+    private static void decodeColumn(BitInput in, TSDataType dataType, Tablet tablet, int column, int rows) throws IOException {
+        Object values = tablet.values[column];
+        BitMap bitMap = tablet.bitMaps[column];
+        boolean hasNull = in.readBits(1) == 1;
+        for (int i = 0; i < rows; i++) {
+            if (hasNull && in.readBits(1) == 1) {
+                TabletUtil.markNull(tablet, column, i);
+            } else {
+                bitMap.unmark(i);
+            }
+        }
+        XorState xor = new XorState();
+        long previous = 0;
+        for (int i = 0; i < rows; i++) {
+            if (hasNull && bitMap.isMarked(i)) {
+                continue;
+            }
+            switch (dataType) {
+                case BOOLEAN:
+                    ((boolean[]) values)[i] = in.readBits(1) == 1;
+                    break;
+                case INT32:
+                    previous += in.readZigZag();
+                    ((int[]) values)[i] = (int) previous;
+                    break;
+                case INT64:
+                case TIMESTAMP:
+                    previous += in.readZigZag();
+                    ((long[]) values)[i] = previous;
+                    break;
+                case DATE:
+                    previous += in.readZigZag();
+                    try {
+                        ((LocalDate[]) values)[i] = LocalDate.ofEpochDay(previous);
+                    } catch (DateTimeException e) {
+                        throw new ServiceException(VALID_ERROR.getCode(), "日期超出范围:" + previous);
+                    }
+                    break;
+                case FLOAT:
+                    ((float[]) values)[i] = Float.intBitsToFloat((int) xor.read(in, 32));
+                    break;
+                case DOUBLE:
+                    ((double[]) values)[i] = Double.longBitsToDouble(xor.read(in, 64));
+                    break;
+                case TEXT:
+                case STRING:
+                case BLOB:
+                    ((Binary[]) values)[i] = new Binary(in.readBytes());
+                    break;
+                default:
+                    throw new ServiceException(VALID_ERROR.getCode(), "Invalid input type: " + dataType);
+            }
+        }
+    }
+
+    private static long writeDelta(BitOutput out, long value, long previous) throws IOException {
+        long delta = value - previous;
+        out.writeVarLong((delta << 1) ^ (delta >> 63));
+        return value;
+    }
+
+    /**
+     * Gorilla 的 XOR 编码：和上一个值相同写 '0'；
+     * 有效位落在上一个窗口内写 '10' + 窗口内的位；否则写 '11' + 前导零个数(5位) + 有效位长度 + 有效位
+     */
+    private static class XorState {
+        private boolean first = true;
+        private long previous;
+        private int previousLeading = -1;
+        private int previousTrailing;
+
+        void write(BitOutput out, long bits, int width) throws IOException {
+            if (first) {
+                out.writeBits(bits, width);
+                first = false;
+                previous = bits;
+                return;
+            }
+            long xor = bits ^ previous;
+            previous = bits;
+            if (xor == 0) {
+                out.writeBits(0, 1);
+                return;
+            }
+            out.writeBits(1, 1);
+            int leading = Math.min(Long.numberOfLeadingZeros(xor) - (64 - width), 31);
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if (previousLeading != -1 && leading >= previousLeading && trailing >= previousTrailing) {
+                out.writeBits(0, 1);
+                out.writeBits(xor >>> previousTrailing, width - previousLeading - previousTrailing);
+                return;
+            }
+            int meaningful = width - leading - trailing;
+            out.writeBits(1, 1);
+            out.writeBits(leading, 5);
+            out.writeBits(meaningful - 1, width == 64 ? 6 : 5);
+            out.writeBits(xor >>> trailing, meaningful);
+            previousLeading = leading;
+            previousTrailing = trailing;
+        }
+
+        long read(BitInput in, int width) throws IOException {
+            if (first) {
+                first = false;
+                previous = in.readBits(width);
+                return previous;
+            }
+            if (in.readBits(1) == 0) {
+                return previous;
+            }
+            if (in.readBits(1) == 1) {
+                previousLeading = (int) in.readBits(5);
+                int meaningful = (int) in.readBits(width == 64 ? 6 : 5) + 1;
+                previousTrailing = width - previousLeading - meaningful;
+            }
+            int meaningful = width - previousLeading - previousTrailing;
+            previous ^= in.readBits(meaningful) << previousTrailing;
+            return previous;
+        }
+    }
+
+    // ---------------------------- 位读写 ----------------------------
+
+    private static class BitOutput {
+        private final OutputStream out;
+        private int current;
+        private int filled;
+
+        BitOutput(OutputStream out) {
+            this.out = out;
+        }
+
+        /**
+         * 写入 value 的低 count 位，高位在前
+         */
+        void writeBits(long value, int count) throws IOException {
+            while (count > 0) {
+                int take = Math.min(8 - filled, count);
+                int bits = (int) (value >>> (count - take)) & ((1 << take) - 1);
+                current |= bits << (8 - filled - take);
+                filled += take;
+                count -= take;
+                if (filled == 8) {
+                    out.write(current);
+                    current = 0;
+                    filled = 0;
+                }
+            }
+        }
+
+        void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                writeBits((value & 0x7F) | 0x80, 8);
+                value >>>= 7;
+            }
+            writeBits(value, 8);
+        }
+
+        void writeBytes(byte[] bytes) throws IOException {
+            writeVarLong(bytes.length);
+            for (byte b : bytes) {
+                writeBits(b, 8);
+            }
+        }
+
+        void writeString(String value) throws IOException {
+            writeBytes(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        void flush() throws IOException {
+            if (filled > 0) {
+                out.write(current);
+                current = 0;
+                filled = 0;
+            }
+            out.flush();
+        }
+    }
+
+    private static class BitInput {
+        private final InputStream in;
+        private int current;
+        private int remaining;
+
+        BitInput(InputStream in) {
+            this.in = in;
+        }
+
+        /**
+         * 读取 count 位，高位在前
+         */
+        long readBits(int count) throws IOException {
+            long value = 0;
+            while (count > 0) {
+                if (remaining == 0) {
+                    current = in.read();
+                    if (current < 0) {
+                        throw new EOFException();
+                    }
+                    remaining = 8;
+                }
+                int take = Math.min(remaining, count);
+                int bits = (current >>> (remaining - take)) & ((1 << take) - 1);
+                value = (value << take) | bits;
+                remaining -= take;
+                count -= take;
+            }
+            return value;
+        }
+
+        long readSignedBits(int count) throws IOException {
+            long value = readBits(count);
+            return (value << (64 - count)) >> (64 - count);
+        }
+
+        long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                long b = readBits(8);
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("变长整数格式错误");
+        }
+
+        long readZigZag() throws IOException {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        /**
+         * 长度由客户端给出，不能直接按长度分配：按实际读到的数据逐步扩容，
+         * 占用的内存不会超过请求体中真实存在的字节数（请求体大小已经由写入准入限制）
+         */
+        byte[] readBytes() throws IOException {
+            long length = readVarLong();
+            if (length < 0 || length > Integer.MAX_VALUE - 8) {
+                throw new IOException("长度超出限制");
+            }
+            byte[] bytes = new byte[(int) Math.min(length, READ_CHUNK)];
+            for (int i = 0; i < length; i++) {
+                if (i == bytes.length) {
+                    bytes = Arrays.copyOf(bytes, (int) Math.min(length, (long) bytes.length * 2));
+                }
+                bytes[i] = (byte) readBits(8);
+            }
+            return bytes;
+        }
+
+        String readString() throws IOException {
+            return new String(readBytes(), StandardCharsets.UTF_8);
+        }
+
+        /**
+         * 已经读到输入流末尾，当前字节中剩下的是补齐的位
+         */
+        boolean atEnd() throws IOException {
+            return in.read() < 0;
+        }
+    }
+}
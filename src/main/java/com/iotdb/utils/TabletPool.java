@@ -0,0 +1,160 @@
+package com.iotdb.utils;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import com.iotdb.config.IngestProperties;
+import org.apache.tsfile.enums.TSDataType;
+import org.apache.tsfile.write.record.Tablet;
+import org.apache.tsfile.write.schema.MeasurementSchema;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.iotdb.common.Constants.NUMBER_10000;
+
+/**
+ * tablet 对象池：按 (设备, 测点及类型, 容量) 缓存用完的 tablet，下次同样的写入直接借用，
+ * 避免每个请求都重新分配最多 NUMBER_10000 行的原始类型数组。
+ * 容量向上取到 2 的幂，设备数量按 LRU 淘汰，池中 tablet 的总字节数有上限
+ * @author tjb
+ * @date 2026/10/18
+ */
+@Component
+public class TabletPool {
+    private static final int MIN_CAPACITY = 16;
+
+    @Resource
+    private IngestProperties ingestProperties;
+
+    private LRUCache<String, ConcurrentLinkedDeque<Tablet>> pool;
+    private final AtomicLong pooledBytes = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        pool = CacheUtil.newLRUCache(ingestProperties.getTabletPoolMaxKeys());
+        // 被淘汰的设备，池中的 tablet 直接丢弃
+        pool.setListener((key, tablets) -> {
+            Tablet tablet;
+            while ((tablet = tablets.pollFirst()) != null) {
+                pooledBytes.addAndGet(-estimateBytes(tablet));
+            }
+        });
+    }
+
+    /**
+     * 借用一个 tablet，池中没有时新建，用完后调用 {@link #release(Tablet)} 归还
+     * @param deviceId : 设备路径
+     * @param measurements : 测点
+     * @param dataTypes : 测点类型
+     * @param rows : 需要的行数，超过 NUMBER_10000 时新建且不会放回池中
+     */
+    public Tablet borrow(String deviceId, List<String> measurements, List<TSDataType> dataTypes, int rows) {
+        int capacity = capacity(rows);
+        ConcurrentLinkedDeque<Tablet> tablets = ingestProperties.isTabletPoolEnabled()
+                ? pool.get(key(deviceId, measurements, dataTypes, capacity))
+                : null;
+        Tablet tablet = tablets == null ? null : tablets.pollFirst();
+        if (tablet != null) {
+            pooledBytes.addAndGet(-estimateBytes(tablet));
+            hits.incrementAndGet();
+            return tablet;
+        }
+        misses.incrementAndGet();
+        List<MeasurementSchema> schemaList = new ArrayList<>(measurements.size());
+        for (int i = 0; i < measurements.size(); i++) {
+            schemaList.add(new MeasurementSchema(measurements.get(i), dataTypes.get(i)));
+        }
+        return TabletUtil.createTablet(deviceId, schemaList, capacity);
+    }
+
+    /**
+     * 归还 tablet，归还后调用方不能再使用；池满或者容量超出范围时直接丢弃
+     */
+    public void release(Tablet tablet) {
+        if (tablet == null || !ingestProperties.isTabletPoolEnabled() || tablet.getMaxRowNumber() > NUMBER_10000) {
+            return;
+        }
+        tablet.reset();
+        long bytes = estimateBytes(tablet);
+        if (pooledBytes.addAndGet(bytes) > ingestProperties.getTabletPoolMaxBytes()) {
+            pooledBytes.addAndGet(-bytes);
+            return;
+        }
+        StringBuilder key = new StringBuilder(tablet.deviceId).append('|').append(tablet.getMaxRowNumber());
+        for (MeasurementSchema schema : tablet.getSchemas()) {
+            key.append('|').append(schema.getMeasurementId()).append(':').append(schema.getType().ordinal());
+        }
+        ConcurrentLinkedDeque<Tablet> tablets = pool.get(key.toString(), ConcurrentLinkedDeque::new);
+        tablets.offerFirst(tablet);
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", ingestProperties.isTabletPoolEnabled());
+        metrics.put("keys", pool.size());
+        metrics.put("pooledBytes", pooledBytes.get());
+        metrics.put("hits", hits.get());
+        metrics.put("misses", misses.get());
+        return metrics;
+    }
+
+    /**
+     * 容量向上取到 2 的幂，最大 NUMBER_10000，让行数相近的请求共用同一个 tablet
+     */
+    private static int capacity(int rows) {
+        if (rows > NUMBER_10000) {
+            return rows;
+        }
+        if (rows <= MIN_CAPACITY) {
+            return MIN_CAPACITY;
+        }
+        return Math.min(NUMBER_10000, Integer.highestOneBit(rows - 1) << 1);
+    }
+
+    /**
+     * 和 release 中拼接的格式保持一致
+     */
+    private static String key(String deviceId, List<String> measurements, List<TSDataType> dataTypes, int capacity) {
+        StringBuilder key = new StringBuilder(deviceId).append('|').append(capacity);
+        for (int i = 0; i < measurements.size(); i++) {
+            key.append('|').append(measurements.get(i)).append(':').append(dataTypes.get(i).ordinal());
+        }
+        return key.toString();
+    }
+
+    /**
+     * 估算 tablet 占用的字节数：时间戳、数值列和空值位图
+     */
+    private static long estimateBytes(Tablet tablet) {
+        long rowBytes = 8;
+        for (MeasurementSchema schema : tablet.getSchemas()) {
+            switch (schema.getType()) {
+                case BOOLEAN:
+                    rowBytes += 1;
+                    break;
+                case INT32:
+                case FLOAT:
+                    rowBytes += 4;
+                    break;
+                case INT64:
+                case DOUBLE:
+                case TIMESTAMP:
+                    rowBytes += 8;
+                    break;
+                default:
+                    // 引用加上对象本身，按 16 字节估算
+                    rowBytes += 16;
+            }
+        }
+        return rowBytes * tablet.getMaxRowNumber() + (long) tablet.getSchemas().size() * tablet.getMaxRowNumber() / 8;
+    }
+}
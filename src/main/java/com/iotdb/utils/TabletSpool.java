@@ -0,0 +1,455 @@
+package com.iotdb.utils;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import com.iotdb.config.IngestProperties;
+import com.iotdb.exception.ServiceException;
+import org.apache.iotdb.rpc.IoTDBConnectionException;
+import org.apache.iotdb.rpc.StatementExecutionException;
+import org.apache.iotdb.session.pool.SessionPool;
+import org.apache.tsfile.write.record.Tablet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import static com.iotdb.enums.StatusCodeEnum.FAIL;
+
+/**
+ * 本地写入暂存：数据库连接不上，或者最近的写入超过 spoolSlowWriteMs 时，tablet 按二进制格式追加到内存映射的分段文件中，
+ * 后台线程按写入顺序限速重放，重放完的分段文件解除映射后删除
+ * <pre>
+ * 记录：长度(4字节，0表示分段结束，负数表示已重放) CRC32(4字节) TabletBinaryCodec 编码的 tablet
+ * </pre>
+ * 暂存中还有数据时，新的写入也先进暂存，保证同一个测点的写入顺序不变。
+ * 正在写的分段直接重放到已写入的位置，不会因为重放而封存，分段写满后才换新文件。
+ * 重放标记每条记录落盘一次，重放中途中断的记录最多再写一次，相同时间戳的数据会被覆盖，不会重复
+ * @author tjb
+ * @date 2026/10/18
+ */
+@Component
+public class TabletSpool {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TabletSpool.class);
+
+    private static final String SUFFIX = ".spool";
+    private static final int RECORD_HEADER = 8;
+
+    @Resource
+    private SessionPool sessionService;
+    @Resource
+    private QueryResultCache queryResultCache;
+    @Resource
+    private SeriesStatsRegistry seriesStatsRegistry;
+    @Resource
+    private IngestProperties ingestProperties;
+
+    /**
+     * 写完的分段，按顺序等待重放
+     */
+    private final Deque<Segment> sealed = new ArrayDeque<>();
+    private Segment current;
+    private long nextSequence;
+
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private final AtomicLong spooledRows = new AtomicLong();
+    private final AtomicLong replayedRows = new AtomicLong();
+    private volatile long replayRowsPerSecond;
+    private volatile String lastReplayError;
+    /**
+     * 数据库过慢时，这个时间之前的写入先进暂存
+     */
+    private volatile long slowUntilMillis;
+    private final AtomicLong slowWrites = new AtomicLong();
+
+    private ScheduledExecutorService replayer;
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!ingestProperties.isSpoolEnabled()) {
+            return;
+        }
+        File dir = new File(ingestProperties.getSpoolDir());
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("无法创建暂存目录:" + dir.getAbsolutePath());
+        }
+        // 上次没有重放完的分段
+        File[] files = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+        if (files != null) {
+            Arrays.sort(files);
+            for (File file : files) {
+                Segment segment = Segment.open(file, sequenceOf(file), file.length());
+                segment.recover();
+                pendingBytes.addAndGet(segment.pendingBytes);
+                sealed.addLast(segment);
+                nextSequence = Math.max(nextSequence, segment.sequence + 1);
+            }
+        }
+        replayer = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNamePrefix("spool-replay").build());
+        long interval = ingestProperties.getSpoolReplayIntervalMs();
+        replayer.scheduleWithFixedDelay(this::replay, interval, interval, TimeUnit.MILLISECONDS);
+        LOGGER.info("开启本地写入暂存，目录{}，待重放{}字节", dir.getAbsolutePath(), pendingBytes.get());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (replayer != null) {
+            replayer.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return replayer != null;
+    }
+
+    /**
+     * 暂存中是否还有没有重放的数据
+     */
+    public boolean hasBacklog() {
+        return pendingBytes.get() > 0;
+    }
+
+    /**
+     * 新的写入是否应该先进暂存：暂存中还有数据，或者数据库最近过慢
+     */
+    public boolean shouldSpool() {
+        return hasBacklog() || System.currentTimeMillis() < slowUntilMillis;
+    }
+
+    /**
+     * 记录一次直接写入数据库的耗时，超过 spoolSlowWriteMs 时之后一段时间的写入先进暂存
+     * @param elapsedMs : 写入耗时(毫秒)
+     */
+    public void recordWriteTime(long elapsedMs) {
+        long threshold = ingestProperties.getSpoolSlowWriteMs();
+        if (!isEnabled() || threshold <= 0 || elapsedMs <= threshold) {
+            return;
+        }
+        slowWrites.incrementAndGet();
+        if (System.currentTimeMillis() >= slowUntilMillis) {
+            LOGGER.warn("写入耗时{}ms，数据库过慢，之后{}ms内的写入先进本地暂存", elapsedMs, ingestProperties.getSpoolSlowBackoffMs());
+        }
+        slowUntilMillis = System.currentTimeMillis() + ingestProperties.getSpoolSlowBackoffMs();
+    }
+
+    /**
+     * 把 tablet 追加到暂存，写入磁盘后返回
+     * @param tablet : 数据
+     * @param aligned : 是否为对齐设备
+     */
+    public synchronized void append(Tablet tablet, boolean aligned) {
+        byte[] payload = TabletBinaryCodec.encode(tablet, aligned);
+        int recordSize = RECORD_HEADER + payload.length;
+        if (pendingBytes.get() + recordSize > ingestProperties.getSpoolMaxBytes()) {
+            throw new ServiceException(FAIL.getCode(), "数据库连接不上，本地暂存已满");
+        }
+        try {
+            // 留 4 个字节给分段结束标记
+            if (current == null || current.remaining() < recordSize + 4) {
+                roll(recordSize + 4);
+            }
+            current.write(payload);
+        } catch (IOException e) {
+            throw new ServiceException(FAIL.getCode(), "写入本地暂存失败:" + e.getMessage());
+        }
+        pendingBytes.addAndGet(recordSize);
+        spooledRows.addAndGet(tablet.rowSize);
+    }
+
+    /**
+     * 暂存的指标
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", isEnabled());
+        metrics.put("pendingBytes", pendingBytes.get());
+        synchronized (this) {
+            metrics.put("segments", sealed.size() + (current == null ? 0 : 1));
+        }
+        metrics.put("spooledRows", spooledRows.get());
+        metrics.put("replayedRows", replayedRows.get());
+        metrics.put("replayRowsPerSecond", replayRowsPerSecond);
+        metrics.put("lastReplayError", lastReplayError);
+        metrics.put("slowWrites", slowWrites.get());
+        metrics.put("slow", System.currentTimeMillis() < slowUntilMillis);
+        return metrics;
+    }
+
+    /**
+     * 当前分段写满后封存，新建一个分段
+     */
+    private void roll(int minSize) throws IOException {
+        if (current != null) {
+            sealed.addLast(current);
+        }
+        long size = Math.max(ingestProperties.getSpoolSegmentBytes(), minSize);
+        File file = new File(ingestProperties.getSpoolDir(), String.format("%020d%s", nextSequence, SUFFIX));
+        current = Segment.open(file, nextSequence++, size);
+    }
+
+    /**
+     * 按顺序重放分段，每轮最多重放 spoolReplayRowsPerSecond * 间隔 行
+     */
+    private void replay() {
+        long budget = Math.max(1, ingestProperties.getSpoolReplayRowsPerSecond()
+                * ingestProperties.getSpoolReplayIntervalMs() / 1000);
+        long replayed = 0;
+        try {
+            while (replayed < budget) {
+                Segment segment = nextSegment();
+                if (segment == null) {
+                    break;
+                }
+                int read = segment.readPosition;
+                ByteBuffer buffer = segment.buffer.duplicate();
+                // 正在写的分段只读到已写入的位置，重放完也不封存
+                int limit = writeLimit(segment);
+                if (limit >= 0 && read >= limit) {
+                    break;
+                }
+                if (limit < 0 && (read + RECORD_HEADER > buffer.capacity() || buffer.getInt(read) == 0)) {
+                    finish(segment);
+                    continue;
+                }
+                int length = buffer.getInt(read);
+                int recordSize = RECORD_HEADER + Math.abs(length);
+                if (length > 0) {
+                    byte[] payload = new byte[length];
+                    buffer.position(read + RECORD_HEADER);
+                    buffer.get(payload);
+                    try {
+                        replayed += replayRecord(payload);
+                    } catch (ConnectionLostException e) {
+                        // 连接断开时不标记，下次重放从这条记录开始
+                        throw e;
+                    } catch (ServiceException e) {
+                        LOGGER.error("暂存记录无法解析，已跳过:{}", e.getMessage());
+                    } catch (RuntimeException e) {
+                        // 其他异常也是这条记录本身的问题，跳过，否则每次重放都卡在这里
+                        LOGGER.error("重放暂存记录失败，已跳过，分段{}位置{}", segment.file.getName(), read, e);
+                    }
+                    // 标记为已重放并落盘，重启后不会再重放
+                    segment.buffer.putInt(read, -length);
+                    segment.buffer.force();
+                    pendingBytes.addAndGet(-recordSize);
+                }
+                segment.readPosition = read + recordSize;
+            }
+            lastReplayError = null;
+        } catch (ConnectionLostException e) {
+            lastReplayError = e.getMessage();
+        } catch (RuntimeException e) {
+            LOGGER.error("重放本地暂存失败", e);
+            lastReplayError = e.getMessage();
+        }
+        replayedRows.addAndGet(replayed);
+        replayRowsPerSecond = replayed * 1000 / Math.max(1, ingestProperties.getSpoolReplayIntervalMs());
+    }
+
+    /**
+     * 重放一条记录，数据本身有问题被数据库拒绝时跳过，避免阻塞后面的数据
+     */
+    private long replayRecord(byte[] payload) {
+        return TabletBinaryCodec.decode(new ByteArrayInputStream(payload), (tablet, aligned) -> {
+            try {
+                // 写入暂存前已经按时间排好序
+                if (aligned) {
+                    sessionService.insertAlignedTablet(tablet, true);
+                } else {
+                    sessionService.insertTablet(tablet, true);
+                }
+                queryResultCache.invalidate(tablet);
+                seriesStatsRegistry.update(tablet);
+            } catch (IoTDBConnectionException e) {
+                throw new ConnectionLostException(e.getMessage());
+            } catch (StatementExecutionException e) {
+                LOGGER.error("重放设备{}的数据被拒绝，已跳过:{}", tablet.deviceId, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 下一个要重放的分段：先重放封存的分段，没有时重放正在写的分段中还没重放的部分
+     */
+    private synchronized Segment nextSegment() {
+        if (!sealed.isEmpty()) {
+            return sealed.peekFirst();
+        }
+        if (current != null && current.readPosition < current.writePosition) {
+            return current;
+        }
+        return null;
+    }
+
+    /**
+     * 正在写的分段返回已写入的位置，封存的分段返回 -1；在锁内读取，保证读到的位置之前的数据已经写完
+     */
+    private synchronized int writeLimit(Segment segment) {
+        return segment == current ? segment.writePosition : -1;
+    }
+
+    /**
+     * 分段重放完成，解除内存映射后删除文件
+     */
+    private synchronized void finish(Segment segment) {
+        sealed.remove(segment);
+        unmap(segment.buffer);
+        if (!segment.file.delete()) {
+            // 已全部标记为重放，下次启动会再删除
+            LOGGER.warn("删除暂存分段{}失败", segment.file.getName());
+        }
+    }
+
+    /**
+     * 立即释放内存映射，否则要等 GC 回收后才释放，期间 Windows 上文件删不掉。
+     * Java 9 以上通过 Unsafe.invokeCleaner，Java 8 通过 DirectBuffer.cleaner()，都不可用时等 GC 回收
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            invokeCleaner.invoke(field.get(null), buffer);
+            return;
+        } catch (NoSuchMethodException e) {
+            // Java 8 没有 invokeCleaner
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.warn("释放暂存分段的内存映射失败:{}", e.getMessage());
+            return;
+        }
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.warn("释放暂存分段的内存映射失败:{}", e.getMessage());
+        }
+    }
+
+    private static long sequenceOf(File file) {
+        String name = file.getName();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 一个内存映射的分段文件
+     */
+    private static class Segment {
+        private final File file;
+        private final long sequence;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+        private int readPosition;
+        private long pendingBytes;
+
+        private Segment(File file, long sequence, MappedByteBuffer buffer) {
+            this.file = file;
+            this.sequence = sequence;
+            this.buffer = buffer;
+        }
+
+        static Segment open(File file, long sequence, long size) throws IOException {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                if (raf.length() < size) {
+                    raf.setLength(size);
+                }
+                MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+                return new Segment(file, sequence, buffer);
+            }
+        }
+
+        int remaining() {
+            return buffer.capacity() - writePosition;
+        }
+
+        /**
+         * 先写内容和校验，最后写长度，写到一半断电时这条记录不会被当成有效数据
+         */
+        void write(byte[] payload) {
+            CRC32 crc = new CRC32();
+            crc.update(payload, 0, payload.length);
+            ByteBuffer target = buffer.duplicate();
+            target.position(writePosition + 4);
+            target.putInt((int) crc.getValue());
+            target.put(payload);
+            buffer.putInt(writePosition, payload.length);
+            buffer.force();
+            writePosition += RECORD_HEADER + payload.length;
+        }
+
+        /**
+         * 启动时扫描分段，找到第一条没重放的记录和写入结束的位置
+         */
+        void recover() {
+            int position = 0;
+            boolean foundPending = false;
+            ByteBuffer source = buffer.duplicate();
+            while (position + RECORD_HEADER <= buffer.capacity()) {
+                int length = buffer.getInt(position);
+                if (length == 0 || position + RECORD_HEADER + (long) Math.abs(length) > buffer.capacity()) {
+                    break;
+                }
+                if (length > 0) {
+                    byte[] payload = new byte[length];
+                    source.position(position + RECORD_HEADER);
+                    source.get(payload);
+                    CRC32 crc = new CRC32();
+                    crc.update(payload, 0, payload.length);
+                    if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                        // 没写完整的记录，后面的都不要
+                        buffer.putInt(position, 0);
+                        break;
+                    }
+                    if (!foundPending) {
+                        readPosition = position;
+                        foundPending = true;
+                    }
+                    pendingBytes += RECORD_HEADER + length;
+                }
+                position += RECORD_HEADER + Math.abs(length);
+            }
+            writePosition = position;
+            if (!foundPending) {
+                readPosition = position;
+            }
+        }
+    }
+
+    /**
+     * 重放时数据库仍然连接不上，等下一轮再试
+     */
+    private static class ConnectionLostException extends RuntimeException {
+        ConnectionLostException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,437 @@
+package com.iotdb.utils;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.iotdb.dto.ColumnarDataDto;
+import com.iotdb.exception.ServiceException;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.tsfile.enums.TSDataType;
+import org.apache.tsfile.utils.Binary;
+import org.apache.tsfile.utils.BitMap;
+import org.apache.tsfile.write.record.Tablet;
+import org.apache.tsfile.write.schema.MeasurementSchema;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static cn.hutool.core.text.StrPool.DOT;
+import static com.iotdb.enums.StatusCodeEnum.VALID_ERROR;
+
+/**
+ * Tablet 填充工具：直接写入 tablet 的原始数组，不经过 addValue 的装箱
+ * @author tjb
+ * @date 2026/10/18
+ */
+public class TabletUtil {
+    private static final Binary EMPTY_BINARY = new Binary(new byte[0]);
+    private static final LocalDate EMPTY_DATE = LocalDate.ofEpochDay(0);
+
+    /**
+     * 创建 tablet，并初始化空值位图
+     * @param deviceId : 设备路径
+     * @param schemaList : 测点
+     * @param maxRowNumber : 最大行数
+     */
+    public static Tablet createTablet(String deviceId, List<MeasurementSchema> schemaList, int maxRowNumber) {
+        Tablet tablet = new Tablet(deviceId, schemaList, maxRowNumber);
+        tablet.initBitMaps();
+        return tablet;
+    }
+
+    /**
+     * 标记空值，文本和日期列同时填上占位值，避免序列化时空指针
+     */
+    public static void markNull(Tablet tablet, int column, int row) {
+        if (tablet.bitMaps == null) {
+            tablet.initBitMaps();
+        }
+        tablet.bitMaps[column].mark(row);
+        Object values = tablet.values[column];
+        if (values instanceof Binary[]) {
+            ((Binary[]) values)[row] = EMPTY_BINARY;
+        } else if (values instanceof LocalDate[]) {
+            ((LocalDate[]) values)[row] = EMPTY_DATE;
+        }
+    }
+
+    /**
+     * 写入非空值时清除空值标记，复用的 tablet 或者先标记为空值的行不会残留标记
+     */
+    private static void unmarkNull(Tablet tablet, int column, int row) {
+        if (tablet.bitMaps != null && tablet.bitMaps[column] != null) {
+            tablet.bitMaps[column].unmark(row);
+        }
+    }
+
+    /**
+     * 把字符串形式的数据写入 tablet，空白字符串按空值处理
+     * @param tablet : tablet
+     * @param column : 测点下标
+     * @param row : 行下标
+     * @param dataType : 测点类型
+     * @param value : 数据
+     */
+    public static void putValue(Tablet tablet, int column, int row, TSDataType dataType, String value) {
+        if (StringUtils.isBlank(value)) {
+            markNull(tablet, column, row);
+            return;
+        }
+        try {
+            switch (dataType) {
+                case BOOLEAN:
+                    ((boolean[]) tablet.values[column])[row] = Boolean.parseBoolean(value);
+                    break;
+                case INT32:
+                    ((int[]) tablet.values[column])[row] = Integer.parseInt(value);
+                    break;
+                case INT64:
+                case TIMESTAMP:
+                    ((long[]) tablet.values[column])[row] = Long.parseLong(value);
+                    break;
+                case FLOAT:
+                    ((float[]) tablet.values[column])[row] = Float.parseFloat(value);
+                    break;
+                case DOUBLE:
+                    ((double[]) tablet.values[column])[row] = Double.parseDouble(value);
+                    break;
+                case DATE:
+                    ((LocalDate[]) tablet.values[column])[row] = parseDate(value);
+                    break;
+                case TEXT:
+                case STRING:
+                case BLOB:
+                    ((Binary[]) tablet.values[column])[row] = new Binary(value, StandardCharsets.UTF_8);
+                    break;
+                default:
+                    throw new ServiceException(VALID_ERROR.getCode(), "Invalid input type: " + dataType);
+            }
+            unmarkNull(tablet, column, row);
+        } catch (NumberFormatException | DateTimeException e) {
+            throw new ServiceException(VALID_ERROR.getCode(), String.format("数据%s与测点类型%s不匹配", value, dataType));
+        }
+    }
+
+    /**
+     * 把 json 解析器当前位置的值写入 tablet，数字直接按测点类型读取，不经过字符串
+     * @param tablet : tablet
+     * @param column : 测点下标
+     * @param row : 行下标
+     * @param dataType : 测点类型
+     * @param parser : 已经指向值的解析器
+     */
+    public static void putValue(Tablet tablet, int column, int row, TSDataType dataType, JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            markNull(tablet, column, row);
+            return;
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            putValue(tablet, column, row, dataType, parser.getText());
+            return;
+        }
+        if (!token.isScalarValue()) {
+            throw new ServiceException(VALID_ERROR.getCode(), "插入数据格式不正确");
+        }
+        switch (dataType) {
+            case BOOLEAN:
+                ((boolean[]) tablet.values[column])[row] = parser.getValueAsBoolean();
+                break;
+            case INT32:
+                ((int[]) tablet.values[column])[row] = parser.getIntValue();
+                break;
+            case INT64:
+            case TIMESTAMP:
+                ((long[]) tablet.values[column])[row] = parser.getLongValue();
+                break;
+            case FLOAT:
+                ((float[]) tablet.values[column])[row] = parser.getFloatValue();
+                break;
+            case DOUBLE:
+                ((double[]) tablet.values[column])[row] = parser.getDoubleValue();
+                break;
+            default:
+                putValue(tablet, column, row, dataType, parser.getText());
+                return;
+        }
+        unmarkNull(tablet, column, row);
+    }
+
+    /**
+     * 按列数据直接组装 tablet：时间戳数组和数值数组原样作为 tablet 的列，不拷贝也不装箱
+     * @param columnarDataDto : 按列插入的数据
+     */
+    public static Tablet fromColumns(ColumnarDataDto columnarDataDto) {
+        if (!CheckParameterUtil.checkStrings(columnarDataDto.getPath(), columnarDataDto.getDevice())) {
+            throw new ServiceException(VALID_ERROR.getCode(), "插入设备参数异常");
+        }
+        long[] timestamps = columnarDataDto.getTimestamps();
+        List<ColumnarDataDto.Column> columns = columnarDataDto.getColumns();
+        if (timestamps == null || timestamps.length == 0) {
+            throw new ServiceException(VALID_ERROR.getCode(), "插入数据不能为空");
+        }
+        if (columns == null || columns.isEmpty()) {
+            throw new ServiceException(VALID_ERROR.getCode(), "测点参数为空");
+        }
+        int rowSize = timestamps.length;
+        List<MeasurementSchema> schemaList = new ArrayList<>(columns.size());
+        Object[] values = new Object[columns.size()];
+        BitMap[] bitMaps = new BitMap[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            ColumnarDataDto.Column column = columns.get(i);
+            if (!CheckParameterUtil.checkStrings(column.getName())) {
+                throw new ServiceException(VALID_ERROR.getCode(), "测点参数异常");
+            }
+            TSDataType dataType = TSDataTypeUtil.getTsDataType(column.getType());
+            schemaList.add(new MeasurementSchema(column.getName(), dataType));
+            values[i] = getColumnValues(column, dataType);
+            if (Array.getLength(values[i]) != rowSize) {
+                throw new ServiceException(VALID_ERROR.getCode(), "测点" + column.getName() + "的数据数量与时间戳数量不对应");
+            }
+            bitMaps[i] = new BitMap(rowSize);
+            markNullObjects(values[i], bitMaps[i]);
+            if (column.getNullRows() != null) {
+                for (int row : column.getNullRows()) {
+                    if (row < 0 || row >= rowSize) {
+                        throw new ServiceException(VALID_ERROR.getCode(), "测点" + column.getName() + "的空值下标越界");
+                    }
+                    bitMaps[i].mark(row);
+                }
+            }
+        }
+        String devicePath = columnarDataDto.getPath() + DOT + columnarDataDto.getDevice();
+        Tablet tablet = new Tablet(devicePath, schemaList, timestamps, values, bitMaps, rowSize);
+        tablet.rowSize = rowSize;
+        return tablet;
+    }
+
+    /**
+     * 按测点类型取出对应的原始类型数组，文本类需要转换成 Binary
+     */
+    private static Object getColumnValues(ColumnarDataDto.Column column, TSDataType dataType) {
+        Object values;
+        switch (dataType) {
+            case BOOLEAN:
+                values = column.getBooleanValues();
+                break;
+            case INT32:
+                values = column.getIntValues();
+                break;
+            case INT64:
+            case TIMESTAMP:
+                values = column.getLongValues();
+                break;
+            case FLOAT:
+                values = column.getFloatValues();
+                break;
+            case DOUBLE:
+                values = column.getDoubleValues();
+                break;
+            case DATE:
+            case TEXT:
+            case STRING:
+            case BLOB:
+                values = toTabletTextColumn(column.getTextValues(), dataType);
+                break;
+            default:
+                throw new ServiceException(VALID_ERROR.getCode(), "Invalid input type: " + dataType);
+        }
+        if (values == null) {
+            throw new ServiceException(VALID_ERROR.getCode(), "测点" + column.getName() + "缺少" + dataType + "类型的数据");
+        }
+        return values;
+    }
+
+    /**
+     * 文本和日期列中的 null 标记为空值，并填上占位值，避免序列化时空指针
+     */
+    private static void markNullObjects(Object values, BitMap bitMap) {
+        if (values instanceof Binary[]) {
+            Binary[] binaries = (Binary[]) values;
+            for (int row = 0; row < binaries.length; row++) {
+                if (binaries[row] == null) {
+                    binaries[row] = EMPTY_BINARY;
+                    bitMap.mark(row);
+                }
+            }
+        } else if (values instanceof LocalDate[]) {
+            LocalDate[] dates = (LocalDate[]) values;
+            for (int row = 0; row < dates.length; row++) {
+                if (dates[row] == null) {
+                    dates[row] = EMPTY_DATE;
+                    bitMap.mark(row);
+                }
+            }
+        }
+    }
+
+    /**
+     * 检查时间列是否有序，无序时按时间排序，值列和空值位图按相同顺序调整，
+     * 相同时间戳保持原来的先后顺序。排序后写入时可以直接声明已排序
+     * @param tablet : tablet
+     * @return 是否做了排序
+     */
+    public static boolean sortByTime(Tablet tablet) {
+        long[] timestamps = tablet.timestamps;
+        int rows = tablet.rowSize;
+        int first = 1;
+        while (first < rows && timestamps[first - 1] <= timestamps[first]) {
+            first++;
+        }
+        if (first >= rows) {
+            return false;
+        }
+        int[] index = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            index[i] = i;
+        }
+        mergeSort(index, new int[rows], timestamps, 0, rows);
+
+        long[] sortedTimes = new long[rows];
+        for (int i = 0; i < rows; i++) {
+            sortedTimes[i] = timestamps[index[i]];
+        }
+        System.arraycopy(sortedTimes, 0, timestamps, 0, rows);
+        for (int column = 0; column < tablet.values.length; column++) {
+            permute(tablet.values[column], index, rows);
+        }
+        if (tablet.bitMaps != null) {
+            boolean[] marked = new boolean[rows];
+            for (BitMap bitMap : tablet.bitMaps) {
+                if (bitMap == null) {
+                    continue;
+                }
+                for (int i = 0; i < rows; i++) {
+                    marked[i] = bitMap.isMarked(index[i]);
+                }
+                for (int i = 0; i < rows; i++) {
+                    if (marked[i]) {
+                        bitMap.mark(i);
+                    } else {
+                        bitMap.unmark(i);
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 按时间对行号做稳定的归并排序，小区间用插入排序，两段已经有序时跳过合并
+     */
+    private static void mergeSort(int[] index, int[] buffer, long[] timestamps, int from, int to) {
+        if (to - from <= 32) {
+            for (int i = from + 1; i < to; i++) {
+                int row = index[i];
+                int j = i - 1;
+                while (j >= from && timestamps[index[j]] > timestamps[row]) {
+                    index[j + 1] = index[j];
+                    j--;
+                }
+                index[j + 1] = row;
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(index, buffer, timestamps, from, mid);
+        mergeSort(index, buffer, timestamps, mid, to);
+        if (timestamps[index[mid - 1]] <= timestamps[index[mid]]) {
+            return;
+        }
+        System.arraycopy(index, from, buffer, from, to - from);
+        int left = from;
+        int right = mid;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < mid && timestamps[buffer[left]] <= timestamps[buffer[right]])) {
+                index[i] = buffer[left++];
+            } else {
+                index[i] = buffer[right++];
+            }
+        }
+    }
+
+    /**
+     * 按行号重新排列一列数据
+     */
+    private static void permute(Object values, int[] index, int rows) {
+        if (values instanceof boolean[]) {
+            boolean[] column = (boolean[]) values;
+            boolean[] copy = Arrays.copyOf(column, rows);
+            for (int i = 0; i < rows; i++) {
+                column[i] = copy[index[i]];
+            }
+        } else if (values instanceof int[]) {
+            int[] column = (int[]) values;
+            int[] copy = Arrays.copyOf(column, rows);
+            for (int i = 0; i < rows; i++) {
+                column[i] = copy[index[i]];
+            }
+        } else if (values instanceof long[]) {
+            long[] column = (long[]) values;
+            long[] copy = Arrays.copyOf(column, rows);
+            for (int i = 0; i < rows; i++) {
+                column[i] = copy[index[i]];
+            }
+        } else if (values instanceof float[]) {
+            float[] column = (float[]) values;
+            float[] copy = Arrays.copyOf(column, rows);
+            for (int i = 0; i < rows; i++) {
+                column[i] = copy[index[i]];
+            }
+        } else if (values instanceof double[]) {
+            double[] column = (double[]) values;
+            double[] copy = Arrays.copyOf(column, rows);
+            for (int i = 0; i < rows; i++) {
+                column[i] = copy[index[i]];
+            }
+        } else if (values instanceof Object[]) {
+            Object[] column = (Object[]) values;
+            Object[] copy = Arrays.copyOf(column, rows);
+            for (int i = 0; i < rows; i++) {
+                column[i] = copy[index[i]];
+            }
+        }
+    }
+
+    private static Object toTabletTextColumn(String[] textValues, TSDataType dataType) {
+        if (textValues == null) {
+            return null;
+        }
+        if (dataType == TSDataType.DATE) {
+            LocalDate[] dates = new LocalDate[textValues.length];
+            for (int i = 0; i < textValues.length; i++) {
+                if (StringUtils.isBlank(textValues[i])) {
+                    continue;
+                }
+                try {
+                    dates[i] = parseDate(textValues[i]);
+                } catch (NumberFormatException | DateTimeException e) {
+                    throw new ServiceException(VALID_ERROR.getCode(), String.format("数据%s与测点类型%s不匹配", textValues[i], dataType));
+                }
+            }
+            return dates;
+        }
+        Binary[] binaries = new Binary[textValues.length];
+        for (int i = 0; i < textValues.length; i++) {
+            binaries[i] = textValues[i] == null ? null : new Binary(textValues[i], StandardCharsets.UTF_8);
+        }
+        return binaries;
+    }
+
+    /**
+     * 日期支持 yyyy-MM-dd 和毫秒时间戳两种写法
+     */
+    private static LocalDate parseDate(String value) {
+        if (value.indexOf('-') > 0) {
+            return LocalDate.parse(value);
+        }
+        return Instant.ofEpochMilli(Long.parseLong(value)).atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+}
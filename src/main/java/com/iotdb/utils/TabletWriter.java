@@ -0,0 +1,161 @@
+package com.iotdb.utils;
+
+import com.iotdb.exception.ServiceException;
+import org.apache.iotdb.common.rpc.thrift.TSStatus;
+import org.apache.iotdb.rpc.BatchExecutionException;
+import org.apache.iotdb.rpc.IoTDBConnectionException;
+import org.apache.iotdb.rpc.StatementExecutionException;
+import org.apache.iotdb.rpc.TSStatusCode;
+import org.apache.iotdb.session.pool.SessionPool;
+import org.apache.tsfile.write.record.Tablet;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.iotdb.enums.StatusCodeEnum.FAIL;
+
+/**
+ * 所有 tablet 写入的统一出口，按设备是否对齐选择对应的接口，写入前先申请准入行数。
+ * 开启本地暂存时，数据库连接不上、最近写入过慢或暂存中还有数据，写入本地暂存。
+ * 写入前按时间排序，所以都以已排序的方式写入，数据库不需要再排序。
+ * 写入成功后让时间范围有交集的查询缓存失效，并更新时间序列统计
+ * @author tjb
+ * @date 2026/10/18
+ */
+@Component
+public class TabletWriter {
+
+    @Resource
+    private SessionPool sessionService;
+    @Resource
+    private IngestAdmission ingestAdmission;
+    @Resource
+    private TabletSpool tabletSpool;
+    @Resource
+    private QueryResultCache queryResultCache;
+    @Resource
+    private SeriesStatsRegistry seriesStatsRegistry;
+
+    /**
+     * 写入一个设备的 tablet
+     * @param tablet : 数据
+     * @param aligned : 是否为对齐设备
+     */
+    public void write(Tablet tablet, boolean aligned) {
+        // 正在写入的行数超过上限直接拒绝
+        int rows = tablet.rowSize;
+        ingestAdmission.acquireRows(rows);
+        try {
+            TabletUtil.sortByTime(tablet);
+            if (tabletSpool.isEnabled() && tabletSpool.shouldSpool()) {
+                tabletSpool.append(tablet, aligned);
+            } else {
+                long start = System.currentTimeMillis();
+                if (aligned) {
+                    sessionService.insertAlignedTablet(tablet, true);
+                } else {
+                    sessionService.insertTablet(tablet, true);
+                }
+                tabletSpool.recordWriteTime(System.currentTimeMillis() - start);
+                queryResultCache.invalidate(tablet);
+                seriesStatsRegistry.update(tablet);
+            }
+        } catch (IoTDBConnectionException e) {
+            // 写入失败时数据也可能已经部分写入，缓存同样失效
+            queryResultCache.invalidate(tablet);
+            if (!tabletSpool.isEnabled()) {
+                throw new ServiceException(FAIL.getCode(), e.getMessage());
+            }
+            tabletSpool.append(tablet, aligned);
+        } catch (StatementExecutionException e) {
+            queryResultCache.invalidate(tablet);
+            throw new ServiceException(FAIL.getCode(), e.getMessage());
+        } finally {
+            ingestAdmission.releaseRows(rows);
+        }
+    }
+
+    /**
+     * 一次写入多个设备的 tablet
+     * @param tablets : 设备路径 -> 数据
+     * @param aligned : 是否为对齐设备
+     * @return 部分设备写入失败时返回 设备路径 -> 失败原因，全部成功时为空；整批失败时抛出异常
+     */
+    public Map<String, String> writeAll(Map<String, Tablet> tablets, boolean aligned) {
+        if (tablets.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        long rows = 0;
+        for (Tablet tablet : tablets.values()) {
+            rows += tablet.rowSize;
+        }
+        ingestAdmission.acquireRows(rows);
+        Map<String, String> failures = Collections.emptyMap();
+        try {
+            tablets.values().forEach(TabletUtil::sortByTime);
+            if (tabletSpool.isEnabled() && tabletSpool.shouldSpool()) {
+                tablets.values().forEach(tablet -> tabletSpool.append(tablet, aligned));
+            } else {
+                long start = System.currentTimeMillis();
+                BatchExecutionException batchException = null;
+                try {
+                    if (aligned) {
+                        sessionService.insertAlignedTablets(tablets, true);
+                    } else {
+                        sessionService.insertTablets(tablets, true);
+                    }
+                } catch (BatchExecutionException e) {
+                    batchException = e;
+                }
+                tabletSpool.recordWriteTime(System.currentTimeMillis() - start);
+                // 失败的设备也可能已经写入了一部分测点，缓存全部失效
+                tablets.values().forEach(queryResultCache::invalidate);
+                if (batchException != null) {
+                    failures = failedDevices(tablets, batchException);
+                }
+                for (Map.Entry<String, Tablet> entry : tablets.entrySet()) {
+                    if (!failures.containsKey(entry.getKey())) {
+                        seriesStatsRegistry.update(entry.getValue());
+                    }
+                }
+            }
+        } catch (IoTDBConnectionException e) {
+            tablets.values().forEach(queryResultCache::invalidate);
+            if (!tabletSpool.isEnabled()) {
+                throw new ServiceException(FAIL.getCode(), e.getMessage());
+            }
+            tablets.values().forEach(tablet -> tabletSpool.append(tablet, aligned));
+        } catch (StatementExecutionException e) {
+            tablets.values().forEach(queryResultCache::invalidate);
+            throw new ServiceException(FAIL.getCode(), e.getMessage());
+        } finally {
+            ingestAdmission.releaseRows(rows);
+        }
+        return failures;
+    }
+
+    /**
+     * 部分设备写入失败时，数据库按请求中 tablet 的顺序返回每个设备的状态；
+     * 状态数量和设备数量对应不上时无法区分，整批按失败处理
+     */
+    private static Map<String, String> failedDevices(Map<String, Tablet> tablets, BatchExecutionException e) {
+        List<TSStatus> statusList = e.getStatusList();
+        if (statusList == null || statusList.size() != tablets.size()) {
+            throw new ServiceException(FAIL.getCode(), e.getMessage());
+        }
+        Map<String, String> failures = new HashMap<>();
+        int i = 0;
+        for (String device : tablets.keySet()) {
+            TSStatus status = statusList.get(i++);
+            if (status.getCode() != TSStatusCode.SUCCESS_STATUS.getStatusCode()
+                    && status.getCode() != TSStatusCode.REDIRECTION_RECOMMEND.getStatusCode()) {
+                failures.put(device, status.getMessage());
+            }
+        }
+        return failures;
+    }
+}
@@ -0,0 +1,154 @@
+package com.iotdb.utils;
+
+import cn.hutool.core.util.IdUtil;
+import com.iotdb.exception.ServiceException;
+import org.apache.tsfile.exception.write.WriteProcessException;
+import org.apache.tsfile.read.common.Path;
+import org.apache.tsfile.write.TsFileWriter;
+import org.apache.tsfile.write.record.Tablet;
+import org.apache.tsfile.write.schema.MeasurementSchema;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.iotdb.enums.StatusCodeEnum.FAIL;
+
+/**
+ * 把 tablet 写成本地 TsFile，用于批量导入历史数据
+ * TsFile 要求同一设备的时间递增、对齐设备只能注册一次，遇到时间回退或者对齐设备出现新测点时关闭当前文件另起一个
+ * @author tjb
+ * @date 2026/10/18
+ */
+public class TsFileBuilder implements Closeable {
+    private final File dir;
+    private final List<File> files = new ArrayList<>();
+    private TsFileWriter writer;
+    /**
+     * 当前文件中每个设备已经写入的最大时间
+     */
+    private final Map<String, Long> lastTimes = new HashMap<>();
+    /**
+     * 当前文件中每个设备已经注册的测点
+     */
+    private final Map<String, Set<String>> registered = new HashMap<>();
+    private final Set<String> alignedDevices = new HashSet<>();
+
+    public TsFileBuilder(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * 写入一个 tablet，写入后 tablet 可以重置复用
+     * @param tablet : 数据
+     * @param aligned : 是否为对齐设备
+     */
+    public void write(Tablet tablet, boolean aligned) {
+        if (tablet.rowSize == 0) {
+            return;
+        }
+        TabletUtil.sortByTime(tablet);
+        String deviceId = tablet.deviceId;
+        Long lastTime = lastTimes.get(deviceId);
+        try {
+            if (writer == null
+                    || (lastTime != null && tablet.timestamps[0] <= lastTime)
+                    || !canRegister(deviceId, tablet.getSchemas(), aligned)) {
+                roll();
+            }
+            register(deviceId, tablet.getSchemas(), aligned);
+            if (aligned) {
+                writer.writeAligned(tablet);
+            } else {
+                writer.write(tablet);
+            }
+        } catch (IOException | WriteProcessException e) {
+            throw new ServiceException(FAIL.getCode(), "生成TsFile失败:" + e.getMessage());
+        }
+        lastTimes.put(deviceId, tablet.timestamps[tablet.rowSize - 1]);
+    }
+
+    /**
+     * 关闭当前文件
+     * @return 生成的所有文件
+     */
+    public List<File> finish() {
+        try {
+            closeWriter();
+        } catch (IOException e) {
+            throw new ServiceException(FAIL.getCode(), "生成TsFile失败:" + e.getMessage());
+        }
+        return files;
+    }
+
+    /**
+     * 关闭并删除生成的所有文件，写入失败时使用
+     */
+    @Override
+    public void close() {
+        try {
+            closeWriter();
+        } catch (IOException ignored) {
+            // 文件马上删除，关闭失败不影响
+        }
+        files.forEach(File::delete);
+        files.clear();
+    }
+
+    /**
+     * 当前文件能否继续写入这个设备：对齐属性不能变，对齐设备不能增加测点
+     */
+    private boolean canRegister(String deviceId, List<MeasurementSchema> schemas, boolean aligned) {
+        Set<String> measurements = registered.get(deviceId);
+        if (measurements == null) {
+            return true;
+        }
+        if (aligned != alignedDevices.contains(deviceId)) {
+            return false;
+        }
+        return !aligned || schemas.stream().allMatch(schema -> measurements.contains(schema.getMeasurementId()));
+    }
+
+    private void register(String deviceId, List<MeasurementSchema> schemas, boolean aligned) throws WriteProcessException {
+        Set<String> measurements = registered.get(deviceId);
+        if (measurements == null) {
+            measurements = new HashSet<>();
+            registered.put(deviceId, measurements);
+            if (aligned) {
+                alignedDevices.add(deviceId);
+                writer.registerAlignedTimeseries(new Path(deviceId), schemas);
+                schemas.forEach(schema -> registered.get(deviceId).add(schema.getMeasurementId()));
+                return;
+            }
+        }
+        for (MeasurementSchema schema : schemas) {
+            if (measurements.add(schema.getMeasurementId())) {
+                writer.registerTimeseries(new Path(deviceId), schema);
+            }
+        }
+    }
+
+    private void roll() throws IOException {
+        closeWriter();
+        File file = new File(dir, "backfill-" + IdUtil.fastSimpleUUID() + ".tsfile");
+        files.add(file);
+        writer = new TsFileWriter(file);
+    }
+
+    private void closeWriter() throws IOException {
+        if (writer != null) {
+            TsFileWriter current = writer;
+            writer = null;
+            lastTimes.clear();
+            registered.clear();
+            alignedDevices.clear();
+            current.close();
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.iotdb.utils;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import com.iotdb.config.IngestProperties;
+import com.iotdb.dto.DataDto;
+import com.iotdb.exception.ServiceException;
+import org.apache.tsfile.enums.TSDataType;
+import org.apache.tsfile.write.record.Tablet;
+import org.apache.tsfile.write.schema.MeasurementSchema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static com.iotdb.enums.StatusCodeEnum.FAIL;
+import static com.iotdb.enums.StatusCodeEnum.TOO_MANY_REQUESTS;
+import static com.iotdb.enums.StatusCodeEnum.VALID_ERROR;
+
+/**
+ * 单测点写入的合并缓冲：
+ * 同一个设备的多次单测点写入先放到缓冲里，按行数或等待时间触发，
+ * 合并成多测点的 tablet，再用一次 insertTablets 写入所有设备，写入成功后才通知调用方
+ * @author tjb
+ * @date 2026/10/18
+ */
+@Component
+public class WriteBehindBuffer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteBehindBuffer.class);
+
+    /**
+     * 单个设备缓冲上限是触发行数的倍数，超过后拒绝写入
+     */
+    private static final int MAX_PENDING_FACTOR = 4;
+
+    @Resource
+    private TabletWriter tabletWriter;
+    @Resource
+    private IngestProperties ingestProperties;
+
+    /**
+     * 设备缓冲，key 为对齐方式加设备路径，对齐和非对齐写入分开缓冲；空闲的缓冲在下一次 flush 时移除
+     */
+    private final Map<String, DeviceBatch> batches = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        if (!ingestProperties.isWriteBehindEnabled()) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNamePrefix("write-behind-flush").build());
+        long period = Math.max(ingestProperties.getWriteBehindMaxDelayMs() / 2, 10);
+        scheduler.scheduleWithFixedDelay(() -> flush(false), period, period, TimeUnit.MILLISECONDS);
+        LOGGER.info("开启写入合并缓冲，触发行数{}，最长等待{}ms",
+                ingestProperties.getWriteBehindMaxRows(), ingestProperties.getWriteBehindMaxDelayMs());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(ingestProperties.getWriteBehindAckTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 关闭前把剩余数据写完
+        flush(true);
+    }
+
+    /**
+     * 开启了合并缓冲并且还没有关闭；关闭后的写入直接写数据库
+     */
+    public boolean isEnabled() {
+        return scheduler != null && !scheduler.isShutdown();
+    }
+
+    /**
+     * 把一个测点的数据放入设备缓冲，并等待这批数据写入
+     * @param devicePath : 设备路径
+     * @param measurement : 测点
+     * @param dataType : 测点类型
+     * @param dataList : 数据
+     * @param aligned : 是否为对齐设备
+     */
+    public void write(String devicePath, String measurement, TSDataType dataType, List<DataDto.Data> dataList, boolean aligned) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        String key = (aligned ? "aligned:" : "") + devicePath;
+        boolean full;
+        while (true) {
+            DeviceBatch batch = batches.computeIfAbsent(key, path -> new DeviceBatch(devicePath, aligned));
+            synchronized (batch) {
+                // 拿到缓冲后它刚好因为空闲被移除，重新创建
+                if (batch.removed) {
+                    continue;
+                }
+                if (batch.size + dataList.size() > ingestProperties.getWriteBehindMaxRows() * MAX_PENDING_FACTOR) {
+                    throw new ServiceException(TOO_MANY_REQUESTS.getCode(), "设备" + devicePath + "写入缓冲已满，请稍后重试");
+                }
+                batch.append(measurement, dataType, dataList, future);
+                full = batch.size >= ingestProperties.getWriteBehindMaxRows();
+            }
+            break;
+        }
+        if (full) {
+            try {
+                scheduler.execute(() -> flush(false));
+            } catch (RejectedExecutionException e) {
+                // 正在关闭，缓冲中的数据由关闭前的 flush 写入
+                LOGGER.debug("写入合并缓冲正在关闭，不再触发写入");
+            }
+        }
+        try {
+            future.get(ingestProperties.getWriteBehindAckTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ServiceException) {
+                throw (ServiceException) e.getCause();
+            }
+            throw new ServiceException(FAIL.getCode(), e.getCause().getMessage());
+        } catch (TimeoutException e) {
+            throw new ServiceException(FAIL.getCode(), "等待写入确认超时，数据可能稍后写入");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceException(FAIL.getCode(), "等待写入确认被中断");
+        }
+    }
+
+    /**
+     * 把到期（或全部）的设备缓冲合并成 tablet，一次性写入
+     * 只在调度线程上执行，不会并发
+     * @param force : 是否忽略触发条件全部写入
+     */
+    private void flush(boolean force) {
+        long now = System.nanoTime();
+        long maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(ingestProperties.getWriteBehindMaxDelayMs());
+        Map<String, Tablet> tablets = new HashMap<>();
+        Map<String, Tablet> alignedTablets = new HashMap<>();
+        Map<String, List<CompletableFuture<Void>>> waiters = new HashMap<>();
+        Map<String, List<CompletableFuture<Void>>> alignedWaiters = new HashMap<>();
+        for (Map.Entry<String, DeviceBatch> entry : batches.entrySet()) {
+            DeviceBatch batch = entry.getValue();
+            DeviceBatch drained;
+            synchronized (batch) {
+                // 上次 flush 之后没有新数据，移除缓冲，避免写过的设备一直占用内存
+                if (batch.size == 0) {
+                    batch.removed = true;
+                    batches.remove(entry.getKey(), batch);
+                    continue;
+                }
+                boolean due = batch.size >= ingestProperties.getWriteBehindMaxRows()
+                        || now - batch.firstAppendNanos >= maxDelayNanos;
+                if (!force && !due) {
+                    continue;
+                }
+                drained = batch.drain();
+            }
+            // 单个设备的数据有问题只影响这个设备的调用方
+            try {
+                (drained.aligned ? alignedTablets : tablets).put(drained.devicePath, drained.toTablet());
+                (drained.aligned ? alignedWaiters : waiters).put(drained.devicePath, drained.waiters);
+            } catch (ServiceException e) {
+                drained.waiters.forEach(waiter -> waiter.completeExceptionally(e));
+            }
+        }
+        writeAll(tablets, false, waiters);
+        writeAll(alignedTablets, true, alignedWaiters);
+    }
+
+    /**
+     * 写入后按设备通知调用方，部分设备失败时只通知这些设备的调用方失败
+     */
+    private void writeAll(Map<String, Tablet> tablets, boolean aligned, Map<String, List<CompletableFuture<Void>>> waiters) {
+        if (tablets.isEmpty()) {
+            return;
+        }
+        Map<String, String> failures;
+        try {
+            failures = tabletWriter.writeAll(tablets, aligned);
+        } catch (RuntimeException e) {
+            LOGGER.error("合并写入{}个设备失败:{}", tablets.size(), e.getMessage());
+            waiters.values().forEach(list -> list.forEach(waiter -> waiter.completeExceptionally(e)));
+            return;
+        }
+        waiters.forEach((device, list) -> {
+            String failure = failures.get(device);
+            if (failure == null) {
+                list.forEach(waiter -> waiter.complete(null));
+            } else {
+                ServiceException e = new ServiceException(FAIL.getCode(), failure);
+                list.forEach(waiter -> waiter.completeExceptionally(e));
+            }
+        });
+    }
+
+    /**
+     * 一个设备的缓冲，每个点记录时间、测点下标和值
+     */
+    private static class DeviceBatch {
+        private final String devicePath;
+        private final boolean aligned;
+        private final List<MeasurementSchema> schemaList = new ArrayList<>();
+        private final Map<String, Integer> columnIndex = new HashMap<>();
+        private final List<CompletableFuture<Void>> waiters = new ArrayList<>();
+        private long[] times = new long[16];
+        private int[] columns = new int[16];
+        private String[] values = new String[16];
+        private int size;
+        private long firstAppendNanos;
+        /**
+         * 已经从 batches 中移除，不能再写入
+         */
+        private boolean removed;
+
+        DeviceBatch(String devicePath, boolean aligned) {
+            this.devicePath = devicePath;
+            this.aligned = aligned;
+        }
+
+        void append(String measurement, TSDataType dataType, List<DataDto.Data> dataList, CompletableFuture<Void> waiter) {
+            Integer column = columnIndex.get(measurement);
+            if (column == null) {
+                column = schemaList.size();
+                schemaList.add(new MeasurementSchema(measurement, dataType));
+                columnIndex.put(measurement, column);
+            } else if (schemaList.get(column).getType() != dataType) {
+                throw new ServiceException(VALID_ERROR.getCode(), "测点" + measurement + "的类型与缓冲中的不一致");
+            }
+            if (size == 0) {
+                firstAppendNanos = System.nanoTime();
+            }
+            ensureCapacity(size + dataList.size());
+            for (DataDto.Data data : dataList) {
+                times[size] = data.getTime();
+                columns[size] = column;
+                values[size] = data.getData().toString();
+                size++;
+            }
+            waiters.add(waiter);
+        }
+
+        /**
+         * 取出当前缓冲，原对象清空后继续接收数据
+         */
+        DeviceBatch drain() {
+            DeviceBatch drained = new DeviceBatch(devicePath, aligned);
+            drained.schemaList.addAll(schemaList);
+            drained.times = times;
+            drained.columns = columns;
+            drained.values = values;
+            drained.size = size;
+            drained.waiters.addAll(waiters);
+            schemaList.clear();
+            columnIndex.clear();
+            waiters.clear();
+            times = new long[16];
+            columns = new int[16];
+            values = new String[16];
+            size = 0;
+            return drained;
+        }
+
+        /**
+         * 相同时间戳的点合并到同一行，其他测点标记为空值
+         */
+        Tablet toTablet() {
+            Map<Long, Integer> rowIndex = new HashMap<>(size * 2);
+            for (int i = 0; i < size; i++) {
+                rowIndex.putIfAbsent(times[i], rowIndex.size());
+            }
+            Tablet tablet = TabletUtil.createTablet(devicePath, schemaList, rowIndex.size());
+            for (int row = 0; row < rowIndex.size(); row++) {
+                for (int column = 0; column < schemaList.size(); column++) {
+                    TabletUtil.markNull(tablet, column, row);
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                int row = rowIndex.get(times[i]);
+                tablet.addTimestamp(row, times[i]);
+                TabletUtil.putValue(tablet, columns[i], row, schemaList.get(columns[i]).getType(), values[i]);
+            }
+            tablet.rowSize = rowIndex.size();
+            return tablet;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity <= times.length) {
+                return;
+            }
+            int newLength = Math.max(capacity, times.length * 2);
+            times = Arrays.copyOf(times, newLength);
+            columns = Arrays.copyOf(columns, newLength);
+            values = Arrays.copyOf(values, newLength);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.iotdb.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 批量聚合结果：values[i][j] 为第 i 个测点的第 j 个聚合值，
+ * 没有数据或者聚合函数不适用于测点类型时为 null
+ * @author tjb
+ * @date 2026/10/18
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AggregateResultVo {
+    /**
+     * 聚合函数，对应矩阵的列
+     */
+    private List<String> aggregations;
+    /**
+     * 测点全路径，对应矩阵的行
+     */
+    private List<String> series;
+    /**
+     * 聚合值矩阵
+     */
+    private Object[][] values;
+}
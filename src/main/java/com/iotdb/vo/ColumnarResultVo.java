@@ -0,0 +1,56 @@
+package com.iotdb.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 按列返回的查询结果：一个时间数组，每个测点一个类型化的数组，
+ * 空值所在的行号放在 nulls 中，values 对应位置为 0/false/null
+ * @author tjb
+ * @date 2026/10/18
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ColumnarResultVo {
+    /**
+     * 行数
+     */
+    private Integer rows;
+    /**
+     * 时间列
+     */
+    private long[] time;
+    /**
+     * 测点列
+     */
+    private List<Column> columns;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Column {
+        /**
+         * 测点名称
+         */
+        private String name;
+        /**
+         * 测点类型
+         */
+        private String type;
+        /**
+         * 数据，原始类型数组，长度等于 rows
+         */
+        private Object values;
+        /**
+         * 空值的行号
+         */
+        private int[] nulls;
+    }
+}
@@ -0,0 +1,34 @@
+package com.iotdb.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 多设备写入时每个设备的写入结果
+ * @author tjb
+ * @date 2026/10/18
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeviceInsertVo {
+    /**
+     * 设备路径
+     */
+    private String device;
+    /**
+     * 是否写入成功
+     */
+    private Boolean success;
+    /**
+     * 写入行数
+     */
+    private Integer rows;
+    /**
+     * 失败原因
+     */
+    private String message;
+}
@@ -0,0 +1,55 @@
+package com.iotdb.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 降采样结果：每个测点单独一组时间和数值，不同测点选出的时间点不同
+ * @author tjb
+ * @date 2026/10/18
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DownsampleResultVo {
+    /**
+     * 降采样方式，M4 或 LTTB
+     */
+    private String mode;
+    /**
+     * 目标点数，每个测点返回的点数不超过这个数
+     */
+    private Integer points;
+    /**
+     * 测点数据
+     */
+    private List<Series> series;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Series {
+        /**
+         * 测点名称
+         */
+        private String name;
+        /**
+         * 测点类型
+         */
+        private String type;
+        /**
+         * 时间
+         */
+        private long[] time;
+        /**
+         * 数值，和时间一一对应
+         */
+        private double[] values;
+    }
+}
@@ -0,0 +1,42 @@
+package com.iotdb.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 异步写入任务的状态
+ * @author tjb
+ * @date 2026/10/18
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestTicketVo {
+    /**
+     * 任务ID
+     */
+    private String ticketId;
+    /**
+     * 状态：PENDING 排队中，RUNNING 写入中，SUCCESS 写入成功，FAILED 写入失败
+     */
+    private String status;
+    /**
+     * 写入结果
+     */
+    private Object result;
+    /**
+     * 失败原因
+     */
+    private String message;
+    /**
+     * 提交时间
+     */
+    private Long submitTime;
+    /**
+     * 完成时间
+     */
+    private Long finishTime;
+}
@@ -0,0 +1,30 @@
+package com.iotdb.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 分页查询结果
+ * @author tjb
+ * @date 2026/10/18
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PageResultVo<T> {
+    /**
+     * 这一页的数据
+     */
+    private T data;
+    /**
+     * 这一页的行数
+     */
+    private Integer size;
+    /**
+     * 下一页的游标，为空时没有下一页；这一页正好取满时下一页可能为空
+     */
+    private String nextCursor;
+}
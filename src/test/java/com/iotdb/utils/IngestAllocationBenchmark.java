@@ -0,0 +1,118 @@
+package com.iotdb.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iotdb.dto.ColumnarDataDto;
+import com.iotdb.dto.DataDtos;
+import org.apache.tsfile.enums.TSDataType;
+import org.apache.tsfile.write.record.Tablet;
+import org.apache.tsfile.write.schema.MeasurementSchema;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 对比 DataDtos 和 ColumnarDataDto 两种写入格式，从反序列化到填充 tablet 每个点分配的内存
+ * 不连接数据库，直接运行 main 即可；放在 test 目录下，不会打进发布的 jar
+ * @author tjb
+ * @date 2026/10/18
+ */
+public class IngestAllocationBenchmark {
+    private static final int ROWS = 10000;
+    private static final int MEASUREMENTS = 4;
+    private static final int WARM_UP = 20;
+    private static final int ROUNDS = 50;
+
+    public static void main(String[] args) throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        byte[] rowJson = objectMapper.writeValueAsBytes(buildDataDtos());
+        byte[] columnJson = objectMapper.writeValueAsBytes(buildColumnarDataDto());
+
+        long rowBytes = measure(() -> fillByDataDtos(objectMapper.readValue(rowJson, DataDtos.class)));
+        long columnBytes = measure(() -> TabletUtil.fromColumns(objectMapper.readValue(columnJson, ColumnarDataDto.class)));
+        long points = (long) ROWS * MEASUREMENTS;
+        System.out.printf("请求体大小: DataDtos %d 字节, ColumnarDataDto %d 字节%n", rowJson.length, columnJson.length);
+        System.out.printf("每个点分配内存: DataDtos %.1f 字节, ColumnarDataDto %.1f 字节%n",
+                (double) rowBytes / points, (double) columnBytes / points);
+    }
+
+    /**
+     * 和 DataServiceImpl.insertRecordByBatchTimeSeries 相同的填充方式
+     */
+    private static Tablet fillByDataDtos(DataDtos dataDtos) {
+        List<MeasurementSchema> schemaList = new ArrayList<>();
+        List<TSDataType> dataTypes = new ArrayList<>();
+        for (int i = 0; i < dataDtos.getTestPointName().size(); i++) {
+            TSDataType dataType = TSDataTypeUtil.getTsDataType(dataDtos.getTestPointType().get(i));
+            schemaList.add(new MeasurementSchema(dataDtos.getTestPointName().get(i), dataType));
+            dataTypes.add(dataType);
+        }
+        List<List<DataDtos.Data>> dataLists = dataDtos.getDataList();
+        Tablet tablet = new Tablet(dataDtos.getPath() + "." + dataDtos.getDevice(), schemaList, dataLists.get(0).size());
+        for (int row = 0; row < dataLists.get(0).size(); row++) {
+            int rowIndex = tablet.rowSize++;
+            tablet.addTimestamp(rowIndex, dataLists.get(0).get(row).getTime());
+            for (int s = 0; s < schemaList.size(); s++) {
+                String value = dataLists.get(s).get(row).getData().toString();
+                tablet.addValue(schemaList.get(s).getMeasurementId(), rowIndex,
+                        TSDataTypeUtil.getValueByData(dataTypes.get(s).getType(), value));
+            }
+        }
+        return tablet;
+    }
+
+    /**
+     * 当前线程执行多轮后平均每轮分配的字节数
+     */
+    private static long measure(Task task) throws Exception {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < WARM_UP; i++) {
+            task.run();
+        }
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ROUNDS; i++) {
+            task.run();
+        }
+        return (threadMXBean.getThreadAllocatedBytes(threadId) - before) / ROUNDS;
+    }
+
+    private static DataDtos buildDataDtos() {
+        List<String> names = new ArrayList<>();
+        List<List<DataDtos.Data>> dataLists = new ArrayList<>();
+        for (int s = 0; s < MEASUREMENTS; s++) {
+            names.add("s" + s);
+            List<DataDtos.Data> dataList = new ArrayList<>(ROWS);
+            for (int row = 0; row < ROWS; row++) {
+                dataList.add(new DataDtos.Data(1700000000000L + row * 1000L, String.valueOf(row * 0.5 + s)));
+            }
+            dataLists.add(dataList);
+        }
+        return new DataDtos("root.bench", "d1", names, Collections.nCopies(MEASUREMENTS, "DOUBLE"), false, dataLists);
+    }
+
+    private static ColumnarDataDto buildColumnarDataDto() {
+        long[] timestamps = new long[ROWS];
+        for (int row = 0; row < ROWS; row++) {
+            timestamps[row] = 1700000000000L + row * 1000L;
+        }
+        List<ColumnarDataDto.Column> columns = new ArrayList<>();
+        for (int s = 0; s < MEASUREMENTS; s++) {
+            double[] values = new double[ROWS];
+            for (int row = 0; row < ROWS; row++) {
+                values[row] = row * 0.5 + s;
+            }
+            ColumnarDataDto.Column column = new ColumnarDataDto.Column();
+            column.setName("s" + s);
+            column.setType("DOUBLE");
+            column.setDoubleValues(values);
+            columns.add(column);
+        }
+        return new ColumnarDataDto("root.bench", "d1", false, timestamps, columns);
+    }
+
+    private interface Task {
+        Object run() throws Exception;
+    }
+}
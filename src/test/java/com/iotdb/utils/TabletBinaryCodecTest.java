@@ -0,0 +1,107 @@
+package com.iotdb.utils;
+
+import com.iotdb.exception.ServiceException;
+import org.apache.iotdb.session.util.SessionUtils;
+import org.apache.tsfile.enums.TSDataType;
+import org.apache.tsfile.utils.Binary;
+import org.apache.tsfile.write.record.Tablet;
+import org.apache.tsfile.write.schema.MeasurementSchema;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.iotdb.enums.StatusCodeEnum.VALID_ERROR;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 二进制写入格式的编码、解码，解出的 tablet 要能直接按 insertTablet 的方式序列化
+ * @author tjb
+ * @date 2026/10/18
+ */
+class TabletBinaryCodecTest {
+    private static final String DEVICE = "root.sg.d1";
+
+    @Test
+    void nullTextAndDateCellsSurviveRoundTrip() {
+        List<MeasurementSchema> schemas = Arrays.asList(
+                new MeasurementSchema("s1", TSDataType.TEXT),
+                new MeasurementSchema("s2", TSDataType.DATE),
+                new MeasurementSchema("s3", TSDataType.INT32));
+        Tablet tablet = TabletUtil.createTablet(DEVICE, schemas, 16);
+        String[][] rows = {
+                {"a", "", "1"},
+                {"", "2026-10-18", ""},
+                {"c", "2026-10-19", "3"}};
+        for (int row = 0; row < rows.length; row++) {
+            tablet.addTimestamp(row, 1000L + row);
+            for (int column = 0; column < schemas.size(); column++) {
+                TabletUtil.putValue(tablet, column, row, schemas.get(column).getType(), rows[row][column]);
+            }
+            tablet.rowSize++;
+        }
+
+        List<Tablet> decoded = new ArrayList<>();
+        long total = TabletBinaryCodec.decode(new ByteArrayInputStream(TabletBinaryCodec.encode(tablet, true)),
+                (result, aligned) -> {
+                    assertTrue(aligned);
+                    // 和 insertTablet 一样序列化所有行，空值位置不能是 null
+                    assertNotNull(SessionUtils.getValueBuffer(result));
+                    decoded.add(result);
+                });
+
+        assertEquals(3, total);
+        assertEquals(1, decoded.size());
+        Tablet result = decoded.get(0);
+        assertEquals(DEVICE, result.deviceId);
+        assertEquals(3, result.rowSize);
+        assertTrue(result.bitMaps[0].isMarked(1));
+        assertTrue(result.bitMaps[1].isMarked(0));
+        assertTrue(result.bitMaps[2].isMarked(1));
+        assertFalse(result.bitMaps[0].isMarked(0));
+        assertFalse(result.bitMaps[1].isMarked(1));
+        Binary[] texts = (Binary[]) result.values[0];
+        LocalDate[] dates = (LocalDate[]) result.values[1];
+        assertEquals("a", texts[0].toString());
+        assertNotNull(texts[1]);
+        assertEquals("c", texts[2].toString());
+        assertNotNull(dates[0]);
+        assertEquals(LocalDate.of(2026, 10, 18), dates[1]);
+        assertEquals(3, ((int[]) result.values[2])[2]);
+    }
+
+    @Test
+    void blockCountBeyondIntRangeIsRejected() {
+        byte[] bytes = emptyTablet();
+        // 结束标记换成 2^32，按 int 截断后会被当成结束标记
+        byte[] forged = Arrays.copyOf(bytes, bytes.length + 4);
+        System.arraycopy(new byte[]{(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x10}, 0,
+                forged, bytes.length - 1, 5);
+        ServiceException e = assertThrows(ServiceException.class,
+                () -> TabletBinaryCodec.decode(new ByteArrayInputStream(forged), (tablet, aligned) -> { }));
+        assertEquals(VALID_ERROR.getCode(), e.getCode());
+    }
+
+    @Test
+    void trailingBytesAfterTerminatorAreRejected() {
+        byte[] bytes = emptyTablet();
+        byte[] forged = Arrays.copyOf(bytes, bytes.length + 1);
+        forged[bytes.length] = 1;
+        ServiceException e = assertThrows(ServiceException.class,
+                () -> TabletBinaryCodec.decode(new ByteArrayInputStream(forged), (tablet, aligned) -> { }));
+        assertEquals(VALID_ERROR.getCode(), e.getCode());
+    }
+
+    private static byte[] emptyTablet() {
+        Tablet tablet = TabletUtil.createTablet(DEVICE,
+                Arrays.asList(new MeasurementSchema("s1", TSDataType.INT64)), 16);
+        return TabletBinaryCodec.encode(tablet, false);
+    }
+}